@@ -1,17 +1,29 @@
 package ru.practicum.shareit.booking.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingMapper;
+import ru.practicum.shareit.booking.dto.BookingSummaryDto;
 import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.common.PageCursor;
+import ru.practicum.shareit.common.export.ExportFormat;
+import ru.practicum.shareit.common.export.ExportWriter;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.PositiveOrZero;
+import java.io.IOException;
 import java.util.List;
 
 @Slf4j
@@ -21,6 +33,7 @@ import java.util.List;
 @Validated
 public class BookingController {
     private final BookingService bookingService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     public BookingDto create(@RequestHeader("X-Sharer-User-Id") @NotNull Long userId,
@@ -36,6 +49,14 @@ public class BookingController {
         return bookingService.approveRejectBooking(bookingId, userId, approved);
     }
 
+    @PatchMapping("/batch")
+    public List<BookingDecisionResultDto> approveRejectBatch(
+            @RequestHeader("X-Sharer-User-Id") @NotNull Long userId,
+            @RequestBody @NotEmpty List<@NotNull @Valid BookingDecisionDto> decisions) {
+        log.debug("Пакетное изменение статуса {} аренд пользователем id={}", decisions.size(), userId);
+        return bookingService.approveRejectBookings(decisions, userId);
+    }
+
     @GetMapping("/{bookingId}")
     public BookingDto getById(@RequestHeader("X-Sharer-User-Id") @NotNull Long userId,
                               @PathVariable @NotNull Long bookingId) {
@@ -44,11 +65,16 @@ public class BookingController {
     }
 
     @GetMapping
-    public List<BookingDto> getByBookerIdAndState(@RequestHeader("X-Sharer-User-Id") @NotNull Long userId,
-                                                  @RequestParam(defaultValue = "ALL") String state,
-                                                  @RequestParam(defaultValue = "0") @PositiveOrZero int from,
-                                                  @RequestParam(defaultValue = "10") @Positive int size) {
-        return bookingService.getAllBookingsByBookerAndState(userId, state, from, size);
+    public ResponseEntity<List<BookingDto>> getByBookerIdAndState(
+            @RequestHeader("X-Sharer-User-Id") @NotNull Long userId,
+            @RequestParam(defaultValue = "ALL") String state,
+            @RequestParam(defaultValue = "0") @PositiveOrZero int from,
+            @RequestParam(defaultValue = "10") @Positive int size,
+            @RequestParam(required = false) String after) {
+        final List<BookingDto> bookings = after == null
+                ? bookingService.getAllBookingsByBookerAndState(userId, state, from, size)
+                : bookingService.getAllBookingsByBookerAndState(userId, state, PageCursor.decode(after), size);
+        return PageCursor.toResponse(bookings, size, booking -> PageCursor.of(booking.getStart(), booking.getId()));
     }
 
     @GetMapping("/owner")
@@ -58,4 +84,28 @@ public class BookingController {
                                                  @RequestParam(defaultValue = "10") @Positive int size) {
         return bookingService.getAllBookingsByOwnerAndState(userId, state, from, size);
     }
+
+    @GetMapping("/owner/export")
+    public void exportByOwnerIdAndState(@RequestHeader("X-Sharer-User-Id") @NotNull Long userId,
+                                        @RequestParam(defaultValue = "ALL") String state,
+                                        @RequestParam(defaultValue = "ndjson") String format,
+                                        HttpServletResponse response) throws IOException {
+        log.debug("Выгрузка аренд вещей в состоянии {} в формате {} владельцем id={}", state, format, userId);
+        final ExportWriter<BookingDto> writer = new ExportWriter<>(response, ExportFormat.from(format), objectMapper,
+                BookingMapper.EXPORT_COLUMNS);
+        bookingService.exportBookingsByOwnerAndState(userId, state, writer::write);
+        writer.finish();
+    }
+
+    @GetMapping("/summary")
+    public BookingSummaryDto getBookerSummary(@RequestHeader("X-Sharer-User-Id") @NotNull Long userId) {
+        log.debug("Получение количества аренд по состояниям пользователем id={}", userId);
+        return bookingService.getBookingsSummaryByBooker(userId);
+    }
+
+    @GetMapping("/owner/summary")
+    public BookingSummaryDto getOwnerSummary(@RequestHeader("X-Sharer-User-Id") @NotNull Long userId) {
+        log.debug("Получение количества аренд вещей по состояниям владельцем id={}", userId);
+        return bookingService.getBookingsSummaryByOwner(userId);
+    }
 }
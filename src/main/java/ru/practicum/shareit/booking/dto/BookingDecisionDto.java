@@ -0,0 +1,13 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.Value;
+
+import javax.validation.constraints.NotNull;
+
+@Value(staticConstructor = "of")
+public class BookingDecisionDto {
+    @NotNull(message = "id бронирования не должен быть пустым")
+    Long bookingId;
+    @NotNull(message = "Решение по бронированию должно быть заполнено")
+    Boolean approved;
+}
@@ -0,0 +1,21 @@
+package ru.practicum.shareit.booking.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Value;
+import ru.practicum.shareit.booking.model.BookingStatus;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Value(staticConstructor = "of")
+public class BookingDecisionResultDto {
+    Long bookingId;
+    BookingStatus status;
+    String error;
+
+    public static BookingDecisionResultDto success(Long bookingId, BookingStatus status) {
+        return of(bookingId, status, null);
+    }
+
+    public static BookingDecisionResultDto failure(Long bookingId, String error) {
+        return of(bookingId, null, error);
+    }
+}
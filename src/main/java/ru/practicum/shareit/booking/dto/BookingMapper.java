@@ -1,18 +1,34 @@
 package ru.practicum.shareit.booking.dto;
 
+import ru.practicum.shareit.booking.model.AbstractBooking;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingStateCounts;
+import ru.practicum.shareit.common.export.ExportColumn;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemMapper;
+import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.dto.UserMapper;
+import ru.practicum.shareit.user.model.User;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 public class BookingMapper {
-    public static BookingDto toBookingDto(Booking booking) {
+    public static final List<ExportColumn<BookingDto>> EXPORT_COLUMNS = List.of(
+            ExportColumn.of("id", BookingDto::getId),
+            ExportColumn.of("start", BookingDto::getStart),
+            ExportColumn.of("end", BookingDto::getEnd),
+            ExportColumn.of("status", BookingDto::getStatus),
+            ExportColumn.of("itemId", booking -> booking.getItem().getId()),
+            ExportColumn.of("itemName", booking -> booking.getItem().getName()),
+            ExportColumn.of("bookerId", booking -> booking.getBooker().getId()),
+            ExportColumn.of("bookerName", booking -> booking.getBooker().getName())
+    );
+
+    public static BookingDto toBookingDto(AbstractBooking booking) {
         if (booking == null) return null;
         return BookingDto.of(
                 booking.getId(),
@@ -25,17 +41,33 @@ public class BookingMapper {
         );
     }
 
-    public static List<BookingDto> toBookingsDto(List<Booking> bookings) {
+    public static List<BookingDto> toBookingsDto(List<? extends AbstractBooking> bookings) {
         return bookings.stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
     }
 
+    public static BookingSummaryDto toBookingSummaryDto(BookingStateCounts counts) {
+        return BookingSummaryDto.of(
+                counts.getAllCount(),
+                counts.getCurrentCount(),
+                counts.getPastCount(),
+                counts.getFutureCount(),
+                counts.getWaitingCount(),
+                counts.getRejectedCount()
+        );
+    }
+
     public static Booking fromBookingDto(BookingDto bookingDto, UserDto userDto, ItemDto itemDto) {
+        return fromBookingDto(bookingDto, UserMapper.fromUserDto(userDto),
+                ItemMapper.fromItemDto(itemDto, userDto.getId()));
+    }
+
+    public static Booking fromBookingDto(BookingDto bookingDto, User booker, Item item) {
         return Booking.of(
                 bookingDto.getId(),
                 bookingDto.getStart(),
                 bookingDto.getEnd(),
-                ItemMapper.fromItemDto(itemDto, userDto.getId()),
-                UserMapper.fromUserDto(userDto),
+                item,
+                booker,
                 Optional.ofNullable(bookingDto.getStatus()).orElse(BookingStatus.WAITING)
         );
     }
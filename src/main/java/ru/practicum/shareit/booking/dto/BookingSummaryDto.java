@@ -0,0 +1,13 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.Value;
+
+@Value(staticConstructor = "of")
+public class BookingSummaryDto {
+    long all;
+    long current;
+    long past;
+    long future;
+    long waiting;
+    long rejected;
+}
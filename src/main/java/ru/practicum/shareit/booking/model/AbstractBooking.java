@@ -0,0 +1,49 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Бронирование из оперативной таблицы {@link Booking} или из архива {@link ArchivedBooking}.
+ * Запросы к этой сущности объединяют обе таблицы, запросы к подклассам читают только свою таблицу.
+ */
+@Entity
+@Inheritance(strategy = InheritanceType.TABLE_PER_CLASS)
+@NamedEntityGraph(name = AbstractBooking.WITH_ITEM_AND_BOOKER, attributeNodes = {
+        @NamedAttributeNode("item"),
+        @NamedAttributeNode("booker")
+})
+@Getter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor(access = AccessLevel.PROTECTED)
+public abstract class AbstractBooking {
+    public static final String WITH_ITEM_AND_BOOKER = "AbstractBooking.withItemAndBooker";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bookings_seq")
+    @SequenceGenerator(name = "bookings_seq", sequenceName = "bookings_seq", schema = "public", allocationSize = 50)
+    Long id;
+    @Column(name = "start_date")
+    LocalDateTime start;
+    @Column(name = "end_date")
+    LocalDateTime end;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "item_id")
+    Item item;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "booker_id")
+    User booker;
+    @Setter
+    @Enumerated(value = EnumType.STRING)
+    BookingStatus status;
+    @Column(name = "owner_id")
+    Long ownerId;
+    @Version
+    long version;
+}
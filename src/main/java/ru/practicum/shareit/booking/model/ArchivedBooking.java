@@ -0,0 +1,15 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+/**
+ * Завершенное бронирование, перенесенное BookingArchiver из оперативной таблицы. Архив только читается.
+ */
+@Entity
+@Table(name = "bookings_archive", schema = "public")
+@NoArgsConstructor
+public class ArchivedBooking extends AbstractBooking {
+}
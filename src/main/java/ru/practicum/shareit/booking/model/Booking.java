@@ -1,7 +1,6 @@
 package ru.practicum.shareit.booking.model;
 
-import lombok.*;
-import lombok.experimental.FieldDefaults;
+import lombok.NoArgsConstructor;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.model.User;
 
@@ -10,25 +9,21 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "bookings", schema = "public")
-@Getter
-@FieldDefaults(level = AccessLevel.PRIVATE)
+@NamedEntityGraph(name = Booking.WITH_ITEM_AND_BOOKER, attributeNodes = {
+        @NamedAttributeNode("item"),
+        @NamedAttributeNode("booker")
+})
 @NoArgsConstructor
-@AllArgsConstructor(staticName = "of")
-public class Booking {
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    Long id;
-    @Column(name = "start_date")
-    LocalDateTime start;
-    @Column(name = "end_date")
-    LocalDateTime end;
-    @ManyToOne
-    @JoinColumn(name = "item_id")
-    Item item;
-    @ManyToOne
-    @JoinColumn(name = "booker_id")
-    User booker;
-    @Setter
-    @Enumerated(value = EnumType.STRING)
-    BookingStatus status;
+public class Booking extends AbstractBooking {
+    public static final String WITH_ITEM_AND_BOOKER = "Booking.withItemAndBooker";
+
+    private Booking(Long id, LocalDateTime start, LocalDateTime end, Item item, User booker, BookingStatus status,
+                    Long ownerId, long version) {
+        super(id, start, end, item, booker, status, ownerId, version);
+    }
+
+    public static Booking of(Long id, LocalDateTime start, LocalDateTime end, Item item, User booker,
+                             BookingStatus status) {
+        return new Booking(id, start, end, item, booker, status, item != null ? item.getOwnerId() : null, 0L);
+    }
 }
@@ -0,0 +1,98 @@
+package ru.practicum.shareit.booking.overlap;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Индекс подтвержденных незавершенных бронирований по вещам для проверки пересечения периодов аренды.
+ * Строится при старте приложения и обновляется при каждом изменении статуса бронирования.
+ */
+@Component
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class BookingIntervalIndex {
+
+    static int LOAD_BATCH_SIZE = 1000;
+
+    BookingRepository bookingRepository;
+    Map<Long, IntervalList> intervals = new ConcurrentHashMap<>();
+
+    private static long toMicros(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + dateTime.getNano() / 1_000;
+    }
+
+    private IntervalList getIntervals(Long itemId) {
+        return intervals.computeIfAbsent(itemId, id -> new IntervalList());
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        intervals.clear();
+        final LocalDateTime now = LocalDateTime.now();
+        final PageRequest pageRequest = PageRequest.of(0, LOAD_BATCH_SIZE, Sort.by("id"));
+        Long cursorId = 0L;
+        List<Booking> page;
+        do {
+            page = bookingRepository.findAllByStatusAndEndAfterAndIdGreaterThan(BookingStatus.APPROVED, now,
+                    cursorId, pageRequest);
+            page.forEach(this::reserve);
+            if (!page.isEmpty()) {
+                cursorId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == LOAD_BATCH_SIZE);
+    }
+
+    public boolean overlaps(Long itemId, LocalDateTime start, LocalDateTime end) {
+        final IntervalList itemIntervals = intervals.get(itemId);
+        if (itemIntervals == null) {
+            return false;
+        }
+        synchronized (itemIntervals) {
+            return itemIntervals.overlaps(toMicros(start), toMicros(end));
+        }
+    }
+
+    /**
+     * Занимает период бронирования, если он не пересекается с уже подтвержденными.
+     *
+     * @return false, если период пересекается с подтвержденным бронированием
+     */
+    public boolean reserve(Booking booking) {
+        final long start = toMicros(booking.getStart());
+        final long end = toMicros(booking.getEnd());
+        final IntervalList itemIntervals = getIntervals(booking.getItem().getId());
+        synchronized (itemIntervals) {
+            itemIntervals.removeEndedBefore(toMicros(LocalDateTime.now()));
+            if (itemIntervals.overlaps(start, end)) {
+                return false;
+            }
+            itemIntervals.add(booking.getId(), start, end);
+            return true;
+        }
+    }
+
+    public void release(Booking booking) {
+        final IntervalList itemIntervals = intervals.get(booking.getItem().getId());
+        if (itemIntervals == null) {
+            return;
+        }
+        synchronized (itemIntervals) {
+            itemIntervals.remove(booking.getId());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ru.practicum.shareit.booking.overlap;
+
+import java.util.Arrays;
+
+/**
+ * Полуинтервалы [start, end) на примитивных массивах, отсортированные по началу.
+ * Для каждой позиции хранится максимум концов всех интервалов до нее включительно,
+ * что позволяет проверять пересечение двоичным поиском.
+ */
+class IntervalList {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private long[] starts = new long[INITIAL_CAPACITY];
+    private long[] ends = new long[INITIAL_CAPACITY];
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] maxEnds = new long[INITIAL_CAPACITY];
+    private int size;
+
+    private int lowerBound(long start) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (starts[middle] < start) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void updateMaxEnds(int from) {
+        for (int i = from; i < size; i++) {
+            maxEnds[i] = i == 0 ? ends[i] : Math.max(maxEnds[i - 1], ends[i]);
+        }
+    }
+
+    private void removeAt(int position) {
+        System.arraycopy(starts, position + 1, starts, position, size - position - 1);
+        System.arraycopy(ends, position + 1, ends, position, size - position - 1);
+        System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+        size--;
+        updateMaxEnds(position);
+    }
+
+    boolean overlaps(long start, long end) {
+        final int count = lowerBound(end);
+        return count > 0 && maxEnds[count - 1] > start;
+    }
+
+    void add(long id, long start, long end) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+            maxEnds = Arrays.copyOf(maxEnds, size * 2);
+        }
+        final int position = lowerBound(start);
+        System.arraycopy(starts, position, starts, position + 1, size - position);
+        System.arraycopy(ends, position, ends, position + 1, size - position);
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+        starts[position] = start;
+        ends[position] = end;
+        ids[position] = id;
+        size++;
+        updateMaxEnds(position);
+    }
+
+    boolean remove(long id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                removeAt(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void removeEndedBefore(long time) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (ends[i] > time) {
+                starts[count] = starts[i];
+                ends[count] = ends[i];
+                ids[count] = ids[i];
+                count++;
+            }
+        }
+        size = count;
+        updateMaxEnds(0);
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,163 @@
+package ru.practicum.shareit.booking.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import ru.practicum.shareit.booking.model.AbstractBooking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+import static ru.practicum.shareit.common.repository.StreamingQueries.STREAM_FETCH_SIZE;
+
+/**
+ * Запросы ко всей истории бронирований: оперативной таблице и архиву. Состояния, которые могут содержать
+ * архивные бронирования (ALL, PAST, REJECTED), читаются отсюда, остальные - из {@link BookingRepository}.
+ */
+public interface BookingHistoryRepository extends JpaRepository<AbstractBooking, Long> {
+    @Override
+    @EntityGraph(AbstractBooking.WITH_ITEM_AND_BOOKER)
+    Optional<AbstractBooking> findById(Long id);
+
+    @EntityGraph(AbstractBooking.WITH_ITEM_AND_BOOKER)
+    List<AbstractBooking> findAllByBooker(User booker, Pageable pageable);
+
+    @EntityGraph(AbstractBooking.WITH_ITEM_AND_BOOKER)
+    List<AbstractBooking> findAllByBookerAndEndBefore(User booker, LocalDateTime present, Pageable pageable);
+
+    @EntityGraph(AbstractBooking.WITH_ITEM_AND_BOOKER)
+    List<AbstractBooking> findAllByBookerAndStatus(User booker, BookingStatus status, Pageable pageable);
+
+    @EntityGraph(AbstractBooking.WITH_ITEM_AND_BOOKER)
+    @Query(
+            "select b " +
+            "from AbstractBooking b " +
+            "   where b.booker = :booker " +
+            "       and b.start <= :cursorStart " +
+            "       and (b.start < :cursorStart or (b.start = :cursorStart and b.id < :cursorId))"
+    )
+    List<AbstractBooking> findPageByBooker(User booker, LocalDateTime cursorStart, Long cursorId,
+                                           Pageable pageable);
+
+    @EntityGraph(AbstractBooking.WITH_ITEM_AND_BOOKER)
+    @Query(
+            "select b " +
+            "from AbstractBooking b " +
+            "   where b.booker = :booker " +
+            "       and b.end < :present " +
+            "       and b.start <= :cursorStart " +
+            "       and (b.start < :cursorStart or (b.start = :cursorStart and b.id < :cursorId))"
+    )
+    List<AbstractBooking> findPageByBookerAndEndBefore(User booker, LocalDateTime present,
+                                                       LocalDateTime cursorStart, Long cursorId, Pageable pageable);
+
+    @EntityGraph(AbstractBooking.WITH_ITEM_AND_BOOKER)
+    @Query(
+            "select b " +
+            "from AbstractBooking b " +
+            "   where b.booker = :booker " +
+            "       and b.status = :status " +
+            "       and b.start <= :cursorStart " +
+            "       and (b.start < :cursorStart or (b.start = :cursorStart and b.id < :cursorId))"
+    )
+    List<AbstractBooking> findPageByBookerAndStatus(User booker, BookingStatus status, LocalDateTime cursorStart,
+                                                    Long cursorId, Pageable pageable);
+
+    @EntityGraph(AbstractBooking.WITH_ITEM_AND_BOOKER)
+    List<AbstractBooking> findAllByOwnerId(Long ownerId, Pageable pageable);
+
+    @EntityGraph(AbstractBooking.WITH_ITEM_AND_BOOKER)
+    List<AbstractBooking> findAllByOwnerIdAndEndBefore(Long ownerId, LocalDateTime present, Pageable pageable);
+
+    @EntityGraph(AbstractBooking.WITH_ITEM_AND_BOOKER)
+    List<AbstractBooking> findAllByOwnerIdAndStatus(Long ownerId, BookingStatus status, Pageable pageable);
+
+    @EntityGraph(AbstractBooking.WITH_ITEM_AND_BOOKER)
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")})
+    Stream<AbstractBooking> streamAllByOwnerId(Long ownerId, Sort sort);
+
+    @EntityGraph(AbstractBooking.WITH_ITEM_AND_BOOKER)
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")})
+    Stream<AbstractBooking> streamAllByOwnerIdAndEndBefore(Long ownerId, LocalDateTime present, Sort sort);
+
+    @EntityGraph(AbstractBooking.WITH_ITEM_AND_BOOKER)
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")})
+    Stream<AbstractBooking> streamAllByOwnerIdAndStatus(Long ownerId, BookingStatus status, Sort sort);
+
+    /**
+     * Подтвержденные бронирования, закончившиеся раньше shareit.booking.archive-after, есть только в архиве,
+     * поэтому занятость за прошедшие периоды читается из обеих таблиц. Условие end > from ограничивает просмотр
+     * индекса (item_id, end_date) бронированиями, закончившимися после начала периода, без ограничений
+     * на длительность бронирования.
+     */
+    @Query(
+            "select b " +
+            "from AbstractBooking b " +
+            "   where b.item.id = :itemId " +
+            "       and b.start < :to " +
+            "       and b.end > :from " +
+            "       and b.status in :statuses " +
+            "order by b.start"
+    )
+    List<AbstractBooking> findAllByItemIdInPeriod(Long itemId, Collection<BookingStatus> statuses,
+                                                  LocalDateTime from, LocalDateTime to);
+
+    @Query(
+            "select count(b) as allCount, " +
+            "   coalesce(sum(case when b.start <= :present and b.end >= :present then 1 else 0 end), 0) " +
+            "       as currentCount, " +
+            "   coalesce(sum(case when b.end < :present then 1 else 0 end), 0) as pastCount, " +
+            "   coalesce(sum(case when b.start > :present then 1 else 0 end), 0) as futureCount, " +
+            "   coalesce(sum(case when b.status = ru.practicum.shareit.booking.model.BookingStatus.WAITING " +
+            "       then 1 else 0 end), 0) as waitingCount, " +
+            "   coalesce(sum(case when b.status = ru.practicum.shareit.booking.model.BookingStatus.REJECTED " +
+            "       then 1 else 0 end), 0) as rejectedCount " +
+            "from AbstractBooking b " +
+            "   where b.booker = :booker"
+    )
+    BookingStateCounts countByBookerGroupByState(User booker, LocalDateTime present);
+
+    @Query(
+            "select count(b) as allCount, " +
+            "   coalesce(sum(case when b.start <= :present and b.end >= :present then 1 else 0 end), 0) " +
+            "       as currentCount, " +
+            "   coalesce(sum(case when b.end < :present then 1 else 0 end), 0) as pastCount, " +
+            "   coalesce(sum(case when b.start > :present then 1 else 0 end), 0) as futureCount, " +
+            "   coalesce(sum(case when b.status = ru.practicum.shareit.booking.model.BookingStatus.WAITING " +
+            "       then 1 else 0 end), 0) as waitingCount, " +
+            "   coalesce(sum(case when b.status = ru.practicum.shareit.booking.model.BookingStatus.REJECTED " +
+            "       then 1 else 0 end), 0) as rejectedCount " +
+            "from AbstractBooking b " +
+            "   where b.ownerId = :ownerId"
+    )
+    BookingStateCounts countByOwnerIdGroupByState(Long ownerId, LocalDateTime present);
+
+    @Query(
+            "select b " +
+            "from AbstractBooking b " +
+            "   where b.item.id = :itemId " +
+            "       and b.booker.id = :bookerId " +
+            "       and b.end < :end"
+    )
+    Set<AbstractBooking> findAllByItemIdAndBookerIdAndEndBefore(Long itemId, Long bookerId, LocalDateTime end);
+
+    Optional<AbstractBooking> findFirstByItemAndStatusInAndEndBeforeOrderByEndDesc(Item item,
+                                                                                 Collection<BookingStatus> statuses,
+                                                                                 LocalDateTime present);
+}
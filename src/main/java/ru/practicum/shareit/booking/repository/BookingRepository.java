@@ -1,21 +1,37 @@
 package ru.practicum.shareit.booking.repository;
 
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.BookingStatus;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.model.User;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+import static ru.practicum.shareit.common.repository.StreamingQueries.STREAM_FETCH_SIZE;
 
 public interface BookingRepository extends JpaRepository<Booking, Long> {
-    List<Booking> findAllByBooker(User booker, Pageable pageable);
+    @Override
+    @EntityGraph(Booking.WITH_ITEM_AND_BOOKER)
+    Optional<Booking> findById(Long id);
 
+    @EntityGraph(Booking.WITH_ITEM_AND_BOOKER)
     @Query(
             "select b " +
             "from Booking b " +
@@ -24,32 +40,133 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     )
     List<Booking> findAllByBookerStateCurrent(User booker, Pageable pageable);
 
+    @EntityGraph(Booking.WITH_ITEM_AND_BOOKER)
     List<Booking> findAllByBookerAndStartAfter(User booker, LocalDateTime present, Pageable pageable);
 
-    List<Booking> findAllByBookerAndEndBefore(User booker, LocalDateTime present, Pageable pageable);
-
+    @EntityGraph(Booking.WITH_ITEM_AND_BOOKER)
     List<Booking> findAllByBookerAndStatus(User booker, BookingStatus status, Pageable pageable);
 
-    List<Booking> findAllByItemOwnerId(Long ownerId, Pageable pageable);
+    @EntityGraph(Booking.WITH_ITEM_AND_BOOKER)
+    @Query(
+            "select b " +
+            "from Booking b " +
+            "   where CURRENT_TIMESTAMP between b.start and b.end " +
+            "       and b.booker = :booker " +
+            "       and b.start <= :cursorStart " +
+            "       and (b.start < :cursorStart or (b.start = :cursorStart and b.id < :cursorId))"
+    )
+    List<Booking> findPageByBookerStateCurrent(User booker, LocalDateTime cursorStart, Long cursorId,
+                                               Pageable pageable);
+
+    @EntityGraph(Booking.WITH_ITEM_AND_BOOKER)
+    @Query(
+            "select b " +
+            "from Booking b " +
+            "   where b.booker = :booker " +
+            "       and b.start > :present " +
+            "       and b.start <= :cursorStart " +
+            "       and (b.start < :cursorStart or (b.start = :cursorStart and b.id < :cursorId))"
+    )
+    List<Booking> findPageByBookerAndStartAfter(User booker, LocalDateTime present, LocalDateTime cursorStart,
+                                                Long cursorId, Pageable pageable);
+
+    @EntityGraph(Booking.WITH_ITEM_AND_BOOKER)
+    @Query(
+            "select b " +
+            "from Booking b " +
+            "   where b.booker = :booker " +
+            "       and b.status = :status " +
+            "       and b.start <= :cursorStart " +
+            "       and (b.start < :cursorStart or (b.start = :cursorStart and b.id < :cursorId))"
+    )
+    List<Booking> findPageByBookerAndStatus(User booker, BookingStatus status, LocalDateTime cursorStart,
+                                            Long cursorId, Pageable pageable);
+
+    @EntityGraph(Booking.WITH_ITEM_AND_BOOKER)
+    @Query(
+            "select b " +
+            "from Booking b " +
+            "   where CURRENT_TIMESTAMP between b.start and b.end " +
+            "       and b.ownerId = :ownerId"
+    )
+    List<Booking> findAllByOwnerIdStateCurrent(Long ownerId, Pageable pageable);
 
+    @EntityGraph(Booking.WITH_ITEM_AND_BOOKER)
+    List<Booking> findAllByOwnerIdAndStartAfter(Long ownerId, LocalDateTime present, Pageable pageable);
+
+    @EntityGraph(Booking.WITH_ITEM_AND_BOOKER)
+    List<Booking> findAllByOwnerIdAndStatus(Long ownerId, BookingStatus status, Pageable pageable);
+
+    @EntityGraph(Booking.WITH_ITEM_AND_BOOKER)
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")})
     @Query(
             "select b " +
             "from Booking b " +
             "   where CURRENT_TIMESTAMP between b.start and b.end " +
-            "       and b.item.ownerId = :bookerId"
+            "       and b.ownerId = :ownerId"
     )
-    List<Booking> findAllByItemOwnerIdStateCurrent(Long bookerId, Pageable pageable);
+    Stream<Booking> streamAllByOwnerIdStateCurrent(Long ownerId, Sort sort);
+
+    @EntityGraph(Booking.WITH_ITEM_AND_BOOKER)
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")})
+    Stream<Booking> streamAllByOwnerIdAndStartAfter(Long ownerId, LocalDateTime present, Sort sort);
+
+    @EntityGraph(Booking.WITH_ITEM_AND_BOOKER)
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")})
+    Stream<Booking> streamAllByOwnerIdAndStatus(Long ownerId, BookingStatus status, Sort sort);
 
-    List<Booking> findAllByItemOwnerIdAndStartAfter(Long bookerId, LocalDateTime present, Pageable pageable);
+    Optional<Booking> findFirstByItemAndStatusInAndStartAfterOrderByStartAsc(Item item,
+                                                                           Collection<BookingStatus> statuses,
+                                                                           LocalDateTime present);
 
-    List<Booking> findAllByItemOwnerIdAndEndBefore(Long bookerId, LocalDateTime present, Pageable pageable);
+    Optional<Booking> findFirstByItemAndStatusInAndEndAfterOrderByEndAsc(Item item,
+                                                                       Collection<BookingStatus> statuses,
+                                                                       LocalDateTime present);
 
-    List<Booking> findAllByItemOwnerIdAndStatus(Long bookerId, BookingStatus status, Pageable pageable);
+    List<Booking> findAllByStatusAndEndAfterAndIdGreaterThan(BookingStatus status, LocalDateTime present, Long cursorId,
+                                                             Pageable pageable);
 
-    Set<Booking> findAllByItemIdAndBookerIdAndEndBefore(Long itemId, Long bookerId, LocalDateTime end);
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(
+            "update Booking b " +
+            "set b.status = :status, b.version = b.version + 1 " +
+            "where b.id = :bookingId " +
+            "   and b.status = ru.practicum.shareit.booking.model.BookingStatus.WAITING"
+    )
+    int updateStatusIfWaiting(Long bookingId, BookingStatus status);
 
-    Optional<Booking> findFirstByItemAndEndBeforeOrderByEndDesc(Item item, LocalDateTime end);
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(
+            "update Booking b " +
+            "set b.status = :status, b.version = b.version + 1 " +
+            "where b.id in :bookingIds " +
+            "   and b.status <> ru.practicum.shareit.booking.model.BookingStatus.APPROVED"
+    )
+    int updateStatusByIdInIfNotApproved(Collection<Long> bookingIds, BookingStatus status);
 
-    Optional<Booking> findFirstByItemAndStartAfterOrderByStartDesc(Item item, LocalDateTime end);
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(
+            "select b.id " +
+            "from Booking b " +
+            "   where b.status in :statuses " +
+            "       and b.end < :before"
+    )
+    List<Long> lockIdsByStatusInAndEndBefore(Collection<BookingStatus> statuses, LocalDateTime before,
+                                             Pageable pageable);
 
+    @Modifying
+    @Query(
+            value = "INSERT INTO bookings_archive (id, start_date, end_date, item_id, booker_id, status, owner_id, " +
+                    "version) " +
+                    "SELECT id, start_date, end_date, item_id, booker_id, status, owner_id, version " +
+                    "FROM bookings " +
+                    "WHERE id IN (:bookingIds)",
+            nativeQuery = true
+    )
+    int copyToArchive(Collection<Long> bookingIds);
 }
@@ -0,0 +1,18 @@
+package ru.practicum.shareit.booking.repository;
+
+/**
+ * Количество бронирований пользователя в каждом из состояний {@link ru.practicum.shareit.booking.service.BookingState}.
+ */
+public interface BookingStateCounts {
+    long getAllCount();
+
+    long getCurrentCount();
+
+    long getPastCount();
+
+    long getFutureCount();
+
+    long getWaitingCount();
+
+    long getRejectedCount();
+}
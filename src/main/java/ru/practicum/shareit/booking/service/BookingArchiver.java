@@ -0,0 +1,77 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Переносит завершенные бронирования из оперативной таблицы в архив пакетами. Отклоненные и отмененные
+ * бронирования переносятся после окончания аренды, подтвержденные - спустя shareit.booking.archive-after.
+ * Ожидающие подтверждения бронирования не архивируются, поэтому текущие, будущие и ожидающие бронирования
+ * читаются только из оперативной таблицы.
+ */
+@Slf4j
+@Component
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class BookingArchiver {
+
+    static int ARCHIVE_BATCH_SIZE = 500;
+    static Set<BookingStatus> APPROVED_STATUSES = Set.of(BookingStatus.APPROVED);
+    static Set<BookingStatus> DECLINED_STATUSES = Set.of(BookingStatus.REJECTED, BookingStatus.CANCELED);
+
+    BookingRepository bookingRepository;
+    TransactionTemplate transactionTemplate;
+    Duration archiveAfter;
+
+    @Autowired
+    public BookingArchiver(BookingRepository bookingRepository, TransactionTemplate transactionTemplate,
+                           @Value("${shareit.booking.archive-after:P30D}") Duration archiveAfter) {
+        this.bookingRepository = bookingRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.archiveAfter = archiveAfter;
+    }
+
+    @Scheduled(cron = "${shareit.booking.archive-cron:0 0 3 * * *}")
+    public void archiveDue() {
+        final LocalDateTime now = LocalDateTime.now();
+        final int archived = archive(DECLINED_STATUSES, now) + archive(APPROVED_STATUSES, now.minus(archiveAfter));
+        if (archived > 0) {
+            log.info("В архив перенесено {} бронирований", archived);
+        }
+    }
+
+    int archive(Set<BookingStatus> statuses, LocalDateTime before) {
+        final PageRequest batch = PageRequest.of(0, ARCHIVE_BATCH_SIZE);
+        int archived = 0;
+        int moved;
+        do {
+            final Integer batchMoved = transactionTemplate.execute(status -> archiveBatch(statuses, before, batch));
+            moved = batchMoved == null ? 0 : batchMoved;
+            archived += moved;
+        } while (moved == ARCHIVE_BATCH_SIZE);
+        return archived;
+    }
+
+    private int archiveBatch(Set<BookingStatus> statuses, LocalDateTime before, PageRequest batch) {
+        final List<Long> bookingIds = bookingRepository.lockIdsByStatusInAndEndBefore(statuses, before, batch);
+        if (bookingIds.isEmpty()) {
+            return 0;
+        }
+        bookingRepository.copyToArchive(bookingIds);
+        bookingRepository.deleteAllByIdInBatch(bookingIds);
+        return bookingIds.size();
+    }
+}
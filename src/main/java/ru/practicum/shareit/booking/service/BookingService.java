@@ -1,17 +1,32 @@
 package ru.practicum.shareit.booking.service;
 
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingSummaryDto;
+import ru.practicum.shareit.common.PageCursor;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface BookingService {
     BookingDto createBooking(BookingDto bookingDto, Long userId);
 
     BookingDto approveRejectBooking(Long bookingId, Long userId, boolean approved);
 
+    List<BookingDecisionResultDto> approveRejectBookings(List<BookingDecisionDto> decisions, Long userId);
+
     BookingDto getBookingById(Long bookingId, Long userId);
 
     List<BookingDto> getAllBookingsByBookerAndState(Long userId, String state, int from, int size);
 
+    List<BookingDto> getAllBookingsByBookerAndState(Long userId, String state, PageCursor after, int size);
+
     List<BookingDto> getAllBookingsByOwnerAndState(Long userId, String state, int from, int size);
+
+    void exportBookingsByOwnerAndState(Long userId, String state, Consumer<BookingDto> action);
+
+    BookingSummaryDto getBookingsSummaryByBooker(Long userId);
+
+    BookingSummaryDto getBookingsSummaryByOwner(Long userId);
 }
@@ -4,48 +4,80 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingMapper;
+import ru.practicum.shareit.booking.dto.BookingSummaryDto;
+import ru.practicum.shareit.booking.model.AbstractBooking;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.overlap.BookingIntervalIndex;
+import ru.practicum.shareit.booking.repository.BookingHistoryRepository;
 import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.common.PageCursor;
 import ru.practicum.shareit.common.exceptoins.BadRequestException;
+import ru.practicum.shareit.common.exceptoins.ConflictException;
 import ru.practicum.shareit.common.exceptoins.NotFoundException;
 import ru.practicum.shareit.common.exceptoins.ValidationException;
-import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.common.outbox.AggregateType;
+import ru.practicum.shareit.common.outbox.EventType;
+import ru.practicum.shareit.common.outbox.OutboxPublisher;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.repository.ItemRepository;
-import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.user.service.UserCache;
 
+import javax.persistence.EntityManager;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-
-import static ru.practicum.shareit.item.dto.ItemMapper.toItemDto;
-import static ru.practicum.shareit.user.dto.UserMapper.toUserDto;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
 public class BookingServiceImpl implements BookingService {
 
-    static Sort SORT_BY_START_DESC = Sort.by("start").descending();
+    static Sort SORT_BY_START_AND_ID_DESC = Sort.by("start", "id").descending();
+    static int MAX_STATUS_UPDATE_ATTEMPTS = 3;
     BookingRepository bookingRepository;
+    BookingHistoryRepository bookingHistoryRepository;
     UserRepository userRepository;
+    UserCache userCache;
     ItemRepository itemRepository;
+    BookingIntervalIndex bookingIntervalIndex;
+    TransactionTemplate transactionTemplate;
+    OutboxPublisher outboxPublisher;
+    EntityManager entityManager;
 
     private User getUser(Long userId) {
-        return userRepository.findById(userId).orElseThrow(
-                () -> new NotFoundException(
-                        String.format("Обращение к бронированиям от несуществующего пользователя (%s)", userId)
-                )
-        );
+        if (!userCache.exists(userId)) {
+            throw new NotFoundException(
+                    String.format("Обращение к бронированиям от несуществующего пользователя (%s)", userId)
+            );
+        }
+        return userRepository.getReferenceById(userId);
     }
 
     private BookingState convertState(String state) {
@@ -63,6 +95,7 @@ public class BookingServiceImpl implements BookingService {
     }
 
     @Override
+    @Transactional
     public BookingDto createBooking(BookingDto bookingDto, Long userId) {
         final User user = getUser(userId);
         final Item item = itemRepository.findById(bookingDto.getItemId()).orElseThrow(
@@ -73,39 +106,224 @@ public class BookingServiceImpl implements BookingService {
         if (bookingDto.getEnd().isBefore(bookingDto.getStart())) {
             throw new ValidationException("Начало аренды не может быть позже окончания");
         }
-        final UserDto userDto = toUserDto(user);
-        final ItemDto itemDto = toItemDto(item);
-        final Booking booking = BookingMapper.fromBookingDto(bookingDto, userDto, itemDto);
+        final Booking booking = BookingMapper.fromBookingDto(bookingDto, user, item);
         if (item.getOwnerId().equals(userId)) {
             throw new NotFoundException("Попытка резервирования собственной вещи");
         }
         if (!booking.getItem().isAvailable()) {
             throw new BadRequestException("Попытка резервирования недоступной вещи");
         }
-        return BookingMapper.toBookingDto(bookingRepository.save(booking));
+        if (bookingIntervalIndex.overlaps(item.getId(), booking.getStart(), booking.getEnd())) {
+            throw new BadRequestException("Вещь уже забронирована на указанный период");
+        }
+        final Booking createdBooking = bookingRepository.save(booking);
+        outboxPublisher.publish(AggregateType.BOOKING, createdBooking.getId(), EventType.CREATED);
+        return BookingMapper.toBookingDto(createdBooking);
+    }
+
+    /**
+     * Переводит бронирование в новый статус без блокировки строки: ожидающее бронирование обновляется условным
+     * запросом, остальные сохраняются с проверкой версии.
+     *
+     * @return пустой результат, если бронирование одновременно изменено другим запросом
+     */
+    private Optional<Booking> tryUpdateStatus(Booking booking, BookingStatus status) {
+        if (booking.getStatus() == BookingStatus.WAITING) {
+            if (bookingRepository.updateStatusIfWaiting(booking.getId(), status) == 0) {
+                return Optional.empty();
+            }
+            booking.setStatus(status);
+            return Optional.of(booking);
+        }
+        booking.setStatus(status);
+        try {
+            bookingRepository.saveAndFlush(booking);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return Optional.empty();
+        }
+        return Optional.of(booking);
     }
 
+    private Optional<Booking> tryApprove(Booking booking) {
+        if (!bookingIntervalIndex.reserve(booking)) {
+            throw new BadRequestException("Период бронирования пересекается с подтвержденным бронированием");
+        }
+        final Optional<Booking> approvedBooking;
+        try {
+            approvedBooking = tryUpdateStatus(booking, BookingStatus.APPROVED);
+        } catch (RuntimeException e) {
+            bookingIntervalIndex.release(booking);
+            if (e instanceof DataIntegrityViolationException) {
+                throw new BadRequestException("Период бронирования пересекается с подтвержденным бронированием");
+            }
+            throw e;
+        }
+        if (approvedBooking.isEmpty()) {
+            bookingIntervalIndex.release(booking);
+        } else if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        bookingIntervalIndex.release(booking);
+                    }
+                }
+            });
+        }
+        return approvedBooking;
+    }
+
+    /**
+     * Бронирование перечитывается в той же транзакции на запись, что и обновление статуса, поэтому повторная
+     * попытка видит актуальную версию, см. {@link ru.practicum.shareit.common.datasource.ReadReplicaRouting}.
+     */
     @Override
     public BookingDto approveRejectBooking(Long bookingId, Long userId, boolean approved) {
         getUser(userId);
-        final Booking booking = getBookingDtoById(bookingId);
-        if (!booking.getItem().getOwnerId().equals(userId)) {
-            throw new NotFoundException(
-                    "Попытка изменения статуса бронирования вещи, принадлежащей другому пользователю"
-            );
+        for (int attempt = 0; attempt < MAX_STATUS_UPDATE_ATTEMPTS; attempt++) {
+            final Booking updatedBooking = transactionTemplate.execute(status -> {
+                final Booking booking = getBookingDtoById(bookingId);
+                if (!booking.getOwnerId().equals(userId)) {
+                    throw new NotFoundException(
+                            "Попытка изменения статуса бронирования вещи, принадлежащей другому пользователю"
+                    );
+                }
+                if (booking.getStatus() == BookingStatus.APPROVED) {
+                    throw new BadRequestException("Нельзя изменить статус подтвержденного бронирования");
+                }
+                final Optional<Booking> result = approved ? tryApprove(booking)
+                        : tryUpdateStatus(booking, BookingStatus.REJECTED);
+                if (result.isEmpty()) {
+                    status.setRollbackOnly();
+                    return null;
+                }
+                outboxPublisher.publish(AggregateType.BOOKING, bookingId, EventType.UPDATED);
+                return result.get();
+            });
+            if (updatedBooking != null) {
+                return BookingMapper.toBookingDto(updatedBooking);
+            }
+        }
+        throw new ConflictException(String.format("Статус бронирования %s одновременно изменяется другим запросом",
+                bookingId));
+    }
+
+    /**
+     * Применяет решение к пакету бронирований одним запросом обновления и записывает события изменения
+     * в той же транзакции. Бронирования, которые не удалось обновить пакетом из-за ограничения базы данных,
+     * обрабатываются по одному.
+     */
+    private void applyStatus(List<Booking> bookings, BookingStatus status, Long userId,
+                             Map<Long, BookingDecisionResultDto> results) {
+        if (bookings.isEmpty()) {
+            return;
         }
-        if (booking.getStatus() == BookingStatus.APPROVED) {
-            throw new BadRequestException("Нельзя изменить статус подтвержденного бронирования");
+        final boolean approved = status == BookingStatus.APPROVED;
+        final Set<Long> bookingIds = bookings.stream().map(Booking::getId).collect(Collectors.toSet());
+        final Map<Long, BookingStatus> statuses;
+        try {
+            statuses = transactionTemplate.execute(tx -> {
+                final int updated = bookingRepository.updateStatusByIdInIfNotApproved(bookingIds, status);
+                final Map<Long, BookingStatus> currentStatuses = updated == bookingIds.size()
+                        ? Collections.emptyMap()
+                        : bookingRepository.findAllById(bookingIds).stream()
+                                .collect(Collectors.toMap(Booking::getId, Booking::getStatus));
+                outboxPublisher.publishAll(AggregateType.BOOKING, bookingIds.stream()
+                        .filter(bookingId -> currentStatuses.getOrDefault(bookingId, status) == status)
+                        .collect(Collectors.toList()), EventType.UPDATED);
+                return currentStatuses;
+            });
+        } catch (DataIntegrityViolationException e) {
+            for (Booking booking : bookings) {
+                if (approved) {
+                    bookingIntervalIndex.release(booking);
+                }
+                try {
+                    results.put(booking.getId(), BookingDecisionResultDto.success(booking.getId(),
+                            approveRejectBooking(booking.getId(), userId, approved).getStatus()));
+                } catch (BadRequestException | ConflictException | NotFoundException singleException) {
+                    results.put(booking.getId(), BookingDecisionResultDto.failure(booking.getId(),
+                            singleException.getMessage()));
+                }
+            }
+            return;
+        } catch (RuntimeException e) {
+            if (approved) {
+                bookings.forEach(bookingIntervalIndex::release);
+            }
+            throw e;
+        }
+
+        for (Booking booking : bookings) {
+            if (statuses.getOrDefault(booking.getId(), status) != status) {
+                if (approved) {
+                    bookingIntervalIndex.release(booking);
+                }
+                results.put(booking.getId(), BookingDecisionResultDto.failure(booking.getId(), String.format(
+                        "Статус бронирования %s одновременно изменяется другим запросом", booking.getId())));
+            } else {
+                results.put(booking.getId(), BookingDecisionResultDto.success(booking.getId(), status));
+            }
         }
-        booking.setStatus(approved ? BookingStatus.APPROVED : BookingStatus.REJECTED);
-        return BookingMapper.toBookingDto(bookingRepository.save(booking));
     }
 
     @Override
+    public List<BookingDecisionResultDto> approveRejectBookings(List<BookingDecisionDto> decisions, Long userId) {
+        getUser(userId);
+        final Map<Long, Booking> bookings = bookingRepository.findAllById(decisions.stream()
+                        .map(BookingDecisionDto::getBookingId)
+                        .collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Booking::getId, Function.identity()));
+
+        final Map<Long, BookingDecisionResultDto> results = new HashMap<>();
+        final List<Booking> approving = new ArrayList<>();
+        final List<Booking> rejecting = new ArrayList<>();
+        final Set<Long> decided = new HashSet<>();
+        for (BookingDecisionDto decision : decisions) {
+            final Long bookingId = decision.getBookingId();
+            final Booking booking = bookings.get(bookingId);
+            if (!decided.add(bookingId)) {
+                continue;
+            }
+            if (booking == null) {
+                results.put(bookingId, BookingDecisionResultDto.failure(bookingId,
+                        String.format("Обращение к несуществующему бронированию (%s)", bookingId)));
+            } else if (!booking.getOwnerId().equals(userId)) {
+                results.put(bookingId, BookingDecisionResultDto.failure(bookingId,
+                        "Попытка изменения статуса бронирования вещи, принадлежащей другому пользователю"));
+            } else if (booking.getStatus() == BookingStatus.APPROVED) {
+                results.put(bookingId, BookingDecisionResultDto.failure(bookingId,
+                        "Нельзя изменить статус подтвержденного бронирования"));
+            } else if (!decision.getApproved()) {
+                rejecting.add(booking);
+            } else if (!bookingIntervalIndex.reserve(booking)) {
+                results.put(bookingId, BookingDecisionResultDto.failure(bookingId,
+                        "Период бронирования пересекается с подтвержденным бронированием"));
+            } else {
+                approving.add(booking);
+            }
+        }
+
+        applyStatus(approving, BookingStatus.APPROVED, userId, results);
+        applyStatus(rejecting, BookingStatus.REJECTED, userId, results);
+
+        decided.clear();
+        return decisions.stream()
+                .map(decision -> decided.add(decision.getBookingId()) ? results.get(decision.getBookingId())
+                        : BookingDecisionResultDto.failure(decision.getBookingId(),
+                                "Повторное решение по бронированию в пакете"))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public BookingDto getBookingById(Long bookingId, Long userId) {
         getUser(userId);
-        final Booking booking = getBookingDtoById(bookingId);
-        if (!booking.getBooker().getId().equals(userId) && !booking.getItem().getOwnerId().equals(userId)) {
+        final AbstractBooking booking = bookingHistoryRepository.findById(bookingId).orElseThrow(
+                () -> new NotFoundException(String.format("Обращение к несуществующему бронированию (%s)", bookingId))
+        );
+        if (!booking.getBooker().getId().equals(userId) && !booking.getOwnerId().equals(userId)) {
             throw new NotFoundException(
                     "Попытка получения сведений о бронировании не владельцем вещи или не создалелем запроса на аренду"
             );
@@ -115,44 +333,130 @@ public class BookingServiceImpl implements BookingService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<BookingDto> getAllBookingsByBookerAndState(Long userId, String state, int from, int size) {
         final User user = getUser(userId);
-        final Pageable pageable = PageRequest.of(from / size, size, SORT_BY_START_DESC);
+        final Pageable pageable = PageRequest.of(from / size, size, SORT_BY_START_AND_ID_DESC);
 
         switch (convertState(state)) {
-            case ALL: return BookingMapper.toBookingsDto(bookingRepository.findAllByBooker(user, pageable));
+            case ALL: return BookingMapper.toBookingsDto(bookingHistoryRepository.findAllByBooker(user, pageable));
             case CURRENT: return BookingMapper.toBookingsDto(bookingRepository.findAllByBookerStateCurrent(user,
                     pageable));
             case FUTURE: return BookingMapper.toBookingsDto(bookingRepository.findAllByBookerAndStartAfter(user,
                     LocalDateTime.now(), pageable));
-            case PAST: return BookingMapper.toBookingsDto(bookingRepository.findAllByBookerAndEndBefore(user,
+            case PAST: return BookingMapper.toBookingsDto(bookingHistoryRepository.findAllByBookerAndEndBefore(user,
                     LocalDateTime.now(), pageable));
             case WAITING: return BookingMapper.toBookingsDto(bookingRepository.findAllByBookerAndStatus(user,
                     BookingStatus.WAITING, pageable));
-            case REJECTED: return BookingMapper.toBookingsDto(bookingRepository.findAllByBookerAndStatus(user,
+            case REJECTED: return BookingMapper.toBookingsDto(bookingHistoryRepository.findAllByBookerAndStatus(user,
                     BookingStatus.REJECTED, pageable));
             default: return Collections.emptyList();
         }
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public List<BookingDto> getAllBookingsByBookerAndState(Long userId, String state, PageCursor after, int size) {
+        final User user = getUser(userId);
+        final BookingState bookingState = convertState(state);
+        final LocalDateTime cursorStart = after.getDateTimeKey();
+        final Long cursorId = after.getId();
+        final Pageable pageable = PageRequest.of(0, size, SORT_BY_START_AND_ID_DESC);
+
+        switch (bookingState) {
+            case ALL: return BookingMapper.toBookingsDto(bookingHistoryRepository.findPageByBooker(user, cursorStart,
+                    cursorId, pageable));
+            case CURRENT: return BookingMapper.toBookingsDto(bookingRepository.findPageByBookerStateCurrent(user,
+                    cursorStart, cursorId, pageable));
+            case FUTURE: return BookingMapper.toBookingsDto(bookingRepository.findPageByBookerAndStartAfter(user,
+                    LocalDateTime.now(), cursorStart, cursorId, pageable));
+            case PAST: return BookingMapper.toBookingsDto(bookingHistoryRepository.findPageByBookerAndEndBefore(user,
+                    LocalDateTime.now(), cursorStart, cursorId, pageable));
+            case WAITING: return BookingMapper.toBookingsDto(bookingRepository.findPageByBookerAndStatus(user,
+                    BookingStatus.WAITING, cursorStart, cursorId, pageable));
+            case REJECTED: return BookingMapper.toBookingsDto(bookingHistoryRepository.findPageByBookerAndStatus(user,
+                    BookingStatus.REJECTED, cursorStart, cursorId, pageable));
+            default: return Collections.emptyList();
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public List<BookingDto> getAllBookingsByOwnerAndState(Long userId, String state, int from, int size) {
         getUser(userId);
-        final Pageable pageable = PageRequest.of(from / size, size, SORT_BY_START_DESC);
+        final Pageable pageable = PageRequest.of(from / size, size, SORT_BY_START_AND_ID_DESC);
 
         switch (convertState(state)) {
-            case ALL: return BookingMapper.toBookingsDto(bookingRepository.findAllByItemOwnerId(userId, pageable));
-            case CURRENT: return BookingMapper.toBookingsDto(bookingRepository.findAllByItemOwnerIdStateCurrent(userId,
+            case ALL: return BookingMapper.toBookingsDto(bookingHistoryRepository.findAllByOwnerId(userId, pageable));
+            case CURRENT: return BookingMapper.toBookingsDto(bookingRepository.findAllByOwnerIdStateCurrent(userId,
                     pageable));
-            case FUTURE: return BookingMapper.toBookingsDto(bookingRepository.findAllByItemOwnerIdAndStartAfter(userId,
+            case FUTURE: return BookingMapper.toBookingsDto(bookingRepository.findAllByOwnerIdAndStartAfter(userId,
                     LocalDateTime.now(), pageable));
-            case PAST: return BookingMapper.toBookingsDto(bookingRepository.findAllByItemOwnerIdAndEndBefore(userId,
+            case PAST: return BookingMapper.toBookingsDto(bookingHistoryRepository.findAllByOwnerIdAndEndBefore(userId,
                     LocalDateTime.now(), pageable));
-            case WAITING: return BookingMapper.toBookingsDto(bookingRepository.findAllByItemOwnerIdAndStatus(userId,
+            case WAITING: return BookingMapper.toBookingsDto(bookingRepository.findAllByOwnerIdAndStatus(userId,
                     BookingStatus.WAITING, pageable));
-            case REJECTED: return BookingMapper.toBookingsDto(bookingRepository.findAllByItemOwnerIdAndStatus(userId,
+            case REJECTED: return BookingMapper.toBookingsDto(bookingHistoryRepository.findAllByOwnerIdAndStatus(userId,
                     BookingStatus.REJECTED, pageable));
             default: return Collections.emptyList();
         }
     }
+
+    /**
+     * Передает бронирования по одному, не накапливая их в памяти: прочитанное бронирование вместе с вещью
+     * и арендатором сразу отсоединяется от контекста персистентности.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportBookingsByOwnerAndState(Long userId, String state, Consumer<BookingDto> action) {
+        getUser(userId);
+        try (Stream<? extends AbstractBooking> bookings = streamBookingsByOwnerAndState(userId,
+                convertState(state))) {
+            bookings.forEach(booking -> {
+                action.accept(BookingMapper.toBookingDto(booking));
+                detach(booking);
+            });
+        }
+    }
+
+    private Stream<? extends AbstractBooking> streamBookingsByOwnerAndState(Long userId, BookingState state) {
+        switch (state) {
+            case ALL: return bookingHistoryRepository.streamAllByOwnerId(userId, SORT_BY_START_AND_ID_DESC);
+            case CURRENT: return bookingRepository.streamAllByOwnerIdStateCurrent(userId, SORT_BY_START_AND_ID_DESC);
+            case FUTURE: return bookingRepository.streamAllByOwnerIdAndStartAfter(userId, LocalDateTime.now(),
+                    SORT_BY_START_AND_ID_DESC);
+            case PAST: return bookingHistoryRepository.streamAllByOwnerIdAndEndBefore(userId, LocalDateTime.now(),
+                    SORT_BY_START_AND_ID_DESC);
+            case WAITING: return bookingRepository.streamAllByOwnerIdAndStatus(userId, BookingStatus.WAITING,
+                    SORT_BY_START_AND_ID_DESC);
+            case REJECTED: return bookingHistoryRepository.streamAllByOwnerIdAndStatus(userId,
+                    BookingStatus.REJECTED, SORT_BY_START_AND_ID_DESC);
+            default: return Stream.empty();
+        }
+    }
+
+    private void detach(AbstractBooking booking) {
+        entityManager.detach(booking);
+        entityManager.detach(booking.getBooker());
+        if (booking.getItem().getRequest() != null) {
+            entityManager.detach(booking.getItem().getRequest());
+        }
+        entityManager.detach(booking.getItem());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BookingSummaryDto getBookingsSummaryByBooker(Long userId) {
+        final User user = getUser(userId);
+        return BookingMapper.toBookingSummaryDto(bookingHistoryRepository.countByBookerGroupByState(user,
+                LocalDateTime.now()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BookingSummaryDto getBookingsSummaryByOwner(Long userId) {
+        getUser(userId);
+        return BookingMapper.toBookingSummaryDto(bookingHistoryRepository.countByOwnerIdGroupByState(userId,
+                LocalDateTime.now()));
+    }
 }
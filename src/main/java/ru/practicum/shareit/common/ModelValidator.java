@@ -7,7 +7,6 @@ import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
 import javax.validation.Validator;
 import java.util.Map;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 @Component
@@ -15,13 +14,29 @@ public class ModelValidator<T> {
 
     private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
 
+    public Map<String, String> validate(T t) {
+        return validator.validate(t).stream()
+                .collect(Collectors.toMap(v -> v.getPropertyPath().toString(), ConstraintViolation::getMessage));
+    }
+
     public void apply(T t) {
-        final Set<ConstraintViolation<T>> violations = validator.validate(t);
+        final Map<String, String> violations = validate(t);
+
+        if (!violations.isEmpty()) {
+            throw new ValidationException(violations);
+        }
+    }
+
+    /**
+     * Проверяет только заполненные поля частичного обновления: незаполненные поля не изменяются.
+     */
+    public void applyPartial(T t) {
+        final Map<String, String> violations = validator.validate(t).stream()
+                .filter(v -> v.getInvalidValue() != null)
+                .collect(Collectors.toMap(v -> v.getPropertyPath().toString(), ConstraintViolation::getMessage));
 
         if (!violations.isEmpty()) {
-            final Map<String, String> violationsMap = violations.stream()
-                    .collect(Collectors.toMap(v -> v.getPropertyPath().toString(), ConstraintViolation::getMessage));
-            throw new ValidationException(violationsMap);
+            throw new ValidationException(violations);
         }
     }
 }
@@ -0,0 +1,69 @@
+package ru.practicum.shareit.common;
+
+import lombok.Value;
+import org.springframework.http.ResponseEntity;
+import ru.practicum.shareit.common.exceptoins.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Непрозрачный курсор постраничного вывода: значение ключа сортировки и id последней записи страницы.
+ */
+@Value(staticConstructor = "of")
+public class PageCursor {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final String SEPARATOR = "|";
+
+    String key;
+    Long id;
+
+    public static PageCursor of(Long id) {
+        return of("", id);
+    }
+
+    public static PageCursor of(LocalDateTime key, Long id) {
+        return of(key.toString(), id);
+    }
+
+    public static PageCursor decode(String token) {
+        try {
+            final String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            final int separator = value.lastIndexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new BadRequestException("Некорректный курсор страницы");
+            }
+            return of(value.substring(0, separator), Long.valueOf(value.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Некорректный курсор страницы");
+        }
+    }
+
+    public static <T> ResponseEntity<List<T>> toResponse(List<T> page, int size, Function<T, PageCursor> cursorOf) {
+        if (page.isEmpty() || page.size() < size) {
+            return ResponseEntity.ok(page);
+        }
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_HEADER, cursorOf.apply(page.get(page.size() - 1)).encode())
+                .body(page);
+    }
+
+    public LocalDateTime getDateTimeKey() {
+        try {
+            return LocalDateTime.parse(key);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Некорректный курсор страницы");
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((key + SEPARATOR + id).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,36 @@
+package ru.practicum.shareit.common.cache;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.util.UUID;
+
+/**
+ * Кэш второго уровня Hibernate на JCache с провайдером Caffeine. Кэш включается свойствами
+ * spring.jpa.properties.hibernate.cache.*, размер и время жизни записей регионов users, items и requests
+ * задаются в application.conf.
+ * <p>
+ * Hibernate закрывает CacheManager вместе с фабрикой сессий, поэтому каждый контекст приложения получает
+ * собственный экземпляр, а не общий CacheManager провайдера по умолчанию.
+ */
+@Configuration
+public class EntityCacheConfig {
+
+    @Bean
+    public CacheManager entityCacheManager() {
+        final CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        return provider.getCacheManager(URI.create("shareit-" + UUID.randomUUID()), provider.getDefaultClassLoader());
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheManagerCustomizer(CacheManager entityCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+    }
+}
@@ -0,0 +1,76 @@
+package ru.practicum.shareit.common.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+
+import javax.sql.DataSource;
+
+/**
+ * Подключает реплику для чтения, если задан shareit.datasource.replica.url. Основной пул настраивается
+ * свойствами spring.datasource.*, пул реплики — shareit.datasource.replica.*. Без реплики приложение
+ * работает с единственным источником данных Spring Boot.
+ */
+@Configuration
+@ConditionalOnProperty(name = "shareit.datasource.replica.url")
+public class ReadReplicaDataSourceConfig {
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties primaryDataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("shareit.datasource.replica")
+    public DataSourceProperties replicaDataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(
+            @Qualifier("primaryDataSourceProperties") DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConfigurationProperties("shareit.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(
+            @Qualifier("replicaDataSourceProperties") DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        return new LazyConnectionDataSourceProxy(
+                new ReadReplicaRoutingDataSource(primaryDataSource, replicaDataSource));
+    }
+
+    /**
+     * Подключает {@link ReadReplicaJpaDialect} к фабрике EntityManager, созданной Spring Boot.
+     */
+    @Bean
+    public static BeanPostProcessor readReplicaJpaDialectPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof AbstractEntityManagerFactoryBean) {
+                    ((AbstractEntityManagerFactoryBean) bean).setJpaDialect(new ReadReplicaJpaDialect());
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package ru.practicum.shareit.common.datasource;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import javax.persistence.CacheStoreMode;
+import javax.persistence.EntityManager;
+import java.sql.SQLException;
+
+/**
+ * Сессии транзакций только для чтения берут сущности из кэша второго уровня, но не помещают в него прочитанное:
+ * такие транзакции выполняются на реплике, см. {@link ReadReplicaRouting}.
+ */
+public class ReadReplicaJpaDialect extends HibernateJpaDialect {
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws SQLException {
+        final Object transactionData = super.beginTransaction(entityManager, definition);
+        if (definition.isReadOnly()) {
+            entityManager.setProperty(AvailableSettings.JPA_SHARED_CACHE_STORE_MODE, CacheStoreMode.BYPASS);
+        }
+        return transactionData;
+    }
+}
@@ -0,0 +1,29 @@
+package ru.practicum.shareit.common.datasource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Сообщает, подключена ли реплика для чтения. Транзакции только для чтения выполняются на ней,
+ * см. {@link ReadReplicaRoutingDataSource}, транзакции на запись — на основной базе данных.
+ * <p>
+ * Реплика может отставать от основной базы и еще не содержать только что зафиксированные изменения. Поэтому
+ * код, которому нужно зафиксированное состояние, читает его в транзакции на запись: загрузка в кэши, пересчет
+ * данных по событиям изменения, чтение таблицы событий и повторная попытка после конфликта версий.
+ * Прочитанные на реплике данные не попадают в кэши.
+ */
+@Component
+public class ReadReplicaRouting {
+
+    private final boolean replicaEnabled;
+
+    @Autowired
+    public ReadReplicaRouting(@Value("${shareit.datasource.replica.url:}") String replicaUrl) {
+        this.replicaEnabled = !replicaUrl.isBlank();
+    }
+
+    public boolean isReplicaEnabled() {
+        return replicaEnabled;
+    }
+}
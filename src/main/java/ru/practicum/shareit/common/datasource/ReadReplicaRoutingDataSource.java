@@ -0,0 +1,32 @@
+package ru.practicum.shareit.common.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Выдает соединения транзакций только для чтения из пула реплики, остальные — из пула основной базы данных.
+ * Источник выбирается при получении соединения, поэтому его нужно оборачивать в
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: без него соединение берется
+ * в начале транзакции, когда она еще не отмечена как readOnly.
+ */
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {
+        PRIMARY,
+        REPLICA
+    }
+
+    public ReadReplicaRoutingDataSource(DataSource primary, DataSource replica) {
+        setTargetDataSources(Map.<Object, Object>of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? Route.REPLICA : Route.PRIMARY;
+    }
+}
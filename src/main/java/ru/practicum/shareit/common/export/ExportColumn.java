@@ -0,0 +1,14 @@
+package ru.practicum.shareit.common.export;
+
+import lombok.Value;
+
+import java.util.function.Function;
+
+/**
+ * Колонка CSV-выгрузки: заголовок и способ получить значение из строки.
+ */
+@Value(staticConstructor = "of")
+public class ExportColumn<T> {
+    String name;
+    Function<T, Object> value;
+}
@@ -0,0 +1,25 @@
+package ru.practicum.shareit.common.export;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import ru.practicum.shareit.common.exceptoins.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+
+@Getter
+@RequiredArgsConstructor
+public enum ExportFormat {
+    NDJSON(MediaType.APPLICATION_NDJSON),
+    CSV(new MediaType("text", "csv", StandardCharsets.UTF_8));
+
+    private final MediaType mediaType;
+
+    public static ExportFormat from(String format) {
+        try {
+            return valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(String.format("Неизвестный формат выгрузки: %s", format));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ru.practicum.shareit.common.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Пишет выгрузку в ответ построчно, не накапливая строки в памяти.
+ * Ответ не трогается до первой строки, поэтому ошибка до начала выгрузки отдается обычным ответом об ошибке.
+ */
+public class ExportWriter<T> {
+
+    private static final String SEPARATOR = ",";
+    private static final String QUOTE = "\"";
+
+    private final HttpServletResponse response;
+    private final ExportFormat format;
+    private final ObjectMapper objectMapper;
+    private final List<ExportColumn<T>> columns;
+    private OutputStream outputStream;
+
+    public ExportWriter(HttpServletResponse response, ExportFormat format, ObjectMapper objectMapper,
+                        List<ExportColumn<T>> columns) {
+        this.response = response;
+        this.format = format;
+        this.objectMapper = objectMapper;
+        this.columns = columns;
+    }
+
+    public void write(T row) {
+        try {
+            start();
+            if (format == ExportFormat.NDJSON) {
+                outputStream.write(objectMapper.writeValueAsBytes(row));
+                outputStream.write('\n');
+            } else {
+                writeLine(columns.stream()
+                        .map(column -> escape(column.getValue().apply(row)))
+                        .collect(Collectors.joining(SEPARATOR)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Завершает выгрузку; пустая CSV-выгрузка все равно получает строку заголовков.
+     */
+    public void finish() throws IOException {
+        start();
+        outputStream.flush();
+    }
+
+    private void start() throws IOException {
+        if (outputStream != null) {
+            return;
+        }
+        response.setContentType(format.getMediaType().toString());
+        outputStream = response.getOutputStream();
+        if (format == ExportFormat.CSV) {
+            writeLine(columns.stream()
+                    .map(column -> escape(column.getName()))
+                    .collect(Collectors.joining(SEPARATOR)));
+        }
+    }
+
+    private void writeLine(String line) throws IOException {
+        outputStream.write(line.getBytes(StandardCharsets.UTF_8));
+        outputStream.write('\n');
+    }
+
+    private static String escape(Object value) {
+        final String text = Objects.toString(value, "");
+        if (text.contains(SEPARATOR) || text.contains(QUOTE) || text.contains("\n") || text.contains("\r")) {
+            return QUOTE + text.replace(QUOTE, QUOTE + QUOTE) + QUOTE;
+        }
+        return text;
+    }
+}
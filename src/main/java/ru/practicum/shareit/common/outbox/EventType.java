@@ -0,0 +1,5 @@
+package ru.practicum.shareit.common.outbox;
+
+public enum EventType {
+    CREATED, UPDATED, DELETED
+}
@@ -0,0 +1,63 @@
+package ru.practicum.shareit.common.outbox;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Событие изменения агрегата, записанное в одной транзакции с самим изменением. Событие не содержит состояния
+ * агрегата: подписчики при необходимости читают его из базы данных по идентификатору. После неудачной доставки
+ * событие повторяется не раньше nextAttempt, а исчерпавшее попытки событие откладывается (parked) и больше
+ * не доставляется и не задерживает последующие события агрегата.
+ */
+@Entity
+@Table(name = "outbox_events", schema = "public")
+@NoArgsConstructor
+@Getter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_events_seq")
+    @SequenceGenerator(name = "outbox_events_seq", sequenceName = "outbox_events_seq", schema = "public",
+            allocationSize = 50)
+    Long id;
+    @Enumerated(value = EnumType.STRING)
+    @Column(name = "aggregate_type")
+    AggregateType aggregateType;
+    @Column(name = "aggregate_id")
+    Long aggregateId;
+    @Enumerated(value = EnumType.STRING)
+    @Column(name = "event_type")
+    EventType eventType;
+    @Column(name = "created_date")
+    LocalDateTime created;
+    @Setter
+    @Column(name = "attempts")
+    int attempts;
+    @Setter
+    @Column(name = "next_attempt_date")
+    LocalDateTime nextAttempt;
+    @Setter
+    @Column(name = "parked")
+    boolean parked;
+
+    public static OutboxEvent of(Long id, AggregateType aggregateType, Long aggregateId, EventType eventType,
+                                 LocalDateTime created) {
+        final OutboxEvent event = new OutboxEvent();
+        event.id = id;
+        event.aggregateType = aggregateType;
+        event.aggregateId = aggregateId;
+        event.eventType = eventType;
+        event.created = created;
+        return event;
+    }
+
+    public boolean isDueAt(LocalDateTime time) {
+        return nextAttempt == null || !nextAttempt.isAfter(time);
+    }
+}
@@ -0,0 +1,42 @@
+package ru.practicum.shareit.common.outbox;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Читает события в транзакции на запись, то есть с основной базы данных: уже доставленные и удаленные
+     * события не доставляются повторно, см. {@link ru.practicum.shareit.common.datasource.ReadReplicaRouting}.
+     */
+    @Transactional
+    List<OutboxEvent> findAllByParkedFalseAndIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Блокирует на время доставки те события из ids, которые можно доставить: событие не отложено, а у его
+     * агрегата нет недоставленного и не отложенного события вне ids с меньшим идентификатором. Событие, которое
+     * уже доставила и удалила другая транзакция, не возвращается.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(
+            "select e " +
+            "from OutboxEvent e " +
+            "   where e.id in :ids " +
+            "       and e.parked = false " +
+            "       and not exists (select p.id from OutboxEvent p " +
+            "           where p.aggregateType = e.aggregateType " +
+            "               and p.aggregateId = e.aggregateId " +
+            "               and p.id < e.id " +
+            "               and p.parked = false " +
+            "               and p.id not in :ids) " +
+            "order by e.id"
+    )
+    List<OutboxEvent> lockDeliverableByIdIn(Collection<Long> ids);
+}
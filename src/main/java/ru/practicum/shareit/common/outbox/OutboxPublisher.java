@@ -0,0 +1,56 @@
+package ru.practicum.shareit.common.outbox;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Записывает события изменения агрегатов в таблицу outbox_events. Вызывается только внутри транзакции,
+ * изменяющей агрегат, чтобы событие и изменение сохранялись или откатывались вместе. После фиксации
+ * транзакции события сразу передаются подписчикам.
+ */
+@Component
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class OutboxPublisher {
+
+    OutboxEventRepository outboxEventRepository;
+    OutboxRelay outboxRelay;
+
+    private void relayAfterCommit(List<OutboxEvent> events) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                outboxRelay.relayCommitted(events);
+            }
+        });
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(AggregateType aggregateType, Long aggregateId, EventType eventType) {
+        relayAfterCommit(List.of(outboxEventRepository.save(OutboxEvent.of(null, aggregateType, aggregateId,
+                eventType, LocalDateTime.now()))));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publishAll(AggregateType aggregateType, Collection<Long> aggregateIds, EventType eventType) {
+        if (aggregateIds.isEmpty()) {
+            return;
+        }
+        final LocalDateTime now = LocalDateTime.now();
+        relayAfterCommit(outboxEventRepository.saveAll(aggregateIds.stream()
+                .map(aggregateId -> OutboxEvent.of(null, aggregateType, aggregateId, eventType, now))
+                .collect(Collectors.toList())));
+    }
+}
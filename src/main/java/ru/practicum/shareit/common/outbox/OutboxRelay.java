@@ -0,0 +1,233 @@
+package ru.practicum.shareit.common.outbox;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Доставляет события подписчикам и удаляет доставленные события. События транзакции доставляются сразу
+ * после ее фиксации, а недоставленные — при опросе таблицы пакетами в порядке идентификаторов.
+ * <p>
+ * События одного агрегата доставляются по одному в порядке идентификаторов, какой бы путь их ни доставлял
+ * и на каком бы узле он ни выполнялся: транзакция доставки блокирует строки только тех своих событий, у агрегата
+ * которых не осталось недоставленного события с меньшим идентификатором, и удаляет доставленные события
+ * до фиксации. Пропущенные события доставляет опрос, а события других агрегатов доставляются без задержки.
+ * <p>
+ * Порядок идентификаторов совпадает с порядком записи только внутри одной транзакции. Идентификаторы
+ * выделяются из последовательности блоками по 50, поэтому у событий, записанных параллельными транзакциями
+ * или на разных узлах, порядок идентификаторов может не совпадать с порядком фиксации. События не содержат
+ * состояния агрегата, и подписчики обязаны давать верный результат при любом порядке, см. {@link OutboxSubscriber}.
+ * <p>
+ * После неудачной доставки событие повторяется с экспоненциально растущей паузой, а после
+ * shareit.outbox.max-attempts попыток откладывается: оно остается в таблице для разбора, но больше
+ * не доставляется и не задерживает последующие события агрегата.
+ */
+@Slf4j
+@Component
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class OutboxRelay {
+
+    static int RELAY_BATCH_SIZE = 500;
+
+    OutboxEventRepository outboxEventRepository;
+    ObjectProvider<OutboxSubscriber> subscribers;
+    TransactionTemplate eventTransaction;
+    int maxAttempts;
+    Duration retryBackoff;
+    Duration maxRetryBackoff;
+
+    /**
+     * События доставляются в отдельной транзакции: после фиксации транзакции, записавшей события, ее ресурсы
+     * еще привязаны к потоку, и без REQUIRES_NEW подписчики выполнялись бы в уже завершенной транзакции.
+     */
+    @Autowired
+    public OutboxRelay(OutboxEventRepository outboxEventRepository, ObjectProvider<OutboxSubscriber> subscribers,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${shareit.outbox.max-attempts:10}") int maxAttempts,
+                       @Value("${shareit.outbox.retry-backoff:PT10S}") Duration retryBackoff,
+                       @Value("${shareit.outbox.max-retry-backoff:PT1H}") Duration maxRetryBackoff) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.subscribers = subscribers;
+        this.eventTransaction = new TransactionTemplate(transactionManager);
+        this.eventTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        this.maxRetryBackoff = maxRetryBackoff;
+    }
+
+    private static List<Long> ids(List<OutboxEvent> events) {
+        return events.stream().map(OutboxEvent::getId).collect(Collectors.toList());
+    }
+
+    @Scheduled(cron = "${shareit.outbox.relay-cron:*/10 * * * * *}")
+    public void relayDue() {
+        final int delivered = relay();
+        if (delivered > 0) {
+            log.debug("Подписчикам доставлено {} событий", delivered);
+        }
+    }
+
+    /**
+     * Доставляет события только что зафиксированной транзакции одним вызовом каждого подписчика. Если доставка
+     * не удалась, события доставляются по одному, а недоставленные остаются в таблице до следующего опроса.
+     * Ошибка не передается вызывающему: изменение уже сохранено.
+     */
+    public void relayCommitted(List<OutboxEvent> events) {
+        final List<OutboxSubscriber> eventSubscribers = subscribers.orderedStream().collect(Collectors.toList());
+        try {
+            eventTransaction.executeWithoutResult(status -> deliverTogether(events, eventSubscribers));
+        } catch (RuntimeException e) {
+            log.warn("Не удалось доставить {} событий транзакции, они будут доставлены по одному: {}",
+                    events.size(), e.toString());
+            final Map<AggregateType, Set<Long>> heldBackAggregates = new EnumMap<>(AggregateType.class);
+            events.forEach(event -> deliverInOrder(event, eventSubscribers, heldBackAggregates));
+        }
+    }
+
+    synchronized int relay() {
+        final List<OutboxSubscriber> eventSubscribers = subscribers.orderedStream().collect(Collectors.toList());
+        final Map<AggregateType, Set<Long>> heldBackAggregates = new EnumMap<>(AggregateType.class);
+        final PageRequest batch = PageRequest.of(0, RELAY_BATCH_SIZE);
+        int delivered = 0;
+        long lastId = 0L;
+        List<OutboxEvent> events;
+        do {
+            events = outboxEventRepository.findAllByParkedFalseAndIdGreaterThanOrderByIdAsc(lastId, batch);
+            for (OutboxEvent event : events) {
+                if (deliverInOrder(event, eventSubscribers, heldBackAggregates)) {
+                    delivered++;
+                }
+            }
+            if (!events.isEmpty()) {
+                lastId = events.get(events.size() - 1).getId();
+            }
+        } while (events.size() == RELAY_BATCH_SIZE);
+        return delivered;
+    }
+
+    /**
+     * Событие, не возвращенное блокировкой, задерживает последующие события своего агрегата в этом вызове.
+     */
+    private void deliverTogether(List<OutboxEvent> events, List<OutboxSubscriber> eventSubscribers) {
+        final Map<Long, OutboxEvent> lockedEvents = outboxEventRepository.lockDeliverableByIdIn(ids(events)).stream()
+                .collect(Collectors.toMap(OutboxEvent::getId, Function.identity()));
+        final LocalDateTime now = LocalDateTime.now();
+        final Map<AggregateType, Set<Long>> heldBackAggregates = new EnumMap<>(AggregateType.class);
+        final List<OutboxEvent> deliverable = new ArrayList<>(lockedEvents.size());
+        for (OutboxEvent event : events) {
+            final Set<Long> heldBackIds = heldBackAggregates.computeIfAbsent(event.getAggregateType(),
+                    aggregateType -> new HashSet<>());
+            final OutboxEvent locked = lockedEvents.get(event.getId());
+            if (heldBackIds.contains(event.getAggregateId()) || locked == null || !locked.isDueAt(now)) {
+                heldBackIds.add(event.getAggregateId());
+                continue;
+            }
+            deliverable.add(locked);
+        }
+        if (deliverable.isEmpty()) {
+            return;
+        }
+        eventSubscribers.forEach(subscriber -> subscriber.onEvents(deliverable));
+        outboxEventRepository.deleteAllByIdInBatch(ids(deliverable));
+    }
+
+    /**
+     * Доставляет событие в собственной транзакции, если события его агрегата с меньшими идентификаторами уже доставлены.
+     * Агрегат недоставленного события запоминается, чтобы не пытаться доставить его последующие события.
+     */
+    private boolean deliverInOrder(OutboxEvent event, List<OutboxSubscriber> eventSubscribers,
+                                   Map<AggregateType, Set<Long>> heldBackAggregates) {
+        final Set<Long> heldBackIds = heldBackAggregates.computeIfAbsent(event.getAggregateType(),
+                aggregateType -> new HashSet<>());
+        if (heldBackIds.contains(event.getAggregateId())) {
+            return false;
+        }
+        if (!event.isDueAt(LocalDateTime.now())) {
+            heldBackIds.add(event.getAggregateId());
+            return false;
+        }
+        final Boolean delivered;
+        try {
+            delivered = eventTransaction.execute(status -> deliverOne(event.getId(), eventSubscribers));
+        } catch (RuntimeException e) {
+            recordFailure(event, e);
+            heldBackIds.add(event.getAggregateId());
+            return false;
+        }
+        if (!Boolean.TRUE.equals(delivered)) {
+            heldBackIds.add(event.getAggregateId());
+            return false;
+        }
+        return true;
+    }
+
+    private boolean deliverOne(Long id, List<OutboxSubscriber> eventSubscribers) {
+        final List<OutboxEvent> lockedEvents = outboxEventRepository.lockDeliverableByIdIn(List.of(id));
+        if (lockedEvents.isEmpty() || !lockedEvents.get(0).isDueAt(LocalDateTime.now())) {
+            return false;
+        }
+        final OutboxEvent event = lockedEvents.get(0);
+        eventSubscribers.forEach(subscriber -> subscriber.onEvent(event));
+        outboxEventRepository.deleteAllByIdInBatch(List.of(id));
+        return true;
+    }
+
+    private void recordFailure(OutboxEvent event, RuntimeException cause) {
+        try {
+            eventTransaction.executeWithoutResult(status ->
+                    outboxEventRepository.findById(event.getId()).ifPresent(failed -> scheduleRetry(failed, cause)));
+        } catch (RuntimeException e) {
+            log.warn("Не удалось сохранить неудачную попытку доставки события id={}", event.getId(), e);
+        }
+    }
+
+    /**
+     * Трасса ошибки подписчика пишется в журнал при первой неудаче и при откладывании события, повторные
+     * неудачи журналируются одной строкой.
+     */
+    private void scheduleRetry(OutboxEvent event, RuntimeException cause) {
+        final int attempts = event.getAttempts() + 1;
+        event.setAttempts(attempts);
+        if (attempts >= maxAttempts) {
+            event.setParked(true);
+            log.error("Событие {} {} (id={}) не доставлено за {} попыток и отложено", event.getEventType(),
+                    event.getAggregateType(), event.getAggregateId(), attempts, cause);
+            return;
+        }
+        final Duration backoff = retryBackoff(attempts);
+        event.setNextAttempt(LocalDateTime.now().plus(backoff));
+        if (attempts == 1) {
+            log.warn("Не удалось доставить событие {} {} (id={}), доставка будет повторена через {}",
+                    event.getEventType(), event.getAggregateType(), event.getAggregateId(), backoff, cause);
+        } else {
+            log.warn("Попытка {} доставить событие {} {} (id={}) не удалась: {}, доставка будет повторена через {}",
+                    attempts, event.getEventType(), event.getAggregateType(), event.getAggregateId(), cause,
+                    backoff);
+        }
+    }
+
+    Duration retryBackoff(int attempts) {
+        final Duration backoff = retryBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(maxRetryBackoff) > 0 ? maxRetryBackoff : backoff;
+    }
+}
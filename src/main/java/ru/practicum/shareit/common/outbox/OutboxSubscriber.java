@@ -0,0 +1,25 @@
+package ru.practicum.shareit.common.outbox;
+
+import java.util.List;
+
+/**
+ * Получатель событий изменения агрегатов. Доставка выполняется не менее одного раза, поэтому обработка
+ * события должна быть идемпотентной. События одного агрегата доставляются по одному в порядке идентификаторов:
+ * следующее событие не доставляется, пока предыдущее не обработано всеми подписчиками или не отложено после
+ * исчерпания попыток. Порядок идентификаторов не гарантирует порядок фиксации для событий параллельных
+ * транзакций, поэтому подписчик не должен полагаться на порядок событий: он читает текущее состояние агрегата
+ * из базы данных и учитывает, что агрегат мог быть уже удален.
+ * События обрабатываются в транзакции на запись, отдельной от транзакции, записавшей их.
+ */
+public interface OutboxSubscriber {
+
+    void onEvent(OutboxEvent event);
+
+    /**
+     * Обрабатывает события одной транзакции в общей транзакции доставки. Подписчик переопределяет метод,
+     * если события можно обработать вместе, например пересчитать затронутый агрегат один раз.
+     */
+    default void onEvents(List<OutboxEvent> events) {
+        events.forEach(this::onEvent);
+    }
+}
@@ -0,0 +1,12 @@
+package ru.practicum.shareit.common.repository;
+
+/**
+ * Общие параметры запросов репозиториев, читающих строки потоком.
+ */
+public class StreamingQueries {
+
+    /**
+     * Количество строк, получаемых из базы данных за одно обращение при потоковом чтении.
+     */
+    public static final int STREAM_FETCH_SIZE = 500;
+}
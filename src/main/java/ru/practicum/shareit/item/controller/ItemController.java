@@ -1,19 +1,30 @@
 package ru.practicum.shareit.item.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.common.PageCursor;
+import ru.practicum.shareit.common.export.ExportFormat;
+import ru.practicum.shareit.common.export.ExportWriter;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemGetDto;
+import ru.practicum.shareit.item.dto.ItemMapper;
+import ru.practicum.shareit.item.dto.TimeSlotDto;
 import ru.practicum.shareit.item.service.ItemService;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.PositiveOrZero;
-import java.util.Collection;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
 
 @Slf4j
 @RestController
@@ -23,6 +34,7 @@ import java.util.Collection;
 public class ItemController {
 
     private final ItemService itemService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("/{itemId}")
     public ItemGetDto getById(@RequestHeader("X-Sharer-User-Id") @NotNull Long userId,
@@ -31,12 +43,39 @@ public class ItemController {
         return itemService.getItemById(itemId, userId);
     }
 
+    @GetMapping("/{itemId}/availability")
+    public List<TimeSlotDto> getAvailability(@RequestHeader("X-Sharer-User-Id") @NotNull Long userId,
+                                             @PathVariable @NotNull Long itemId,
+                                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                             LocalDateTime from,
+                                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                             LocalDateTime to) {
+        log.debug("Запрос пользователя {} свободных периодов вещи {} с {} по {}", userId, itemId, from, to);
+        return itemService.getItemAvailability(itemId, userId, from, to);
+    }
+
     @GetMapping
-    public Collection<ItemGetDto> getByUserId(@RequestHeader("X-Sharer-User-Id") @NotNull Long userId,
-                                              @RequestParam(defaultValue = "0") @PositiveOrZero int from,
-                                              @RequestParam(defaultValue = "10") @PositiveOrZero int size) {
-        log.debug("Запрос списка вещей пользователя с id={} постранично from={}, size={}", userId, from, size);
-        return itemService.getItemsByUserId(userId, from, size);
+    public ResponseEntity<List<ItemGetDto>> getByUserId(@RequestHeader("X-Sharer-User-Id") @NotNull Long userId,
+                                                        @RequestParam(defaultValue = "0") @PositiveOrZero int from,
+                                                        @RequestParam(defaultValue = "10") @PositiveOrZero int size,
+                                                        @RequestParam(required = false) String after) {
+        log.debug("Запрос списка вещей пользователя с id={} постранично from={}, size={}, after={}", userId, from,
+                size, after);
+        final List<ItemGetDto> items = after == null
+                ? itemService.getItemsByUserId(userId, from, size)
+                : itemService.getItemsByUserId(userId, PageCursor.decode(after), size);
+        return PageCursor.toResponse(items, size, item -> PageCursor.of(item.getId()));
+    }
+
+    @GetMapping("/export")
+    public void exportByUserId(@RequestHeader("X-Sharer-User-Id") @NotNull Long userId,
+                               @RequestParam(defaultValue = "ndjson") String format,
+                               HttpServletResponse response) throws IOException {
+        log.debug("Выгрузка вещей пользователя с id={} в формате {}", userId, format);
+        final ExportWriter<ItemDto> writer = new ExportWriter<>(response, ExportFormat.from(format), objectMapper,
+                ItemMapper.EXPORT_COLUMNS);
+        itemService.exportItemsByUserId(userId, writer::write);
+        writer.finish();
     }
 
     @PostMapping
@@ -45,6 +84,13 @@ public class ItemController {
         return itemService.createItem(itemDto, userId);
     }
 
+    @PostMapping("/batch")
+    public List<ItemDto> createBatch(@RequestHeader("X-Sharer-User-Id") @NotNull Long userId,
+                                     @RequestBody @NotNull List<ItemDto> itemsDto) {
+        log.debug("Запрос пакетного создания {} вещей от пользователя с id={}", itemsDto.size(), userId);
+        return itemService.createItems(itemsDto, userId);
+    }
+
     @PatchMapping("/{itemId}")
     public ItemDto update(@RequestHeader("X-Sharer-User-Id") @NotNull Long userId, @PathVariable @NotNull Long itemId,
                           @RequestBody ItemDto itemDto) {
@@ -53,11 +99,19 @@ public class ItemController {
     }
 
     @GetMapping("/search")
-    public Collection<ItemDto> searchBySubstring(@RequestParam String text,
-                                                 @RequestParam(defaultValue = "0") @PositiveOrZero int from,
-                                                 @RequestParam(defaultValue = "10") @PositiveOrZero int size) {
-        log.debug("Запрос списка вещей по подстроке '{}' постранично from={}, size={}", text, from, size);
-        return itemService.searchItemsBySubstring(text, from, size);
+    public ResponseEntity<List<ItemDto>> searchBySubstring(@RequestParam String text,
+                                                           @RequestParam(defaultValue = "0") @PositiveOrZero int from,
+                                                           @RequestParam(defaultValue = "10") @PositiveOrZero int size,
+                                                           @RequestParam(required = false) String after) {
+        log.debug("Запрос списка вещей по подстроке '{}' постранично from={}, size={}, after={}", text, from, size,
+                after);
+        final List<ItemDto> items = after == null
+                ? itemService.searchItemsBySubstring(text, from, size)
+                : itemService.searchItemsBySubstring(text, PageCursor.decode(after), size);
+        if (!itemService.isSearchOrderedById()) {
+            return ResponseEntity.ok(items);
+        }
+        return PageCursor.toResponse(items, size, item -> PageCursor.of(item.getId()));
     }
 
     @PostMapping("/{itemId}/comment")
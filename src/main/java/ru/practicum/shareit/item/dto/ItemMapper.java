@@ -1,18 +1,26 @@
 package ru.practicum.shareit.item.dto;
 
-import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.common.export.ExportColumn;
+import ru.practicum.shareit.item.model.BookingSnapshot;
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.requests.model.ItemRequest;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static ru.practicum.shareit.item.dto.CommentMapper.toCommentsDto;
 
 public class ItemMapper {
+    public static final List<ExportColumn<ItemDto>> EXPORT_COLUMNS = List.of(
+            ExportColumn.of("id", ItemDto::getId),
+            ExportColumn.of("name", ItemDto::getName),
+            ExportColumn.of("description", ItemDto::getDescription),
+            ExportColumn.of("available", ItemDto::getAvailable),
+            ExportColumn.of("requestId", ItemDto::getRequestId)
+    );
+
     public static ItemDto toItemDto(Item item) {
         return ItemDto.of(
                 item.getId(),
@@ -42,25 +50,24 @@ public class ItemMapper {
         return fromItemDto(itemDto, userId, null);
     }
 
-    public static ItemGetDto toItemGetDto(Item item, Optional<Booking> lastBooking, Optional<Booking> nextBooking,
+    private static ItemGetDto.BookingDto toBookingDto(BookingSnapshot booking) {
+        return booking != null ? ItemGetDto.BookingDto.of(
+                booking.getId(),
+                booking.getBookerId(),
+                booking.getStart(),
+                booking.getEnd()
+        ) : null;
+    }
+
+    public static ItemGetDto toItemGetDto(Item item, BookingSnapshot lastBooking, BookingSnapshot nextBooking,
                                           List<Comment> comments) {
         return ItemGetDto.of(
             item.getId(),
             item.getName(),
             item.getDescription(),
             item.isAvailable(),
-                lastBooking.map(booking -> ItemGetDto.BookingDto.of(
-                        booking.getId(),
-                        booking.getBooker().getId(),
-                        booking.getStart(),
-                        booking.getEnd()
-                )).orElse(null),
-                nextBooking.map(booking -> ItemGetDto.BookingDto.of(
-                        booking.getId(),
-                        booking.getBooker().getId(),
-                        booking.getStart(),
-                        booking.getEnd()
-                )).orElse(null),
+                toBookingDto(lastBooking),
+                toBookingDto(nextBooking),
                 toCommentsDto(comments)
         );
     }
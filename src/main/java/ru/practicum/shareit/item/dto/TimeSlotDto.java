@@ -0,0 +1,11 @@
+package ru.practicum.shareit.item.dto;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+@Value(staticConstructor = "of")
+public class TimeSlotDto {
+    LocalDateTime start;
+    LocalDateTime end;
+}
@@ -0,0 +1,26 @@
+package ru.practicum.shareit.item.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import javax.persistence.Embeddable;
+import java.time.LocalDateTime;
+
+/**
+ * Копия ключевых полей бронирования, хранящаяся в строке вещи, чтобы показывать последнее и следующее
+ * бронирования без запросов к таблице бронирований.
+ */
+@Embeddable
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor(staticName = "of")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BookingSnapshot {
+    Long id;
+    Long bookerId;
+    LocalDateTime start;
+    LocalDateTime end;
+}
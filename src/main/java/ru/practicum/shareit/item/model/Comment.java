@@ -13,20 +13,24 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "comments", schema = "public")
+@NamedEntityGraph(name = Comment.WITH_AUTHOR, attributeNodes = @NamedAttributeNode("author"))
 @Getter
 @NoArgsConstructor
 @AllArgsConstructor(staticName = "of")
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class Comment {
+    public static final String WITH_AUTHOR = "Comment.withAuthor";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "comments_seq")
+    @SequenceGenerator(name = "comments_seq", sequenceName = "comments_seq", schema = "public", allocationSize = 50)
     Long id;
     @NotBlank
     String text;
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "item_id")
     Item item;
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "author_id")
     User author;
     @Column(name = "created_date")
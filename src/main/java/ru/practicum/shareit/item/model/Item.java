@@ -4,20 +4,29 @@ import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 import ru.practicum.shareit.requests.model.ItemRequest;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "items", schema = "public")
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "items")
 @Getter
 @NoArgsConstructor
 @AllArgsConstructor(staticName = "of")
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class Item {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "items_seq")
+    @SequenceGenerator(name = "items_seq", sequenceName = "items_seq", schema = "public", allocationSize = 50)
     Long id;
     String name;
     String description;
@@ -25,7 +34,37 @@ public class Item {
     boolean available;
     @Column(name = "owner_id")
     Long ownerId;
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "request_id")
     ItemRequest request;
+    /**
+     * Последнее и следующее бронирования обновляет ItemBookingsRefresher. При сохранении вещи их нужно перенести
+     * из текущего состояния, иначе они будут стерты.
+     */
+    @Setter
+    @Embedded
+    @AttributeOverrides({
+            @AttributeOverride(name = "id", column = @Column(name = "last_booking_id", insertable = false)),
+            @AttributeOverride(name = "bookerId", column = @Column(name = "last_booker_id", insertable = false)),
+            @AttributeOverride(name = "start", column = @Column(name = "last_start_date", insertable = false)),
+            @AttributeOverride(name = "end", column = @Column(name = "last_end_date", insertable = false))
+    })
+    BookingSnapshot lastBooking;
+    @Setter
+    @Embedded
+    @AttributeOverrides({
+            @AttributeOverride(name = "id", column = @Column(name = "next_booking_id", insertable = false)),
+            @AttributeOverride(name = "bookerId", column = @Column(name = "next_booker_id", insertable = false)),
+            @AttributeOverride(name = "start", column = @Column(name = "next_start_date", insertable = false)),
+            @AttributeOverride(name = "end", column = @Column(name = "next_end_date", insertable = false))
+    })
+    BookingSnapshot nextBooking;
+    @Setter
+    @Column(name = "bookings_refresh_at", insertable = false)
+    LocalDateTime bookingsRefreshAt;
+
+    public static Item of(Long id, String name, String description, boolean available, Long ownerId,
+                          ItemRequest request) {
+        return new Item(id, name, description, available, ownerId, request, null, null, null);
+    }
 }
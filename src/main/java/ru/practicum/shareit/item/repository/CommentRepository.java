@@ -1,11 +1,24 @@
 package ru.practicum.shareit.item.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface CommentRepository extends JpaRepository<Comment, Long> {
+    @EntityGraph(Comment.WITH_AUTHOR)
     List<Comment> findAllByItemOrderByCreated(Item item);
+
+    @EntityGraph(Comment.WITH_AUTHOR)
+    @Query(
+            "select c " +
+            "from Comment c " +
+            "   where c.item.id in :itemIds " +
+            "order by c.created"
+    )
+    List<Comment> findAllByItemIdInOrderByCreated(Collection<Long> itemIds);
 }
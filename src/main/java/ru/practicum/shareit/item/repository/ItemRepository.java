@@ -3,18 +3,42 @@ package ru.practicum.shareit.item.repository;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.requests.model.ItemRequest;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+import static ru.practicum.shareit.common.repository.StreamingQueries.STREAM_FETCH_SIZE;
 
 public interface ItemRepository extends JpaRepository<Item, Long> {
 
     List<Item> findAllByOwnerId(Long ownerId, Pageable pageable);
 
+    List<Item> findAllByOwnerIdAndIdGreaterThan(Long ownerId, Long id, Pageable pageable);
+
+    List<Item> findAllByIdGreaterThan(Long id, Pageable pageable);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")})
+    Stream<Item> streamAllByOwnerIdOrderByIdAsc(Long ownerId);
+
     Set<Item> findAllByRequest(ItemRequest itemRequest);
 
+    @Query(
+            "select i " +
+            "from Item i " +
+            "   where i.request.id in :requestIds"
+    )
+    List<Item> findAllByRequestIdIn(Collection<Long> requestIds);
+
     @Query(
             "select i " +
             "from Item i " +
@@ -23,4 +47,35 @@ public interface ItemRepository extends JpaRepository<Item, Long> {
             "       and i.available = true"
     )
     List<Item> searchSubstring(String substring, Pageable pageable);
+
+    @Query(
+            "select i " +
+            "from Item i " +
+            "   where (upper(i.name) like upper(concat('%', :substring, '%')) " +
+            "       or upper(i.description) like upper(concat('%', :substring, '%'))) " +
+            "       and i.available = true " +
+            "       and i.id > :cursorId " +
+            "order by i.id"
+    )
+    List<Item> searchSubstringAfter(String substring, Long cursorId, Pageable pageable);
+
+    @Query(
+            value = "select i.* " +
+                    "from items i " +
+                    "   where i.is_available = true " +
+                    "       and (i.search_vector @@ plainto_tsquery('simple', :text) " +
+                    "           or upper(i.name) like upper(concat('%', :text, '%')) " +
+                    "           or upper(i.description) like upper(concat('%', :text, '%'))) " +
+                    "order by ts_rank(i.search_vector, plainto_tsquery('simple', :text)) desc, i.id",
+            nativeQuery = true
+    )
+    List<Item> searchFullText(String text, Pageable pageable);
+
+    @Query(
+            "select i.id " +
+            "from Item i " +
+            "   where i.bookingsRefreshAt <= :present " +
+            "order by i.bookingsRefreshAt"
+    )
+    List<Long> findIdsByBookingsRefreshAtNotAfter(LocalDateTime present, Pageable pageable);
 }
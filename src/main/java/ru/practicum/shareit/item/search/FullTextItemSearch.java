@@ -0,0 +1,47 @@
+package ru.practicum.shareit.item.search;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+
+import java.util.List;
+
+/**
+ * Поиск по полнотекстовому и триграммным GIN-индексам PostgreSQL (см. schema-postgres.sql).
+ * Результаты упорядочены по релевантности, поэтому сортировка из запроса не применяется, а вывод по курсору
+ * не поддерживается: id последней вещи не задает позицию в порядке релевантности. Страницы выбираются
+ * параметрами from и size.
+ */
+@Component
+@ConditionalOnProperty(name = "shareit.item.search", havingValue = "fulltext")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class FullTextItemSearch implements ItemSearch {
+
+    ItemRepository itemRepository;
+
+    @Override
+    public List<Item> search(String text, Pageable pageable) {
+        final Pageable unsorted = pageable.isPaged()
+                ? PageRequest.of(pageable.getPageNumber(), pageable.getPageSize())
+                : Pageable.unpaged();
+        return itemRepository.searchFullText(text, unsorted);
+    }
+
+    @Override
+    public List<Item> searchAfter(String text, Long cursorId, int size) {
+        throw new UnsupportedOperationException("Полнотекстовый поиск не поддерживает вывод по курсору");
+    }
+
+    @Override
+    public boolean isOrderedById() {
+        return false;
+    }
+}
@@ -0,0 +1,23 @@
+package ru.practicum.shareit.item.search;
+
+import org.springframework.data.domain.Pageable;
+import ru.practicum.shareit.item.model.Item;
+
+import java.util.List;
+
+public interface ItemSearch {
+    List<Item> search(String text, Pageable pageable);
+
+    /**
+     * Вещи с id больше cursorId в порядке id. Поддерживается, только если {@link #isOrderedById} истинно.
+     */
+    List<Item> searchAfter(String text, Long cursorId, int size);
+
+    /**
+     * Упорядочены ли результаты {@link #search} по id. Только в этом случае id последней вещи страницы
+     * годится как курсор для {@link #searchAfter}.
+     */
+    default boolean isOrderedById() {
+        return true;
+    }
+}
@@ -0,0 +1,67 @@
+package ru.practicum.shareit.item.search;
+
+import java.util.Arrays;
+
+/**
+ * Отсортированный список идентификаторов без повторов на примитивном массиве.
+ */
+class LongPostingList {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private long[] values = new long[INITIAL_CAPACITY];
+    private int size;
+
+    void add(long value) {
+        int position = Arrays.binarySearch(values, 0, size, value);
+        if (position >= 0) {
+            return;
+        }
+        position = -position - 1;
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(values, position, values, position + 1, size - position);
+        values[position] = value;
+        size++;
+    }
+
+    void remove(long value) {
+        final int position = Arrays.binarySearch(values, 0, size, value);
+        if (position < 0) {
+            return;
+        }
+        System.arraycopy(values, position + 1, values, position, size - position - 1);
+        size--;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Возвращает позицию первого значения не меньше value, начиная с позиции from. Поиск сначала шагает вперед
+     * с удвоением шага, а затем делит найденный отрезок пополам, поэтому пропуск k значений стоит O(log k).
+     */
+    int ceiling(long value, int from) {
+        if (from >= size || values[from] >= value) {
+            return from;
+        }
+        int low = from;
+        int step = 1;
+        while (low + step < size && values[low + step] < value) {
+            low += step;
+            step <<= 1;
+        }
+        final int position = Arrays.binarySearch(values, low + 1, Math.min(low + step + 1, size), value);
+        return position >= 0 ? position : -position - 1;
+    }
+}
@@ -0,0 +1,296 @@
+package ru.practicum.shareit.item.search;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.common.outbox.AggregateType;
+import ru.practicum.shareit.common.outbox.OutboxEvent;
+import ru.practicum.shareit.common.outbox.OutboxSubscriber;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Поиск по подстроке в памяти процесса с помощью триграммного инвертированного индекса.
+ * Индекс строится при старте приложения и обновляется по событиям создания и изменения вещей, то есть только
+ * после фиксации изменения. Результаты совпадают с {@link ItemRepository#searchSubstring} и упорядочены по id.
+ */
+@Component
+@ConditionalOnProperty(name = "shareit.item.search", havingValue = "ngram")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class NgramItemSearch implements ItemSearch, OutboxSubscriber {
+
+    static int GRAM_LENGTH = 3;
+    static int LOAD_BATCH_SIZE = 1000;
+
+    ItemRepository itemRepository;
+    ReadWriteLock lock = new ReentrantReadWriteLock();
+    NavigableMap<Long, IndexedItem> items = new TreeMap<>();
+    Map<Long, LongPostingList> postings = new HashMap<>();
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toUpperCase(Locale.ROOT);
+    }
+
+    private static long gramKey(String text, int from) {
+        long key = 0;
+        for (int i = from; i < from + GRAM_LENGTH; i++) {
+            key = (key << Character.SIZE) | text.charAt(i);
+        }
+        return key;
+    }
+
+    private static void collectGrams(String text, Set<Long> grams) {
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.add(gramKey(text, i));
+        }
+    }
+
+    /**
+     * Вещи читаются пакетами по ключу: каждый следующий пакет начинается после последнего прочитанного id.
+     */
+    @PostConstruct
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            items.clear();
+            postings.clear();
+            final PageRequest pageRequest = PageRequest.of(0, LOAD_BATCH_SIZE, Sort.by("id"));
+            Long cursorId = 0L;
+            List<Item> page;
+            do {
+                page = itemRepository.findAllByIdGreaterThan(cursorId, pageRequest);
+                page.forEach(this::addToIndex);
+                if (!page.isEmpty()) {
+                    cursorId = page.get(page.size() - 1).getId();
+                }
+            } while (page.size() == LOAD_BATCH_SIZE);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void index(Item item) {
+        lock.writeLock().lock();
+        try {
+            removeFromIndex(item.getId());
+            addToIndex(item);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onEvent(OutboxEvent event) {
+        onEvents(List.of(event));
+    }
+
+    /**
+     * Вещи перечитываются из базы данных, поэтому в индекс попадает их зафиксированное состояние.
+     */
+    @Override
+    public void onEvents(List<OutboxEvent> events) {
+        final Set<Long> itemIds = events.stream()
+                .filter(event -> event.getAggregateType() == AggregateType.ITEM)
+                .map(OutboxEvent::getAggregateId)
+                .collect(Collectors.toSet());
+        if (!itemIds.isEmpty()) {
+            itemRepository.findAllById(itemIds).forEach(this::index);
+        }
+    }
+
+    @Override
+    public List<Item> search(String text, Pageable pageable) {
+        final long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+        final int limit = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+        return load(find(normalize(text), Long.MIN_VALUE, offset, limit));
+    }
+
+    @Override
+    public List<Item> searchAfter(String text, Long cursorId, int size) {
+        return load(find(normalize(text), cursorId, 0, size));
+    }
+
+    /**
+     * Индекс хранит только текст вещей, поэтому найденные вещи читаются из базы данных одним запросом
+     * по первичному ключу и отдаются в текущем состоянии.
+     */
+    private List<Item> load(List<Long> itemIds) {
+        if (itemIds.isEmpty()) {
+            return List.of();
+        }
+        final List<Item> found = itemRepository.findAllById(itemIds);
+        found.sort(Comparator.comparing(Item::getId));
+        return found;
+    }
+
+    private List<Long> find(String substring, long cursorId, long offset, int limit) {
+        final ResultPage page = new ResultPage(substring, offset, limit);
+
+        lock.readLock().lock();
+        try {
+            if (substring.length() < GRAM_LENGTH) {
+                for (IndexedItem indexedItem : items.tailMap(cursorId, false).values()) {
+                    if (page.offer(indexedItem)) {
+                        break;
+                    }
+                }
+            } else {
+                findByGrams(substring, cursorId, page);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return page.itemIds;
+    }
+
+    /**
+     * Пересекает списки вхождений триграмм запроса, начиная с самого короткого: остальные списки не копируются,
+     * а проматываются вперед до очередного кандидата, и обход прекращается, как только страница заполнена.
+     */
+    private void findByGrams(String substring, long cursorId, ResultPage page) {
+        final Set<Long> grams = new HashSet<>();
+        collectGrams(substring, grams);
+        final List<LongPostingList> lists = new ArrayList<>(grams.size());
+        for (Long gram : grams) {
+            final LongPostingList list = postings.get(gram);
+            if (list == null) {
+                return;
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(LongPostingList::size));
+
+        final LongPostingList shortest = lists.get(0);
+        final int[] positions = new int[lists.size()];
+        int position = shortest.ceiling(cursorId, 0);
+        if (position < shortest.size() && shortest.get(position) == cursorId) {
+            position++;
+        }
+        while (position < shortest.size()) {
+            final long candidate = shortest.get(position);
+            long next = candidate;
+            for (int i = 1; i < lists.size() && next == candidate; i++) {
+                final LongPostingList list = lists.get(i);
+                positions[i] = list.ceiling(candidate, positions[i]);
+                if (positions[i] == list.size()) {
+                    return;
+                }
+                next = list.get(positions[i]);
+            }
+            if (next != candidate) {
+                position = shortest.ceiling(next, position + 1);
+                continue;
+            }
+            if (page.offer(items.get(candidate))) {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private void addToIndex(Item item) {
+        final IndexedItem indexedItem = new IndexedItem(item);
+        items.put(indexedItem.id, indexedItem);
+        for (Long gram : indexedItem.grams()) {
+            postings.computeIfAbsent(gram, key -> new LongPostingList()).add(indexedItem.id);
+        }
+    }
+
+    private void removeFromIndex(Long itemId) {
+        final IndexedItem indexedItem = items.remove(itemId);
+        if (indexedItem == null) {
+            return;
+        }
+        for (Long gram : indexedItem.grams()) {
+            final LongPostingList list = postings.get(gram);
+            list.remove(itemId);
+            if (list.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * Индекс хранит только то, что нужно для проверки совпадения, а не саму вещь: сущность с последним
+     * и следующим бронированиями устаревает и не должна разделяться между потоками.
+     */
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class IndexedItem {
+        long id;
+        boolean available;
+        String name;
+        String description;
+
+        IndexedItem(Item item) {
+            this.id = item.getId();
+            this.available = item.isAvailable();
+            this.name = normalize(item.getName());
+            this.description = normalize(item.getDescription());
+        }
+
+        Set<Long> grams() {
+            final Set<Long> grams = new HashSet<>();
+            collectGrams(name, grams);
+            collectGrams(description, grams);
+            return grams;
+        }
+
+        boolean matches(String substring) {
+            return available && (name.contains(substring) || description.contains(substring));
+        }
+    }
+
+    /**
+     * Собирает идентификаторы совпавших вещей, пропуская первые offset совпадений.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private static class ResultPage {
+        final String substring;
+        final int limit;
+        final List<Long> itemIds = new ArrayList<>();
+        long skip;
+
+        ResultPage(String substring, long offset, int limit) {
+            this.substring = substring;
+            this.skip = offset;
+            this.limit = limit;
+        }
+
+        /**
+         * Возвращает true, когда страница заполнена.
+         */
+        boolean offer(IndexedItem indexedItem) {
+            if (!indexedItem.matches(substring)) {
+                return false;
+            }
+            if (skip > 0) {
+                skip--;
+                return false;
+            }
+            itemIds.add(indexedItem.id);
+            return itemIds.size() == limit;
+        }
+    }
+}
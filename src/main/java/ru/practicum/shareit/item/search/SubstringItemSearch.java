@@ -0,0 +1,33 @@
+package ru.practicum.shareit.item.search;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "shareit.item.search", havingValue = "substring", matchIfMissing = true)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class SubstringItemSearch implements ItemSearch {
+
+    ItemRepository itemRepository;
+
+    @Override
+    public List<Item> search(String text, Pageable pageable) {
+        return itemRepository.searchSubstring(text, pageable);
+    }
+
+    @Override
+    public List<Item> searchAfter(String text, Long cursorId, int size) {
+        return itemRepository.searchSubstringAfter(text, cursorId, PageRequest.of(0, size));
+    }
+}
@@ -0,0 +1,118 @@
+package ru.practicum.shareit.item.service;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.model.AbstractBooking;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingHistoryRepository;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.common.outbox.AggregateType;
+import ru.practicum.shareit.common.outbox.OutboxEvent;
+import ru.practicum.shareit.common.outbox.OutboxSubscriber;
+import ru.practicum.shareit.item.model.BookingSnapshot;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Поддерживает сохраненные в строке вещи последнее и следующее бронирования.
+ * Вещь пересчитывается по событиям создания и смены статуса ее бронирования, а также по расписанию, когда
+ * наступает начало следующего или окончание текущего бронирования.
+ */
+@Component
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class ItemBookingsRefresher implements OutboxSubscriber {
+
+    static int REFRESH_BATCH_SIZE = 100;
+    static Set<BookingStatus> ACTIVE_STATUSES = Set.of(BookingStatus.APPROVED, BookingStatus.WAITING);
+
+    ItemRepository itemRepository;
+    BookingRepository bookingRepository;
+    BookingHistoryRepository bookingHistoryRepository;
+    TransactionTemplate transactionTemplate;
+
+    private static BookingSnapshot toBookingSnapshot(AbstractBooking booking) {
+        return BookingSnapshot.of(booking.getId(), booking.getBooker().getId(), booking.getStart(),
+                booking.getEnd());
+    }
+
+    /**
+     * Бронирования читаются в транзакции на запись вместе с обновлением вещи, то есть на основной базе данных,
+     * см. {@link ru.practicum.shareit.common.datasource.ReadReplicaRouting}.
+     */
+    public void refresh(Long itemId) {
+        transactionTemplate.executeWithoutResult(status -> itemRepository.findById(itemId)
+                .ifPresent(this::refreshBookings));
+    }
+
+    @Override
+    public void onEvent(OutboxEvent event) {
+        onEvents(List.of(event));
+    }
+
+    /**
+     * Вещь пересчитывается один раз, сколько бы ее бронирований ни изменила транзакция.
+     */
+    @Override
+    public void onEvents(List<OutboxEvent> events) {
+        final Set<Long> bookingIds = events.stream()
+                .filter(event -> event.getAggregateType() == AggregateType.BOOKING)
+                .map(OutboxEvent::getAggregateId)
+                .collect(Collectors.toSet());
+        if (bookingIds.isEmpty()) {
+            return;
+        }
+        bookingHistoryRepository.findAllById(bookingIds).stream()
+                .map(booking -> booking.getItem().getId())
+                .distinct()
+                .forEach(this::refresh);
+    }
+
+    /**
+     * Бронирования записываются в загруженную вещь: запрос обновления содержит только изменившиеся столбцы,
+     * а в кэше второго уровня обновляется запись только этой вещи.
+     */
+    private void refreshBookings(Item item) {
+        final LocalDateTime now = LocalDateTime.now();
+        final Optional<AbstractBooking> lastBooking = bookingHistoryRepository
+                .findFirstByItemAndStatusInAndEndBeforeOrderByEndDesc(item, ACTIVE_STATUSES, now);
+        final Optional<Booking> nextBooking = bookingRepository
+                .findFirstByItemAndStatusInAndStartAfterOrderByStartAsc(item, ACTIVE_STATUSES, now);
+        final Optional<LocalDateTime> nextEnd = bookingRepository
+                .findFirstByItemAndStatusInAndEndAfterOrderByEndAsc(item, ACTIVE_STATUSES, now)
+                .map(Booking::getEnd);
+
+        final LocalDateTime refreshAt = nextBooking.map(Booking::getStart)
+                .map(start -> nextEnd.filter(end -> end.isBefore(start)).orElse(start))
+                .or(() -> nextEnd)
+                .orElse(null);
+
+        item.setLastBooking(lastBooking.map(ItemBookingsRefresher::toBookingSnapshot).orElse(null));
+        item.setNextBooking(nextBooking.map(ItemBookingsRefresher::toBookingSnapshot).orElse(null));
+        item.setBookingsRefreshAt(refreshAt);
+    }
+
+    @Scheduled(cron = "${shareit.item.bookings-refresh-cron:0 * * * * *}")
+    public void refreshDue() {
+        final PageRequest pageRequest = PageRequest.of(0, REFRESH_BATCH_SIZE);
+        final LocalDateTime now = LocalDateTime.now();
+        List<Long> itemIds;
+        do {
+            itemIds = itemRepository.findIdsByBookingsRefreshAtNotAfter(now, pageRequest);
+            itemIds.forEach(this::refresh);
+        } while (itemIds.size() == REFRESH_BATCH_SIZE);
+    }
+}
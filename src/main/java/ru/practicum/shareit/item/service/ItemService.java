@@ -1,22 +1,38 @@
 package ru.practicum.shareit.item.service;
 
+import ru.practicum.shareit.common.PageCursor;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemGetDto;
+import ru.practicum.shareit.item.dto.TimeSlotDto;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ItemService {
     List<ItemGetDto> getItemsByUserId(Long userId, int from, int size);
 
+    List<ItemGetDto> getItemsByUserId(Long userId, PageCursor after, int size);
+
+    void exportItemsByUserId(Long userId, Consumer<ItemDto> action);
+
     ItemGetDto getItemById(Long itemId, Long userId);
 
+    List<TimeSlotDto> getItemAvailability(Long itemId, Long userId, LocalDateTime from, LocalDateTime to);
+
     ItemDto createItem(ItemDto itemDto, Long userId);
 
+    List<ItemDto> createItems(List<ItemDto> itemsDto, Long userId);
+
     ItemDto updateItem(ItemDto itemDto, Long itemId, Long userId);
 
     List<ItemDto> searchItemsBySubstring(String substring, int from, int size);
 
+    List<ItemDto> searchItemsBySubstring(String substring, PageCursor after, int size);
+
+    boolean isSearchOrderedById();
+
     CommentDto createComment(CommentDto commentDto, Long itemId, Long userId);
 }
 
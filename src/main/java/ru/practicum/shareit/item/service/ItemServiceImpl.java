@@ -8,34 +8,54 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
-import ru.practicum.shareit.booking.model.Booking;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.model.AbstractBooking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingHistoryRepository;
 import ru.practicum.shareit.booking.repository.BookingRepository;
 import ru.practicum.shareit.common.ModelValidator;
+import ru.practicum.shareit.common.PageCursor;
 import ru.practicum.shareit.common.exceptoins.BadRequestException;
 import ru.practicum.shareit.common.exceptoins.ForbiddenException;
 import ru.practicum.shareit.common.exceptoins.NotFoundException;
+import ru.practicum.shareit.common.exceptoins.ValidationException;
+import ru.practicum.shareit.common.outbox.AggregateType;
+import ru.practicum.shareit.common.outbox.EventType;
+import ru.practicum.shareit.common.outbox.OutboxPublisher;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemGetDto;
 import ru.practicum.shareit.item.dto.ItemMapper;
+import ru.practicum.shareit.item.dto.TimeSlotDto;
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.repository.CommentRepository;
 import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.search.ItemSearch;
 import ru.practicum.shareit.requests.model.ItemRequest;
 import ru.practicum.shareit.requests.repository.ItemRequestRepository;
-import ru.practicum.shareit.user.model.User;
-import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.service.UserCache;
 
+import javax.persistence.EntityManager;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static ru.practicum.shareit.item.dto.CommentMapper.fromCommentDto;
 import static ru.practicum.shareit.item.dto.CommentMapper.toCommentDto;
 import static ru.practicum.shareit.item.dto.ItemMapper.*;
+import static ru.practicum.shareit.user.dto.UserMapper.fromUserDto;
 
 @Service
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
@@ -43,13 +63,28 @@ import static ru.practicum.shareit.item.dto.ItemMapper.*;
 public class ItemServiceImpl implements ItemService {
 
     static Sort SORT_BY_START_ASC = Sort.by("id").ascending();
+    static Set<BookingStatus> OCCUPYING_STATUSES = Set.of(BookingStatus.APPROVED, BookingStatus.WAITING);
 
     ItemRepository itemRepository;
     ItemRequestRepository itemRequestRepository;
-    UserRepository userRepository;
+    UserCache userCache;
     BookingRepository bookingRepository;
+    BookingHistoryRepository bookingHistoryRepository;
     CommentRepository commentRepository;
+    ItemSearch itemSearch;
     ModelValidator<ItemDto> modelValidator;
+    OutboxPublisher outboxPublisher;
+    EntityManager entityManager;
+
+    /**
+     * Переносит в обновляемую вещь бронирования, которые ведет ItemBookingsRefresher: без них сохранение
+     * стерло бы бронирования в базе и в кэше второго уровня.
+     */
+    private Item withBookings(Item updated, Item current) {
+        return Item.of(updated.getId(), updated.getName(), updated.getDescription(), updated.isAvailable(),
+                updated.getOwnerId(), updated.getRequest(), current.getLastBooking(), current.getNextBooking(),
+                current.getBookingsRefreshAt());
+    }
 
     private ItemDto patchItemDto(ItemDto recipient, ItemDto donor) {
         return ItemDto.of(
@@ -61,53 +96,138 @@ public class ItemServiceImpl implements ItemService {
         );
     }
 
-    private ItemGetDto toItemGetDto(Item item, User user) {
-        final Optional<Booking> lastBooking;
-        final Optional<Booking> nextBooking;
-        if (item.getOwnerId().equals(user.getId())) {
-            lastBooking = bookingRepository.findFirstByItemAndEndBeforeOrderByEndDesc(item, LocalDateTime.now());
-            nextBooking = bookingRepository.findFirstByItemAndStartAfterOrderByStartDesc(item, LocalDateTime.now());
-        } else {
-            lastBooking = Optional.empty();
-            nextBooking = Optional.empty();
+    private static ItemGetDto toItemGetDto(Item item, Long userId, List<Comment> comments) {
+        final boolean isOwner = item.getOwnerId().equals(userId);
+
+        return ItemMapper.toItemGetDto(item, isOwner ? item.getLastBooking() : null,
+                isOwner ? item.getNextBooking() : null, comments);
+    }
+
+    private ItemGetDto toItemGetDto(Item item, Long userId) {
+        return toItemGetDto(item, userId, commentRepository.findAllByItemOrderByCreated(item));
+    }
+
+    /**
+     * Вычисляет свободные промежутки периода [from, to) за один проход по бронированиям,
+     * отсортированным по началу аренды.
+     */
+    private static List<TimeSlotDto> toFreeSlots(List<AbstractBooking> bookings, LocalDateTime from,
+                                                 LocalDateTime to) {
+        final List<TimeSlotDto> slots = new ArrayList<>();
+        LocalDateTime freeFrom = from;
+        for (AbstractBooking booking : bookings) {
+            if (booking.getStart().isAfter(freeFrom)) {
+                slots.add(TimeSlotDto.of(freeFrom, booking.getStart()));
+            }
+            if (booking.getEnd().isAfter(freeFrom)) {
+                freeFrom = booking.getEnd();
+            }
+        }
+        if (freeFrom.isBefore(to)) {
+            slots.add(TimeSlotDto.of(freeFrom, to));
+        }
+        return slots;
+    }
+
+    private List<ItemGetDto> toItemsGetDto(List<Item> items, Long userId) {
+        if (items.isEmpty()) {
+            return Collections.emptyList();
         }
 
-        final List<Comment> comments = commentRepository.findAllByItemOrderByCreated(item);
+        final Set<Long> itemIds = items.stream().map(Item::getId).collect(Collectors.toSet());
+        final Map<Long, List<Comment>> comments = commentRepository.findAllByItemIdInOrderByCreated(itemIds)
+                .stream()
+                .collect(Collectors.groupingBy(comment -> comment.getItem().getId()));
 
-        return ItemMapper.toItemGetDto(item, lastBooking, nextBooking, comments);
+        return items.stream().map(
+                item -> toItemGetDto(item, userId, comments.getOrDefault(item.getId(), Collections.emptyList()))
+        ).collect(Collectors.toList());
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<ItemGetDto> getItemsByUserId(Long userId, int from, int size) {
-        final User user = userRepository.findById(userId).orElseThrow(
-                () -> new NotFoundException(String.format("Запрос вещи несуществующим пользователем (id=%s)", userId))
-        );
+        if (!userCache.exists(userId)) {
+            throw new NotFoundException(String.format("Запрос вещи несуществующим пользователем (id=%s)", userId));
+        }
 
         final Pageable pageable = PageRequest.of(from / size, size, SORT_BY_START_ASC);
         final List<Item> items = itemRepository.findAllByOwnerId(userId, pageable);
 
-        return items.stream().map(
-                (item) -> toItemGetDto(item, user)
-        ).collect(Collectors.toList());
+        return toItemsGetDto(items, userId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemGetDto> getItemsByUserId(Long userId, PageCursor after, int size) {
+        if (!userCache.exists(userId)) {
+            throw new NotFoundException(String.format("Запрос вещи несуществующим пользователем (id=%s)", userId));
+        }
+
+        final Pageable pageable = PageRequest.of(0, size, SORT_BY_START_ASC);
+        final List<Item> items = itemRepository.findAllByOwnerIdAndIdGreaterThan(userId, after.getId(), pageable);
+
+        return toItemsGetDto(items, userId);
     }
 
+    /**
+     * Передает вещи по одному, не накапливая их в памяти: прочитанная вещь сразу отсоединяется
+     * от контекста персистентности.
+     */
     @Override
+    @Transactional(readOnly = true)
+    public void exportItemsByUserId(Long userId, Consumer<ItemDto> action) {
+        if (!userCache.exists(userId)) {
+            throw new NotFoundException(String.format("Запрос вещи несуществующим пользователем (id=%s)", userId));
+        }
+
+        try (Stream<Item> items = itemRepository.streamAllByOwnerIdOrderByIdAsc(userId)) {
+            items.forEach(item -> {
+                action.accept(toItemDto(item));
+                if (item.getRequest() != null) {
+                    entityManager.detach(item.getRequest());
+                }
+                entityManager.detach(item);
+            });
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public ItemGetDto getItemById(Long itemId, Long userId) {
 
-        final User user = userRepository.findById(userId).orElseThrow(
-                () -> new NotFoundException(String.format("Запрос вещи несуществующим пользователем (id=%s)", userId))
-        );
+        if (!userCache.exists(userId)) {
+            throw new NotFoundException(String.format("Запрос вещи несуществующим пользователем (id=%s)", userId));
+        }
 
         final Item item = itemRepository.findById(itemId).orElseThrow(
                 () -> new NotFoundException(String.format("Вещь с id=%s не найдена", itemId))
         );
 
-        return toItemGetDto(item, user);
+        return toItemGetDto(item, userId);
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public List<TimeSlotDto> getItemAvailability(Long itemId, Long userId, LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new ValidationException("Начало периода должно быть раньше окончания");
+        }
+        if (!userCache.exists(userId)) {
+            throw new NotFoundException(String.format("Запрос вещи несуществующим пользователем (id=%s)", userId));
+        }
+        if (!itemRepository.existsById(itemId)) {
+            throw new NotFoundException(String.format("Вещь с id=%s не найдена", itemId));
+        }
+
+        return toFreeSlots(bookingHistoryRepository.findAllByItemIdInPeriod(itemId, OCCUPYING_STATUSES, from, to),
+                from, to);
+    }
+
+    @Override
+    @Transactional
     public ItemDto createItem(ItemDto itemDto, Long userId) {
-        if (!userRepository.existsById(userId)) {
+        if (!userCache.exists(userId)) {
             throw new NotFoundException(String.format("Попытка создания вещи несуществующим пользователем (id=%s)",
                     userId));
         }
@@ -118,13 +238,54 @@ public class ItemServiceImpl implements ItemService {
         ) : null;
         final Item item = fromItemDto(itemDto, userId, itemRequest);
         final Item createdItem = itemRepository.save(item);
+        outboxPublisher.publish(AggregateType.ITEM, createdItem.getId(), EventType.CREATED);
 
         return toItemDto(createdItem);
     }
 
     @Override
+    @Transactional
+    public List<ItemDto> createItems(List<ItemDto> itemsDto, Long userId) {
+        if (!userCache.exists(userId)) {
+            throw new NotFoundException(String.format("Попытка создания вещи несуществующим пользователем (id=%s)",
+                    userId));
+        }
+
+        final Map<String, String> violations = new LinkedHashMap<>();
+        for (int i = 0; i < itemsDto.size(); i++) {
+            final int index = i;
+            modelValidator.validate(itemsDto.get(i))
+                    .forEach((field, message) -> violations.put(String.format("[%s].%s", index, field), message));
+        }
+        if (!violations.isEmpty()) {
+            throw new ValidationException(violations);
+        }
+
+        final Set<Long> requestIds = itemsDto.stream()
+                .map(ItemDto::getRequestId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        final Map<Long, ItemRequest> itemRequests = requestIds.isEmpty() ? Collections.emptyMap()
+                : itemRequestRepository.findAllById(requestIds).stream()
+                        .collect(Collectors.toMap(ItemRequest::getId, Function.identity()));
+        if (itemRequests.size() != requestIds.size()) {
+            throw new NotFoundException("Создание вещи для несуществующего запроса");
+        }
+
+        final List<Item> createdItems = itemRepository.saveAll(itemsDto.stream()
+                .map(itemDto -> fromItemDto(itemDto, userId, itemRequests.get(itemDto.getRequestId())))
+                .collect(Collectors.toList()));
+        outboxPublisher.publishAll(AggregateType.ITEM, createdItems.stream()
+                .map(Item::getId)
+                .collect(Collectors.toList()), EventType.CREATED);
+
+        return toItemsDto(createdItems);
+    }
+
+    @Override
+    @Transactional
     public ItemDto updateItem(ItemDto itemDto, Long itemId, Long userId) {
-        if (!userRepository.existsById(userId)) {
+        if (!userCache.exists(userId)) {
             throw new NotFoundException(String.format("Попытка создания вещи несуществующим пользователем (id=%s)",
                     userId));
         }
@@ -140,10 +301,14 @@ public class ItemServiceImpl implements ItemService {
         final ItemDto recipient = toItemDto(item);
         final ItemDto patched = patchItemDto(recipient, itemDto);
         modelValidator.apply(patched);
-        return toItemDto(itemRepository.save(fromItemDto(patched, userId)));
+        final Item updatedItem = itemRepository.save(withBookings(fromItemDto(patched, userId), item));
+        outboxPublisher.publish(AggregateType.ITEM, itemId, EventType.UPDATED);
+
+        return toItemDto(updatedItem);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<ItemDto> searchItemsBySubstring(String substring, int from, int size) {
         if (substring.isEmpty()) {
             return Collections.emptyList();
@@ -151,13 +316,33 @@ public class ItemServiceImpl implements ItemService {
 
         final Pageable pageable = PageRequest.of(from / size, size, SORT_BY_START_ASC);
 
-        return toItemsDto(itemRepository.searchSubstring(substring, pageable));
+        return toItemsDto(itemSearch.search(substring, pageable));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemDto> searchItemsBySubstring(String substring, PageCursor after, int size) {
+        if (!itemSearch.isOrderedById()) {
+            throw new BadRequestException("Поиск по релевантности не поддерживает вывод по курсору, " +
+                    "используйте параметры from и size");
+        }
+        if (substring.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return toItemsDto(itemSearch.searchAfter(substring, after.getId(), size));
+    }
+
+    @Override
+    public boolean isSearchOrderedById() {
+        return itemSearch.isOrderedById();
     }
 
     @Override
+    @Transactional
     public CommentDto createComment(CommentDto commentDto, Long itemId, Long userId) {
 
-        final User user = userRepository.findById(userId).orElseThrow(
+        final UserDto author = userCache.find(userId).orElseThrow(
                 () -> new NotFoundException(String.format("Комментарий несуществующего пользователя (id=%s)", userId))
         );
 
@@ -165,9 +350,12 @@ public class ItemServiceImpl implements ItemService {
                 () -> new NotFoundException(String.format("Комментарий к несуществующей вещи (id=%s)", itemId))
         );
 
-        if (bookingRepository.findAllByItemIdAndBookerIdAndEndBefore(itemId, userId, LocalDateTime.now()).isEmpty()) {
+        if (bookingHistoryRepository.findAllByItemIdAndBookerIdAndEndBefore(itemId, userId, LocalDateTime.now())
+                .isEmpty()) {
             throw new BadRequestException("Пользователь не брал вещь в аренду или не завершил ее");
         }
-        return toCommentDto(commentRepository.save(fromCommentDto(commentDto, item, user)));
+        final Comment createdComment = commentRepository.save(fromCommentDto(commentDto, item, fromUserDto(author)));
+        outboxPublisher.publish(AggregateType.COMMENT, createdComment.getId(), EventType.CREATED);
+        return toCommentDto(createdComment);
     }
 }
@@ -3,8 +3,10 @@ package ru.practicum.shareit.requests.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.common.PageCursor;
 import ru.practicum.shareit.requests.dto.ItemRequestDto;
 import ru.practicum.shareit.requests.service.ItemRequestService;
 
@@ -35,11 +37,18 @@ public class ItemRequestController {
     }
 
     @GetMapping("/all")
-    public List<ItemRequestDto> getByNotRequestor(@RequestHeader("X-Sharer-User-Id") Long userId,
-                                                  @RequestParam(defaultValue = "0") @PositiveOrZero int from,
-                                                  @RequestParam(defaultValue = "10") @PositiveOrZero int size) {
-        log.debug("Получение пользователем {} списка всех запросов постранично from={}, size={}", userId, from, size);
-        return itemRequestService.getItemRequestsByNotRequestorId(userId, from, size);
+    public ResponseEntity<List<ItemRequestDto>> getByNotRequestor(
+            @RequestHeader("X-Sharer-User-Id") Long userId,
+            @RequestParam(defaultValue = "0") @PositiveOrZero int from,
+            @RequestParam(defaultValue = "10") @PositiveOrZero int size,
+            @RequestParam(required = false) String after) {
+        log.debug("Получение пользователем {} списка всех запросов постранично from={}, size={}, after={}", userId,
+                from, size, after);
+        final List<ItemRequestDto> itemRequests = after == null
+                ? itemRequestService.getItemRequestsByNotRequestorId(userId, from, size)
+                : itemRequestService.getItemRequestsByNotRequestorId(userId, PageCursor.decode(after), size);
+        return PageCursor.toResponse(itemRequests, size,
+                itemRequest -> PageCursor.of(itemRequest.getCreated(), itemRequest.getId()));
     }
 
     @GetMapping("/{requestId}")
@@ -6,6 +6,7 @@ import ru.practicum.shareit.requests.model.ItemRequest;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -35,6 +36,14 @@ public class ItemRequestMapper {
                 .collect(Collectors.toList());
     }
 
+    public static List<ItemRequestDto> toItemRequestsDto(Collection<ItemRequest> itemRequests,
+                                                         Collection<Item> items) {
+        final Map<Long, List<Item>> itemsByRequestId = items.stream()
+                .collect(Collectors.groupingBy(item -> item.getRequest().getId()));
+        return toItemRequestsDto(itemRequests,
+                itemRequest -> itemsByRequestId.getOrDefault(itemRequest.getId(), Collections.emptyList()));
+    }
+
     public static ItemRequest fromItemRequestDto(ItemRequestDto itemRequestDto) {
         return ItemRequest.of(
                 itemRequestDto.getId(),
@@ -5,6 +5,8 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import ru.practicum.shareit.user.model.User;
 
 import javax.persistence.*;
@@ -12,16 +14,22 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "requests", schema = "public")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "requests")
+@NamedEntityGraph(name = ItemRequest.WITH_REQUESTOR, attributeNodes = @NamedAttributeNode("requestor"))
 @NoArgsConstructor
 @AllArgsConstructor(staticName = "of")
 @Getter
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class ItemRequest {
+    public static final String WITH_REQUESTOR = "ItemRequest.withRequestor";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "requests_seq")
+    @SequenceGenerator(name = "requests_seq", sequenceName = "requests_seq", schema = "public", allocationSize = 50)
     Long id;
     String description;
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "requestor_id")
     User requestor;
     @Column(name = "created_date")
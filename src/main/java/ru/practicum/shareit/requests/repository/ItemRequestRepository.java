@@ -1,22 +1,44 @@
 package ru.practicum.shareit.requests.repository;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import ru.practicum.shareit.requests.model.ItemRequest;
 import ru.practicum.shareit.user.model.User;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 public interface ItemRequestRepository extends JpaRepository<ItemRequest, Long> {
+    @Override
+    @EntityGraph(ItemRequest.WITH_REQUESTOR)
+    Optional<ItemRequest> findById(Long id);
+
+    @EntityGraph(ItemRequest.WITH_REQUESTOR)
     Set<ItemRequest> findAllByRequestorOrderByCreated(User requestor);
 
+    @EntityGraph(ItemRequest.WITH_REQUESTOR)
+    @Query(
+            "select ir " +
+            "from ItemRequest ir " +
+            "   where ir.requestor <> :requestor " +
+            "order by ir.created, ir.id"
+    )
+    Slice<ItemRequest> findAllByNotRequestorOrderByCreated(User requestor, Pageable pageable);
+
+    @EntityGraph(ItemRequest.WITH_REQUESTOR)
     @Query(
             "select ir " +
             "from ItemRequest ir " +
             "   where ir.requestor <> :requestor " +
-            "order by ir.created"
+            "       and ir.created >= :cursorCreated " +
+            "       and (ir.created > :cursorCreated or (ir.created = :cursorCreated and ir.id > :cursorId)) " +
+            "order by ir.created, ir.id"
     )
-    Page<ItemRequest> findAllByNotRequestorOrderByCreated(User requestor, Pageable pageable);
+    List<ItemRequest> findPageByNotRequestor(User requestor, LocalDateTime cursorCreated, Long cursorId,
+                                             Pageable pageable);
 }
@@ -1,5 +1,6 @@
 package ru.practicum.shareit.requests.service;
 
+import ru.practicum.shareit.common.PageCursor;
 import ru.practicum.shareit.requests.dto.ItemRequestDto;
 
 import java.util.List;
@@ -11,5 +12,7 @@ public interface ItemRequestService {
 
     List<ItemRequestDto> getItemRequestsByNotRequestorId(Long userId, int from, int size);
 
+    List<ItemRequestDto> getItemRequestsByNotRequestorId(Long userId, PageCursor after, int size);
+
     ItemRequestDto getRequestById(Long userId, Long requestId);
 }
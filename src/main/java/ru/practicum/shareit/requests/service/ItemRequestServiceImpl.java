@@ -7,7 +7,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.common.PageCursor;
 import ru.practicum.shareit.common.exceptoins.NotFoundException;
+import ru.practicum.shareit.common.outbox.AggregateType;
+import ru.practicum.shareit.common.outbox.EventType;
+import ru.practicum.shareit.common.outbox.OutboxPublisher;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.repository.ItemRepository;
 import ru.practicum.shareit.requests.dto.ItemRequestDto;
@@ -16,13 +21,16 @@ import ru.practicum.shareit.requests.repository.ItemRequestRepository;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.user.service.UserCache;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static ru.practicum.shareit.requests.dto.ItemRequestMapper.*;
-import static ru.practicum.shareit.user.dto.UserMapper.toUserDto;
 
 @Service
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
@@ -31,50 +39,76 @@ public class ItemRequestServiceImpl implements ItemRequestService {
 
     ItemRequestRepository itemRequestRepository;
     UserRepository userRepository;
+    UserCache userCache;
     ItemRepository itemRepository;
+    OutboxPublisher outboxPublisher;
+
+    private User getRequestor(Long userId) {
+        if (!userCache.exists(userId)) {
+            throw new NotFoundException("Запрос от несуществующего пользователя");
+        }
+        return userRepository.getReferenceById(userId);
+    }
+
+    private List<ItemRequestDto> toItemRequestsWithItemsDto(Collection<ItemRequest> itemRequests) {
+        if (itemRequests.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final Set<Long> requestIds = itemRequests.stream().map(ItemRequest::getId).collect(Collectors.toSet());
+        return toItemRequestsDto(itemRequests, itemRepository.findAllByRequestIdIn(requestIds));
+    }
 
     @Override
+    @Transactional
     public ItemRequestDto createItemRequest(ItemRequestDto itemRequestDto, Long userId) {
-        final User requestor = userRepository.findById(userId).orElseThrow(
+        final UserDto requestorDto = userCache.find(userId).orElseThrow(
                 () -> new NotFoundException("Запрос от несуществующего пользователя")
         );
 
-        final UserDto requestorDto = toUserDto(requestor);
-
         final ItemRequestDto createdItemRequestDto = itemRequestDto
                 .withRequestor(requestorDto)
                 .withCreated(LocalDateTime.now());
 
         final ItemRequest itemRequest = fromItemRequestDto(createdItemRequestDto);
+        final ItemRequest createdItemRequest = itemRequestRepository.save(itemRequest);
+        outboxPublisher.publish(AggregateType.ITEM_REQUEST, createdItemRequest.getId(), EventType.CREATED);
 
-        return toItemRequestDto(itemRequestRepository.save(itemRequest));
+        return toItemRequestDto(createdItemRequest);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<ItemRequestDto> getItemRequestsByRequestorId(Long userId) {
-        final User requestor = userRepository.findById(userId).orElseThrow(
-                () -> new NotFoundException("Запрос от несуществующего пользователя")
-        );
+        final User requestor = getRequestor(userId);
 
-        return toItemRequestsDto(itemRequestRepository.findAllByRequestorOrderByCreated(requestor),
-                itemRepository::findAllByRequest);
+        return toItemRequestsWithItemsDto(itemRequestRepository.findAllByRequestorOrderByCreated(requestor));
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<ItemRequestDto> getItemRequestsByNotRequestorId(Long userId, int from, int size) {
-        final User requestor = userRepository.findById(userId).orElseThrow(
-                () -> new NotFoundException("Запрос от несуществующего пользователя")
-        );
+        final User requestor = getRequestor(userId);
 
         final Pageable pageble = PageRequest.of(from, size);
 
-        return toItemRequestsDto(itemRequestRepository.findAllByNotRequestorOrderByCreated(requestor, pageble)
-                .getContent(), itemRepository::findAllByRequest);
+        return toItemRequestsWithItemsDto(itemRequestRepository.findAllByNotRequestorOrderByCreated(requestor,
+                pageble).getContent());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemRequestDto> getItemRequestsByNotRequestorId(Long userId, PageCursor after, int size) {
+        final User requestor = getRequestor(userId);
+
+        return toItemRequestsWithItemsDto(itemRequestRepository.findPageByNotRequestor(requestor,
+                after.getDateTimeKey(), after.getId(), PageRequest.of(0, size)));
     }
 
     @Override
+    @Transactional(readOnly = true)
     public ItemRequestDto getRequestById(Long userId, Long requestId) {
-        if (!userRepository.existsById(userId)) {
+        if (!userCache.exists(userId)) {
             throw new NotFoundException("Запрос от несуществующего пользователя");
         }
 
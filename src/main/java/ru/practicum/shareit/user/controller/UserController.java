@@ -1,28 +1,70 @@
 package ru.practicum.shareit.user.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.common.PageCursor;
+import ru.practicum.shareit.common.export.ExportFormat;
+import ru.practicum.shareit.common.export.ExportWriter;
 import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.dto.UserMapper;
 import ru.practicum.shareit.user.service.UserService;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.constraints.NotNull;
-import java.util.Collection;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
+import java.io.IOException;
+import java.util.List;
 
 @Slf4j
 @RestController
 @RequestMapping(path = "/users")
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Validated
 public class UserController {
 
     private final UserService userService;
+    private final ObjectMapper objectMapper;
 
+    private static final int DEFAULT_PAGE_SIZE = 10;
+
+    /**
+     * Без параметров from, size и after возвращает всех пользователей, как до появления постраничного вывода.
+     * Если передан хотя бы один из них, возвращается страница, по умолчанию from=0 и size=10.
+     */
     @GetMapping()
-    public Collection<UserDto> getAll() {
-        log.debug("Запрос на получение списка всех пользователей");
-        return userService.getAllUsers();
+    public ResponseEntity<List<UserDto>> getAll(@RequestParam(required = false) @PositiveOrZero Integer from,
+                                                @RequestParam(required = false) @Positive Integer size,
+                                                @RequestParam(required = false) String after) {
+        if (from == null && size == null && after == null) {
+            log.debug("Запрос списка всех пользователей");
+            return ResponseEntity.ok(userService.getAllUsers());
+        }
+        final int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        log.debug("Запрос списка пользователей постранично from={}, size={}, after={}", from, pageSize, after);
+        final List<UserDto> users = after == null
+                ? userService.getAllUsers(from == null ? 0 : from, pageSize)
+                : userService.getAllUsers(PageCursor.decode(after), pageSize);
+        return PageCursor.toResponse(users, pageSize, user -> PageCursor.of(user.getId()));
+    }
+
+    /**
+     * Выгружает всех пользователей в формате NDJSON или CSV построчно, без загрузки списка в память.
+     */
+    @GetMapping("/stream")
+    public void stream(@RequestParam(defaultValue = "ndjson") String format,
+                       HttpServletResponse response) throws IOException {
+        log.debug("Запрос потоковой выгрузки всех пользователей в формате {}", format);
+        final ExportWriter<UserDto> writer = new ExportWriter<>(response, ExportFormat.from(format), objectMapper,
+                UserMapper.EXPORT_COLUMNS);
+        userService.streamAllUsers(writer::write);
+        writer.finish();
     }
 
     @GetMapping("/{userId}")
@@ -1,11 +1,18 @@
 package ru.practicum.shareit.user.dto;
 
+import ru.practicum.shareit.common.export.ExportColumn;
 import ru.practicum.shareit.user.model.User;
 
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class UserMapper {
+    public static final List<ExportColumn<UserDto>> EXPORT_COLUMNS = List.of(
+            ExportColumn.of("id", UserDto::getId),
+            ExportColumn.of("name", UserDto::getName),
+            ExportColumn.of("email", UserDto::getEmail)
+    );
+
     public static UserDto toUserDto(User user) {
         return UserDto.of(user.getId(), user.getName(), user.getEmail());
     }
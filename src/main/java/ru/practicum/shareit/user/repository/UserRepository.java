@@ -1,7 +1,30 @@
 package ru.practicum.shareit.user.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+import ru.practicum.shareit.common.repository.StreamingQueries;
 import ru.practicum.shareit.user.model.User;
 
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+import static ru.practicum.shareit.common.repository.StreamingQueries.STREAM_FETCH_SIZE;
+
 public interface UserRepository extends JpaRepository<User, Long> {
-}
\ No newline at end of file
+
+    List<User> findAllBy(Pageable pageable);
+
+    List<User> findAllByIdGreaterThan(Long id, Pageable pageable);
+
+    /**
+     * Читает всех пользователей курсором порциями по {@link StreamingQueries#STREAM_FETCH_SIZE} строк.
+     * Вызывать внутри транзакции и закрывать поток после чтения.
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")})
+    Stream<User> streamAllByOrderByIdAsc();
+}
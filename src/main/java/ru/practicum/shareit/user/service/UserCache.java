@@ -0,0 +1,108 @@
+package ru.practicum.shareit.user.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.common.datasource.ReadReplicaRouting;
+import ru.practicum.shareit.common.outbox.AggregateType;
+import ru.practicum.shareit.common.outbox.EventType;
+import ru.practicum.shareit.common.outbox.OutboxEvent;
+import ru.practicum.shareit.common.outbox.OutboxSubscriber;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.dto.UserMapper;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограниченный по размеру кэш Caffeine существующих пользователей для проверки заголовка X-Sharer-User-Id.
+ * При переполнении вытесняются редко используемые пользователи, а записи старше ttl перечитываются: события
+ * изменения доставляются только в своем процессе, и ttl ограничивает устаревание кэша в остальных экземплярах
+ * приложения. Отсутствующие пользователи не кэшируются. Запись сбрасывается
+ * по событиям изменения и удаления пользователя, а загрузка, начавшаяся до сброса, не попадает в кэш.
+ * Пользователи загружаются с основной базы данных, см. {@link ReadReplicaRouting}.
+ * Вытеснение выполняется в вызывающем потоке, поэтому после каждой операции в кэше не больше cache-size записей.
+ */
+@Component
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class UserCache implements OutboxSubscriber {
+
+    UserRepository userRepository;
+    ReadReplicaRouting readReplicaRouting;
+    TransactionTemplate primaryTransaction;
+    TransactionTemplate newPrimaryTransaction;
+    Cache<Long, UserDto> users;
+    AtomicLong invalidations = new AtomicLong();
+
+    @Autowired
+    public UserCache(UserRepository userRepository, ReadReplicaRouting readReplicaRouting,
+                     PlatformTransactionManager transactionManager,
+                     @Value("${shareit.user.cache-size:10000}") int maxSize,
+                     @Value("${shareit.user.cache-ttl:PT5M}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.readReplicaRouting = readReplicaRouting;
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.newPrimaryTransaction = new TransactionTemplate(transactionManager);
+        this.newPrimaryTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .executor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * Загруженный пользователь помещается в кэш атомарно для своего ключа и только если с начала загрузки
+     * не было сброса: сброс сначала увеличивает счетчик, а затем удаляет запись.
+     */
+    public Optional<UserDto> find(Long userId) {
+        final UserDto cached = users.getIfPresent(userId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        final long invalidationsBeforeLoad = invalidations.get();
+        final Optional<UserDto> loaded = load(userId);
+        loaded.ifPresent(user -> users.asMap().compute(userId, (id, current) ->
+                invalidations.get() == invalidationsBeforeLoad ? user : current));
+        return loaded;
+    }
+
+    /**
+     * Читает пользователя в транзакции на запись: в текущей, если она есть, иначе в новой. Транзакция только
+     * для чтения приостанавливается.
+     */
+    private Optional<UserDto> load(Long userId) {
+        if (!readReplicaRouting.isReplicaEnabled()) {
+            return userRepository.findById(userId).map(UserMapper::toUserDto);
+        }
+        final TransactionTemplate transaction = TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                ? newPrimaryTransaction : primaryTransaction;
+        return transaction.execute(status -> userRepository.findById(userId).map(UserMapper::toUserDto));
+    }
+
+    public boolean exists(Long userId) {
+        return find(userId).isPresent();
+    }
+
+    @Override
+    public void onEvent(OutboxEvent event) {
+        if (event.getAggregateType() == AggregateType.USER && event.getEventType() != EventType.CREATED) {
+            evict(event.getAggregateId());
+        }
+    }
+
+    private void evict(Long userId) {
+        invalidations.incrementAndGet();
+        users.invalidate(userId);
+    }
+}
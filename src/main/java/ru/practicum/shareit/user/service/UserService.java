@@ -1,12 +1,20 @@
 package ru.practicum.shareit.user.service;
 
+import ru.practicum.shareit.common.PageCursor;
 import ru.practicum.shareit.user.dto.UserDto;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface UserService {
     List<UserDto> getAllUsers();
 
+    List<UserDto> getAllUsers(int from, int size);
+
+    List<UserDto> getAllUsers(PageCursor after, int size);
+
+    void streamAllUsers(Consumer<UserDto> action);
+
     UserDto getUserById(Long id);
 
     UserDto createUser(UserDto userDto);
@@ -4,15 +4,25 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.common.ModelValidator;
+import ru.practicum.shareit.common.PageCursor;
 import ru.practicum.shareit.common.exceptoins.NotFoundException;
+import ru.practicum.shareit.common.outbox.AggregateType;
+import ru.practicum.shareit.common.outbox.EventType;
+import ru.practicum.shareit.common.outbox.OutboxPublisher;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
 
+import javax.persistence.EntityManager;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static ru.practicum.shareit.user.dto.UserMapper.*;
 
@@ -20,56 +30,92 @@ import static ru.practicum.shareit.user.dto.UserMapper.*;
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
 public class UserServiceImpl implements UserService {
+    static Sort SORT_BY_ID_ASC = Sort.by("id").ascending();
+
     UserRepository userStorage;
     ModelValidator<UserDto> modelValidator;
+    OutboxPublisher outboxPublisher;
+    UserCache userCache;
+    EntityManager entityManager;
 
-    private UserDto patchUser(UserDto recipient, UserDto donor) {
-        return UserDto.of(
-                recipient.getId(),
-                Optional.ofNullable(donor.getName()).orElse(recipient.getName()),
-                Optional.ofNullable(donor.getEmail()).orElse(recipient.getEmail())
-        );
+    private NotFoundException userNotFound(Long id) {
+        return new NotFoundException(String.format("Пользователь с id=%s не найден", id));
     }
 
-    private void checkUserId(Long id) throws NotFoundException {
-        if (!userStorage.existsById(id)) {
-            throw new NotFoundException(String.format("Пользователь с id=%s не найден", id));
-        }
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserDto> getAllUsers() {
+        return toUsersDto(userStorage.findAll(SORT_BY_ID_ASC));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserDto> getAllUsers(int from, int size) {
+        return toUsersDto(userStorage.findAllBy(PageRequest.of(from / size, size, SORT_BY_ID_ASC)));
+    }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserDto> getAllUsers(PageCursor after, int size) {
+        final List<User> users = userStorage.findAllByIdGreaterThan(after.getId(),
+                PageRequest.of(0, size, SORT_BY_ID_ASC));
+        return toUsersDto(users);
     }
 
+    /**
+     * Передает пользователей по одному, не накапливая их в памяти: прочитанная сущность сразу
+     * отсоединяется от контекста персистентности.
+     */
     @Override
-    public List<UserDto> getAllUsers() {
-        return toUsersDto(userStorage.findAll());
+    @Transactional(readOnly = true)
+    public void streamAllUsers(Consumer<UserDto> action) {
+        try (Stream<User> users = userStorage.streamAllByOrderByIdAsc()) {
+            users.forEach(user -> {
+                action.accept(toUserDto(user));
+                entityManager.detach(user);
+            });
+        }
     }
 
     @Override
+    @Transactional(readOnly = true)
     public UserDto getUserById(Long id) {
-        checkUserId(id);
-        return toUserDto(userStorage.getReferenceById(id));
+        return userCache.find(id).orElseThrow(() -> userNotFound(id));
     }
 
     @Override
+    @Transactional
     public UserDto createUser(UserDto userDto) {
         modelValidator.apply(userDto);
-        final User user = fromUserDto(userDto);
-        final User createdUser = userStorage.save(user);
-        return toUserDto(userStorage.getReferenceById(createdUser.getId()));
+        final User createdUser = userStorage.save(fromUserDto(userDto));
+        outboxPublisher.publish(AggregateType.USER, createdUser.getId(), EventType.CREATED);
+        return toUserDto(createdUser);
     }
 
+    /**
+     * Изменяет только переданные поля загруженного пользователя: запрос обновления содержит лишь измененные
+     * столбцы, а запись пользователя в кэше второго уровня обновляется, не затрагивая остальных пользователей.
+     */
     @Override
+    @Transactional
     public UserDto updateUser(Long id, UserDto userDto) {
-        checkUserId(id);
-        final UserDto recipient = toUserDto(userStorage.getReferenceById(id));
-        final UserDto patched = patchUser(recipient, userDto);
-        modelValidator.apply(patched);
+        modelValidator.applyPartial(userDto);
+        if (userDto.getName() == null && userDto.getEmail() == null) {
+            return getUserById(id);
+        }
+        final User user = userStorage.findById(id).orElseThrow(() -> userNotFound(id));
+        Optional.ofNullable(userDto.getName()).ifPresent(user::setName);
+        Optional.ofNullable(userDto.getEmail()).ifPresent(user::setEmail);
+        userStorage.saveAndFlush(user);
+        outboxPublisher.publish(AggregateType.USER, id, EventType.UPDATED);
 
-        return toUserDto(userStorage.save(fromUserDto(patched)));
+        return toUserDto(user);
     }
 
     @Override
+    @Transactional
     public void removeUser(Long id) {
-        checkUserId(id);
-        userStorage.deleteById(id);
+        userStorage.delete(userStorage.findById(id).orElseThrow(() -> userNotFound(id)));
+        outboxPublisher.publish(AggregateType.USER, id, EventType.DELETED);
     }
 }
@@ -0,0 +1,54 @@
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE items
+    ADD COLUMN IF NOT EXISTS search_vector TSVECTOR
+        GENERATED ALWAYS AS (to_tsvector('simple', name || ' ' || description)) STORED;
+
+CREATE INDEX IF NOT EXISTS items_search_vector_idx ON items USING GIN (search_vector);
+CREATE INDEX IF NOT EXISTS items_name_trgm_idx ON items USING GIN (upper(name) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS items_description_trgm_idx ON items USING GIN (upper(description) gin_trgm_ops);
+
+ALTER TABLE users ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE users ALTER COLUMN id SET DEFAULT nextval('users_seq');
+ALTER TABLE requests ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE requests ALTER COLUMN id SET DEFAULT nextval('requests_seq');
+ALTER TABLE items ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE items ALTER COLUMN id SET DEFAULT nextval('items_seq');
+ALTER TABLE bookings ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE bookings ALTER COLUMN id SET DEFAULT nextval('bookings_seq');
+ALTER TABLE comments ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE comments ALTER COLUMN id SET DEFAULT nextval('comments_seq');
+
+SELECT setval('users_seq', GREATEST((SELECT last_value FROM users_seq), (SELECT COALESCE(MAX(id), 0) FROM users)));
+SELECT setval('requests_seq', GREATEST((SELECT last_value FROM requests_seq), (SELECT COALESCE(MAX(id), 0) FROM requests)));
+SELECT setval('items_seq', GREATEST((SELECT last_value FROM items_seq), (SELECT COALESCE(MAX(id), 0) FROM items)));
+SELECT setval('bookings_seq', GREATEST((SELECT last_value FROM bookings_seq), (SELECT COALESCE(MAX(id), 0) FROM bookings)));
+SELECT setval('comments_seq', GREATEST((SELECT last_value FROM comments_seq), (SELECT COALESCE(MAX(id), 0) FROM comments)));
+
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+-- Ограничение создается один раз. Если в базе уже есть пересекающиеся подтвержденные бронирования, миграция
+-- останавливает запуск приложения и перечисляет пары их id: какое бронирование из пары отклонить, решает
+-- администратор, после чего приложение запускается повторно.
+DO '
+DECLARE
+    conflicts TEXT;
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = ''bookings_approved_no_overlap'') THEN
+        SELECT string_agg(b.id || ''/'' || o.id, '', '' ORDER BY b.id, o.id)
+        INTO conflicts
+        FROM bookings b
+                 JOIN bookings o ON o.item_id = b.item_id AND o.id > b.id
+        WHERE b.status = ''APPROVED''
+          AND o.status = ''APPROVED''
+          AND o.start_date < b.end_date
+          AND b.start_date < o.end_date;
+        IF conflicts IS NOT NULL THEN
+            RAISE EXCEPTION ''Пересекаются подтвержденные бронирования (id/id): %'', conflicts
+                USING HINT = ''Отклоните одно бронирование из каждой пары и повторите запуск'';
+        END IF;
+        ALTER TABLE bookings ADD CONSTRAINT bookings_approved_no_overlap
+            EXCLUDE USING gist (item_id WITH =, tsrange(start_date, end_date) WITH &&)
+            WHERE (status = ''APPROVED'');
+    END IF;
+END';
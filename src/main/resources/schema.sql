@@ -1,43 +1,123 @@
+-- Скрипт выполняется при каждом запуске (spring.sql.init.mode=always) и служит миграцией существующей базы:
+-- все инструкции идемпотентны, новые таблицы, столбцы и индексы создаются только при их отсутствии.
+
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS requests_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS items_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS bookings_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS comments_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS outbox_events_seq START WITH 1 INCREMENT BY 50;
+
 CREATE TABLE IF NOT EXISTS users
 (
-    id    BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY NOT NULL,
-    name  VARCHAR(255)                                        NOT NULL,
-    email VARCHAR(512) UNIQUE                                 NOT NULL
+    id    BIGINT DEFAULT nextval('users_seq') PRIMARY KEY NOT NULL,
+    name  VARCHAR(255)                                    NOT NULL,
+    email VARCHAR(512) UNIQUE                             NOT NULL
 );
 
 CREATE TABLE IF NOT EXISTS requests
 (
-    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY NOT NULL,
-    description  TEXT                                                NOT NULL,
-    requestor_id BIGINT REFERENCES users (id)                        NOT NULL,
-    created_date TIMESTAMP WITHOUT TIME ZONE                         NOT NULL
+    id           BIGINT DEFAULT nextval('requests_seq') PRIMARY KEY NOT NULL,
+    description  TEXT                                               NOT NULL,
+    requestor_id BIGINT REFERENCES users (id)                       NOT NULL,
+    created_date TIMESTAMP WITHOUT TIME ZONE                        NOT NULL
 );
 
 CREATE TABLE IF NOT EXISTS items
 (
-    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY NOT NULL,
-    name         VARCHAR(255)                                        NOT NULL,
-    description  VARCHAR(512)                                        NOT NULL,
-    is_available BOOLEAN                                             NOT NULL,
-    owner_id     BIGINT REFERENCES users (id)                        NOT NULL,
+    id           BIGINT DEFAULT nextval('items_seq') PRIMARY KEY NOT NULL,
+    name         VARCHAR(255)                                    NOT NULL,
+    description  VARCHAR(512)                                    NOT NULL,
+    is_available BOOLEAN                                         NOT NULL,
+    owner_id     BIGINT REFERENCES users (id)                    NOT NULL,
     request_id   BIGINT REFERENCES requests (id)
 );
 
 CREATE TABLE IF NOT EXISTS bookings
 (
-    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY NOT NULL,
+    id         BIGINT DEFAULT nextval('bookings_seq') PRIMARY KEY NOT NULL,
+    start_date TIMESTAMP WITHOUT TIME ZONE                        NOT NULL,
+    end_date   TIMESTAMP WITHOUT TIME ZONE                        NOT NULL,
+    item_id    BIGINT REFERENCES items (id)                       NOT NULL,
+    booker_id  BIGINT REFERENCES users (id)                       NOT NULL,
+    status     VARCHAR(8)                                         NOT NULL
+);
+
+ALTER TABLE bookings ADD COLUMN IF NOT EXISTS owner_id BIGINT REFERENCES users (id);
+UPDATE bookings b SET owner_id = (SELECT i.owner_id FROM items i WHERE i.id = b.item_id) WHERE b.owner_id IS NULL;
+ALTER TABLE bookings ALTER COLUMN owner_id SET NOT NULL;
+ALTER TABLE bookings ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+
+CREATE TABLE IF NOT EXISTS bookings_archive
+(
+    id         BIGINT PRIMARY KEY                                  NOT NULL,
     start_date TIMESTAMP WITHOUT TIME ZONE                         NOT NULL,
     end_date   TIMESTAMP WITHOUT TIME ZONE                         NOT NULL,
     item_id    BIGINT REFERENCES items (id)                        NOT NULL,
     booker_id  BIGINT REFERENCES users (id)                        NOT NULL,
-    status     VARCHAR(8)                                          NOT NULL
+    status     VARCHAR(8)                                          NOT NULL,
+    owner_id   BIGINT REFERENCES users (id)                        NOT NULL,
+    version    BIGINT                                              NOT NULL
 );
 
+ALTER TABLE items ADD COLUMN IF NOT EXISTS last_booking_id BIGINT;
+ALTER TABLE items ADD COLUMN IF NOT EXISTS last_booker_id BIGINT;
+ALTER TABLE items ADD COLUMN IF NOT EXISTS last_start_date TIMESTAMP WITHOUT TIME ZONE;
+ALTER TABLE items ADD COLUMN IF NOT EXISTS last_end_date TIMESTAMP WITHOUT TIME ZONE;
+ALTER TABLE items ADD COLUMN IF NOT EXISTS next_booking_id BIGINT;
+ALTER TABLE items ADD COLUMN IF NOT EXISTS next_booker_id BIGINT;
+ALTER TABLE items ADD COLUMN IF NOT EXISTS next_start_date TIMESTAMP WITHOUT TIME ZONE;
+ALTER TABLE items ADD COLUMN IF NOT EXISTS next_end_date TIMESTAMP WITHOUT TIME ZONE;
+ALTER TABLE items ADD COLUMN IF NOT EXISTS bookings_refresh_at TIMESTAMP WITHOUT TIME ZONE DEFAULT LOCALTIMESTAMP;
+ALTER TABLE items ALTER COLUMN bookings_refresh_at DROP DEFAULT;
+
 CREATE TABLE IF NOT EXISTS comments
 (
-    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY NOT NULL,
-    text         TEXT                                                NOT NULL,
-    item_id      BIGINT REFERENCES items (id)                        NOT NULL,
-    author_id    BIGINT REFERENCES users (id)                        NOT NULL,
-    created_date TIMESTAMP WITHOUT TIME ZONE                         NOT NULL
-)
\ No newline at end of file
+    id           BIGINT DEFAULT nextval('comments_seq') PRIMARY KEY NOT NULL,
+    text         TEXT                                               NOT NULL,
+    item_id      BIGINT REFERENCES items (id)                       NOT NULL,
+    author_id    BIGINT REFERENCES users (id)                       NOT NULL,
+    created_date TIMESTAMP WITHOUT TIME ZONE                        NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS outbox_events
+(
+    id             BIGINT DEFAULT nextval('outbox_events_seq') PRIMARY KEY NOT NULL,
+    aggregate_type VARCHAR(32)                                             NOT NULL,
+    aggregate_id   BIGINT                                                  NOT NULL,
+    event_type     VARCHAR(32)                                             NOT NULL,
+    created_date   TIMESTAMP WITHOUT TIME ZONE                             NOT NULL
+);
+
+ALTER TABLE outbox_events ADD COLUMN IF NOT EXISTS attempts INT DEFAULT 0 NOT NULL;
+ALTER TABLE outbox_events ADD COLUMN IF NOT EXISTS next_attempt_date TIMESTAMP WITHOUT TIME ZONE;
+ALTER TABLE outbox_events ADD COLUMN IF NOT EXISTS parked BOOLEAN DEFAULT FALSE NOT NULL;
+
+CREATE INDEX IF NOT EXISTS requests_requestor_created_idx ON requests (requestor_id, created_date);
+CREATE INDEX IF NOT EXISTS requests_created_idx ON requests (created_date, id);
+
+CREATE INDEX IF NOT EXISTS items_owner_idx ON items (owner_id, id);
+CREATE INDEX IF NOT EXISTS items_request_idx ON items (request_id);
+CREATE INDEX IF NOT EXISTS items_bookings_refresh_idx ON items (bookings_refresh_at);
+
+CREATE INDEX IF NOT EXISTS bookings_booker_start_idx ON bookings (booker_id, start_date DESC, id DESC);
+CREATE INDEX IF NOT EXISTS bookings_booker_status_start_idx ON bookings (booker_id, status, start_date DESC);
+CREATE INDEX IF NOT EXISTS bookings_owner_start_idx ON bookings (owner_id, start_date DESC, id DESC);
+CREATE INDEX IF NOT EXISTS bookings_owner_status_start_idx ON bookings (owner_id, status, start_date DESC);
+CREATE INDEX IF NOT EXISTS bookings_item_start_idx ON bookings (item_id, start_date);
+CREATE INDEX IF NOT EXISTS bookings_item_end_idx ON bookings (item_id, end_date);
+CREATE INDEX IF NOT EXISTS bookings_item_booker_end_idx ON bookings (item_id, booker_id, end_date);
+CREATE INDEX IF NOT EXISTS bookings_status_end_idx ON bookings (status, end_date);
+
+CREATE INDEX IF NOT EXISTS bookings_archive_booker_start_idx ON bookings_archive (booker_id, start_date DESC, id DESC);
+CREATE INDEX IF NOT EXISTS bookings_archive_booker_status_start_idx
+    ON bookings_archive (booker_id, status, start_date DESC);
+CREATE INDEX IF NOT EXISTS bookings_archive_owner_start_idx ON bookings_archive (owner_id, start_date DESC, id DESC);
+CREATE INDEX IF NOT EXISTS bookings_archive_owner_status_start_idx
+    ON bookings_archive (owner_id, status, start_date DESC);
+CREATE INDEX IF NOT EXISTS bookings_archive_item_end_idx ON bookings_archive (item_id, end_date);
+CREATE INDEX IF NOT EXISTS bookings_archive_item_booker_end_idx ON bookings_archive (item_id, booker_id, end_date);
+
+CREATE INDEX IF NOT EXISTS comments_item_created_idx ON comments (item_id, created_date);
+
+CREATE INDEX IF NOT EXISTS outbox_events_aggregate_idx ON outbox_events (aggregate_type, aggregate_id, id);
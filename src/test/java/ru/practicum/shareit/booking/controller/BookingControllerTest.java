@@ -13,18 +13,29 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingSummaryDto;
 import ru.practicum.shareit.booking.model.BookingStatus;
 import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.common.PageCursor;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.user.dto.UserDto;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(BookingController.class)
@@ -92,6 +103,29 @@ class BookingControllerTest {
                 .approveRejectBooking(1L, 1L, true);
     }
 
+    @Test
+    void approveRejectBatch() throws Exception {
+        final List<BookingDecisionDto> decisions = List.of(BookingDecisionDto.of(1L, true),
+                BookingDecisionDto.of(2L, false));
+        final List<BookingDecisionResultDto> results = List.of(
+                BookingDecisionResultDto.success(1L, BookingStatus.APPROVED),
+                BookingDecisionResultDto.failure(2L, "Нельзя изменить статус подтвержденного бронирования"));
+        when(bookingService.approveRejectBookings(decisions, 1L)).thenReturn(results);
+
+        mockMvc.perform(
+                patch("/bookings/batch")
+                        .header("X-Sharer-User-Id", 1)
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(decisions))
+        )
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"bookingId\":1,\"status\":\"APPROVED\"},"
+                        + "{\"bookingId\":2,\"error\":\"Нельзя изменить статус подтвержденного бронирования\"}]"));
+
+        verify(bookingService, times(1)).approveRejectBookings(decisions, 1L);
+        verify(bookingService, never()).approveRejectBooking(anyLong(), anyLong(), anyBoolean());
+    }
+
     @Test
     void getById() throws Exception {
         when(bookingService.getBookingById(1L, 1L)).thenReturn(testBookingDto);
@@ -122,6 +156,36 @@ class BookingControllerTest {
                 0, 10);
     }
 
+    @Test
+    void getByBookerIdAndStateAfterCursor() throws Exception {
+        final PageCursor cursor = PageCursor.of(testBookingDto.getStart().plusDays(1), 5L);
+        when(bookingService.getAllBookingsByBookerAndState(1L, "ALL", cursor, 1))
+                .thenReturn(List.of(testBookingDto));
+
+        mockMvc.perform(
+                get("/bookings")
+                        .header("X-Sharer-User-Id", 1)
+                        .param("after", cursor.encode())
+                        .param("size", "1")
+                )
+                .andExpect(status().isOk())
+                .andExpect(header().string(PageCursor.NEXT_CURSOR_HEADER,
+                        PageCursor.of(testBookingDto.getStart(), testBookingDto.getId()).encode()))
+                .andExpect(content().json(objectMapper.writeValueAsString(List.of(testBookingDto))));
+
+        verify(bookingService, times(1)).getAllBookingsByBookerAndState(1L, "ALL", cursor, 1);
+    }
+
+    @Test
+    void getByBookerIdAndStateWithInvalidCursor() throws Exception {
+        mockMvc.perform(
+                get("/bookings")
+                        .header("X-Sharer-User-Id", 1)
+                        .param("after", "!")
+                )
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void getByOwnerIdAndState() throws Exception {
         when(bookingService.getAllBookingsByOwnerAndState(1L, "ALL", 0, 10))
@@ -137,4 +201,71 @@ class BookingControllerTest {
         verify(bookingService, times(1)).getAllBookingsByOwnerAndState(1L, "ALL",
                 0, 10);
     }
-}
\ No newline at end of file
+
+    @Test
+    void exportByOwnerIdAndState() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<Consumer<BookingDto>>getArgument(2).accept(testBookingDto);
+            return null;
+        }).when(bookingService).exportBookingsByOwnerAndState(eq(1L), eq("PAST"), any());
+
+        mockMvc.perform(
+                        get("/bookings/owner/export")
+                                .header("X-Sharer-User-Id", 1)
+                                .param("state", "PAST")
+                                .param("format", "csv")
+                )
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv;charset=UTF-8"))
+                .andExpect(content().string("id,start,end,status,itemId,itemName,bookerId,bookerName\n"
+                        + "1," + testBookingDto.getStart() + "," + testBookingDto.getEnd()
+                        + ",APPROVED,1,Test item dto,1,Test user\n"));
+
+        verify(bookingService, never()).getAllBookingsByOwnerAndState(anyLong(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void exportByOwnerIdWithoutBookings() throws Exception {
+        mockMvc.perform(
+                        get("/bookings/owner/export")
+                                .header("X-Sharer-User-Id", 1)
+                                .param("format", "csv")
+                )
+                .andExpect(status().isOk())
+                .andExpect(content().string("id,start,end,status,itemId,itemName,bookerId,bookerName\n"));
+
+        verify(bookingService, times(1)).exportBookingsByOwnerAndState(eq(1L), eq("ALL"), any());
+    }
+
+    @Test
+    void getBookerSummary() throws Exception {
+        final BookingSummaryDto summary = BookingSummaryDto.of(6L, 1L, 2L, 3L, 4L, 5L);
+        when(bookingService.getBookingsSummaryByBooker(1L)).thenReturn(summary);
+
+        mockMvc.perform(
+                        get("/bookings/summary")
+                                .header("X-Sharer-User-Id", 1)
+                )
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"all\":6,\"current\":1,\"past\":2,\"future\":3,\"waiting\":4,"
+                        + "\"rejected\":5}"));
+
+        verify(bookingService, times(1)).getBookingsSummaryByBooker(1L);
+    }
+
+    @Test
+    void getOwnerSummary() throws Exception {
+        final BookingSummaryDto summary = BookingSummaryDto.of(2L, 0L, 0L, 0L, 2L, 0L);
+        when(bookingService.getBookingsSummaryByOwner(1L)).thenReturn(summary);
+
+        mockMvc.perform(
+                        get("/bookings/owner/summary")
+                                .header("X-Sharer-User-Id", 1)
+                )
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(summary)));
+
+        verify(bookingService, times(1)).getBookingsSummaryByOwner(1L);
+        verify(bookingService, never()).getAllBookingsByOwnerAndState(anyLong(), any(), anyInt(), anyInt());
+    }
+}
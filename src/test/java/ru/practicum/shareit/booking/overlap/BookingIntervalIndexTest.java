@@ -0,0 +1,69 @@
+package ru.practicum.shareit.booking.overlap;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class BookingIntervalIndexTest {
+
+    static LocalDateTime NOW_DATE_TIME = LocalDateTime.now();
+
+    BookingRepository bookingRepository = mock(BookingRepository.class);
+    BookingIntervalIndex bookingIntervalIndex = new BookingIntervalIndex(bookingRepository);
+
+    User testUser = User.of(1L, "Test user", "user@test.email");
+    Item testItem = Item.of(1L, "Test item", "description", true, 1L, null);
+    Item otherItem = Item.of(2L, "Other item", "description", true, 1L, null);
+
+    private Booking booking(Long id, Item item, int startDays, int endDays) {
+        return Booking.of(id, NOW_DATE_TIME.plusDays(startDays), NOW_DATE_TIME.plusDays(endDays), item, testUser,
+                BookingStatus.APPROVED);
+    }
+
+    @Test
+    void reserveAndRelease() {
+        final Booking booking = booking(1L, testItem, 1, 3);
+
+        assertTrue(bookingIntervalIndex.reserve(booking), "Не занимается свободный период");
+        assertFalse(bookingIntervalIndex.reserve(booking(2L, testItem, 2, 4)), "Занимается пересекающийся период");
+        assertTrue(bookingIntervalIndex.reserve(booking(3L, testItem, 3, 4)), "Не занимается смежный период");
+        assertTrue(bookingIntervalIndex.reserve(booking(4L, otherItem, 2, 4)), "Не занимается период другой вещи");
+
+        bookingIntervalIndex.release(booking);
+        assertFalse(bookingIntervalIndex.overlaps(testItem.getId(), NOW_DATE_TIME.plusDays(1),
+                NOW_DATE_TIME.plusDays(2)), "Освобожденный период считается занятым");
+        assertFalse(bookingIntervalIndex.overlaps(3L, NOW_DATE_TIME.plusDays(1), NOW_DATE_TIME.plusDays(2)),
+                "Период вещи без бронирований считается занятым");
+    }
+
+    @Test
+    void rebuild() {
+        final Booking first = booking(1L, testItem, 1, 2);
+        final Booking second = booking(5L, otherItem, 1, 2);
+        when(bookingRepository.findAllByStatusAndEndAfterAndIdGreaterThan(eq(BookingStatus.APPROVED),
+                any(LocalDateTime.class), eq(0L), any(Pageable.class))).thenReturn(List.of(first, second));
+
+        bookingIntervalIndex.rebuild();
+
+        assertTrue(bookingIntervalIndex.overlaps(testItem.getId(), first.getStart(), first.getEnd()),
+                "Индекс не заполняется подтвержденными бронированиями");
+        assertTrue(bookingIntervalIndex.overlaps(otherItem.getId(), second.getStart(), second.getEnd()),
+                "Индекс не заполняется бронированиями других вещей");
+    }
+}
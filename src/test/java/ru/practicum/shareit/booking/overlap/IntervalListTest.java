@@ -0,0 +1,73 @@
+package ru.practicum.shareit.booking.overlap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntervalListTest {
+
+    @Test
+    void overlaps() {
+        final IntervalList intervals = new IntervalList();
+        intervals.add(1L, 10, 20);
+        intervals.add(2L, 30, 40);
+        intervals.add(3L, 0, 5);
+
+        assertTrue(intervals.overlaps(15, 35), "Не найдено пересечение");
+        assertTrue(intervals.overlaps(12, 13), "Не найдено вложенное пересечение");
+        assertTrue(intervals.overlaps(5, 100), "Не найдено пересечение с охватывающим периодом");
+        assertFalse(intervals.overlaps(20, 30), "Смежные периоды считаются пересекающимися");
+        assertFalse(intervals.overlaps(40, 50), "Найдено пересечение с периодом после всех интервалов");
+        assertEquals(3, intervals.size(), "Неверное количество интервалов");
+    }
+
+    @Test
+    void overlapsWithLongIntervalBefore() {
+        final IntervalList intervals = new IntervalList();
+        intervals.add(1L, 0, 100);
+        intervals.add(2L, 10, 20);
+
+        assertTrue(intervals.overlaps(50, 60), "Не учитывается длинный интервал, начинающийся раньше");
+    }
+
+    @Test
+    void removeAndPrune() {
+        final IntervalList intervals = new IntervalList();
+        for (long i = 0; i < 10; i++) {
+            intervals.add(i, i * 10, i * 10 + 5);
+        }
+
+        assertTrue(intervals.remove(3L), "Интервал не удаляется");
+        assertFalse(intervals.remove(3L), "Удаляется отсутствующий интервал");
+        assertFalse(intervals.overlaps(30, 35), "Удаленный интервал учитывается при проверке");
+
+        intervals.removeEndedBefore(50);
+        assertEquals(5, intervals.size(), "Не удаляются завершенные интервалы");
+        assertFalse(intervals.overlaps(0, 50), "Завершенные интервалы учитываются при проверке");
+        assertTrue(intervals.overlaps(52, 53), "Удаляются незавершенные интервалы");
+    }
+
+    @Test
+    void overlapsMatchesLinearScan() {
+        final Random random = new Random(42);
+        final IntervalList intervals = new IntervalList();
+        final long[][] added = new long[200][];
+        for (int i = 0; i < added.length; i++) {
+            final long start = random.nextInt(10_000);
+            added[i] = new long[]{start, start + 1 + random.nextInt(50)};
+            intervals.add(i, added[i][0], added[i][1]);
+        }
+        for (int i = 0; i < 1_000; i++) {
+            final long start = random.nextInt(10_000);
+            final long end = start + 1 + random.nextInt(50);
+            boolean expected = false;
+            for (long[] interval : added) {
+                expected |= interval[0] < end && start < interval[1];
+            }
+            assertEquals(expected, intervals.overlaps(start, end),
+                    String.format("Неверный результат проверки пересечения для [%s, %s)", start, end));
+        }
+    }
+}
@@ -7,8 +7,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.annotation.DirtiesContext;
+import ru.practicum.shareit.booking.model.AbstractBooking;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.BookingStatus;
 import ru.practicum.shareit.item.model.Item;
@@ -17,9 +20,11 @@ import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -29,11 +34,13 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 class BookingRepositoryTest {
 
-    static LocalDateTime TEST_TIME = LocalDateTime.now();
+    static LocalDateTime TEST_TIME = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    static Set<BookingStatus> ACTIVE_STATUSES = Set.of(BookingStatus.APPROVED, BookingStatus.WAITING);
 
     UserRepository userRepository;
     ItemRepository itemRepository;
     BookingRepository bookingRepository;
+    BookingHistoryRepository bookingHistoryRepository;
 
     User testUser1 = User.of(1L, "User 1", "user1@email.ru");
     User testUser2 = User.of(2L, "User 2", "user2@email.ru");
@@ -70,7 +77,7 @@ class BookingRepositoryTest {
                     BookingStatus.CANCELED)
             );
 
-    private static void assertEqualsBookings(Booking booking1, Booking booking2) {
+    private static void assertEqualsBookings(AbstractBooking booking1, AbstractBooking booking2) {
         assertEquals(booking1.getId(), booking2.getId(), "Возвращается неверный id аренды");
         assertEquals(booking1.getStart(), booking2.getStart(), "Возвращается неверное начала аренды");
         assertEquals(booking1.getEnd(), booking2.getEnd(), "Возвращается неверное время окончания аренды");
@@ -89,13 +96,15 @@ class BookingRepositoryTest {
     @Test
     @DirtiesContext
     void findAllByBooker() {
-        final List<Booking> bookingsByBooker1 = bookingRepository.findAllByBooker(testUser1, Pageable.unpaged());
+        final List<AbstractBooking> bookingsByBooker1 =
+                bookingHistoryRepository.findAllByBooker(testUser1, Pageable.unpaged());
         assertEquals(8, bookingsByBooker1.size(), "Неверное количество аренд для арендатора 1");
         bookingsByBooker1.forEach(
                 booking -> assertEqualsBookings(booking, testBookings.get(booking.getId().intValue() - 1))
                 );
 
-        final List<Booking> bookingsByBooker2 = bookingRepository.findAllByBooker(testUser2, Pageable.unpaged());
+        final List<AbstractBooking> bookingsByBooker2 =
+                bookingHistoryRepository.findAllByBooker(testUser2, Pageable.unpaged());
         assertEquals(4, bookingsByBooker2.size(), "Неверное количество аренд для арендатора 2");
         bookingsByBooker2.forEach(
                 booking -> assertEqualsBookings(booking, testBookings.get(booking.getId().intValue() - 1))
@@ -133,11 +142,11 @@ class BookingRepositoryTest {
     @Test
     @DirtiesContext
     void findAllByBookerAndEndBefore() {
-        final List<Booking> bookingsByBooker2 = bookingRepository.findAllByBookerAndEndBefore(testUser2, TEST_TIME,
-                Pageable.unpaged());
+        final List<AbstractBooking> bookingsByBooker2 =
+                bookingHistoryRepository.findAllByBookerAndEndBefore(testUser2, TEST_TIME, Pageable.unpaged());
         assertTrue(bookingsByBooker2.isEmpty(), "Для арендатора 2 возвращается непустой список прошлых аренд");
-        final List<Booking> bookingsByBooker1 = bookingRepository.findAllByBookerAndEndBefore(testUser1, TEST_TIME,
-                Pageable.unpaged());
+        final List<AbstractBooking> bookingsByBooker1 =
+                bookingHistoryRepository.findAllByBookerAndEndBefore(testUser1, TEST_TIME, Pageable.unpaged());
         assertEquals(4, bookingsByBooker1.size(), "Неверное количество прошлых аренд для арендатора 1");
         bookingsByBooker1.forEach(
                 booking -> assertEqualsBookings(booking, testBookings.get(booking.getId().intValue() - 1))
@@ -179,13 +188,15 @@ class BookingRepositoryTest {
 
     @Test
     @DirtiesContext
-    void findAllByItemOwnerId() {
-        final List<Booking> bookingsByOwner1 = bookingRepository.findAllByItemOwnerId(1L, Pageable.unpaged());
+    void findAllByOwnerId() {
+        final List<AbstractBooking> bookingsByOwner1 =
+                bookingHistoryRepository.findAllByOwnerId(1L, Pageable.unpaged());
         assertEquals(4, bookingsByOwner1.size(), "Неверное количество аренд для владельца 1");
         bookingsByOwner1.forEach(
                 booking -> assertEqualsBookings(booking, testBookings.get(booking.getId().intValue() - 1))
         );
-        final List<Booking> bookingsByOwner2 = bookingRepository.findAllByItemOwnerId(2L, Pageable.unpaged());
+        final List<AbstractBooking> bookingsByOwner2 =
+                bookingHistoryRepository.findAllByOwnerId(2L, Pageable.unpaged());
         assertEquals(8, bookingsByOwner2.size(), "Неверное количество аренд для владельца 2");
         bookingsByOwner2.forEach(
                 booking -> assertEqualsBookings(booking, testBookings.get(booking.getId().intValue() - 1))
@@ -194,11 +205,11 @@ class BookingRepositoryTest {
 
     @Test
     @DirtiesContext
-    void findAllByItemOwnerIdStateCurrent() {
-        final List<Booking> bookingsByOwner1 = bookingRepository.findAllByItemOwnerIdStateCurrent(1L,
+    void findAllByOwnerIdStateCurrent() {
+        final List<Booking> bookingsByOwner1 = bookingRepository.findAllByOwnerIdStateCurrent(1L,
                 Pageable.unpaged());
         assertTrue(bookingsByOwner1.isEmpty(), "Для владельца 1 возвращается непустой список текущих аренд");
-        final List<Booking> bookingsByOwner2 = bookingRepository.findAllByItemOwnerIdStateCurrent(2L,
+        final List<Booking> bookingsByOwner2 = bookingRepository.findAllByOwnerIdStateCurrent(2L,
                 Pageable.unpaged());
         assertEquals(4, bookingsByOwner2.size(), "Неверное количество текущих аренд для владельца 2");
         bookingsByOwner2.forEach(
@@ -208,11 +219,11 @@ class BookingRepositoryTest {
 
     @Test
     @DirtiesContext
-    void findAllByItemOwnerIdAndStartAfter() {
-        final List<Booking> bookingsByOwner1 = bookingRepository.findAllByItemOwnerIdAndStartAfter(1L,
+    void findAllByOwnerIdAndStartAfter() {
+        final List<Booking> bookingsByOwner1 = bookingRepository.findAllByOwnerIdAndStartAfter(1L,
                 TEST_TIME, Pageable.unpaged());
         assertTrue(bookingsByOwner1.isEmpty(), "Для владельца 1 возвращается непустой список будущих аренд");
-        final List<Booking> bookingsByOwner2 = bookingRepository.findAllByItemOwnerIdAndStartAfter(2L,
+        final List<Booking> bookingsByOwner2 = bookingRepository.findAllByOwnerIdAndStartAfter(2L,
                 TEST_TIME, Pageable.unpaged());
         assertEquals(4, bookingsByOwner2.size(), "Неверное количество будущих аренд для владельца 1");
         bookingsByOwner2.forEach(
@@ -222,11 +233,11 @@ class BookingRepositoryTest {
 
     @Test
     @DirtiesContext
-    void findAllByItemOwnerIdAndEndBefore() {
-        final List<Booking> bookingsByOwner2 = bookingRepository.findAllByItemOwnerIdAndEndBefore(2L,
+    void findAllByOwnerIdAndEndBefore() {
+        final List<AbstractBooking> bookingsByOwner2 = bookingHistoryRepository.findAllByOwnerIdAndEndBefore(2L,
                 TEST_TIME, Pageable.unpaged());
         assertTrue(bookingsByOwner2.isEmpty(), "Для арендатора 2 возвращается непустой список прошлых аренд");
-        final List<Booking> bookingsByOwner1 = bookingRepository.findAllByItemOwnerIdAndEndBefore(1L,
+        final List<AbstractBooking> bookingsByOwner1 = bookingHistoryRepository.findAllByOwnerIdAndEndBefore(1L,
                 TEST_TIME, Pageable.unpaged());
         assertEquals(4, bookingsByOwner1.size(), "Неверное количество прошлых аренд для арендатора 1");
         bookingsByOwner1.forEach(
@@ -236,29 +247,29 @@ class BookingRepositoryTest {
 
     @Test
     @DirtiesContext
-    void findAllByItemOwnerIdAndStatus() {
-        final List<Booking> bookingsByOwner1AndWaiting = bookingRepository.findAllByItemOwnerIdAndStatus(1L,
+    void findAllByOwnerIdAndStatus() {
+        final List<Booking> bookingsByOwner1AndWaiting = bookingRepository.findAllByOwnerIdAndStatus(1L,
                 BookingStatus.WAITING, Pageable.unpaged());
         assertEquals(1, bookingsByOwner1AndWaiting.size(),
                 "Неверное количество аренд в статусе WAITING");
         bookingsByOwner1AndWaiting.forEach(
                 booking -> assertEqualsBookings(booking, testBookings.get(booking.getId().intValue() - 1))
         );
-        final List<Booking> bookingsByOwner1AndCanceled = bookingRepository.findAllByItemOwnerIdAndStatus(1L,
+        final List<Booking> bookingsByOwner1AndCanceled = bookingRepository.findAllByOwnerIdAndStatus(1L,
                 BookingStatus.CANCELED, Pageable.unpaged());
         assertEquals(1, bookingsByOwner1AndCanceled.size(),
                 "Неверное количество аренд в статусе CANCELED");
         bookingsByOwner1AndCanceled.forEach(
                 booking -> assertEqualsBookings(booking, testBookings.get(booking.getId().intValue() - 1))
         );
-        final List<Booking> bookingsByOwner2AndApproved = bookingRepository.findAllByItemOwnerIdAndStatus(2L,
+        final List<Booking> bookingsByOwner2AndApproved = bookingRepository.findAllByOwnerIdAndStatus(2L,
                 BookingStatus.APPROVED, Pageable.unpaged());
         assertEquals(2, bookingsByOwner2AndApproved.size(),
                 "Неверное количество аренд в статусе APPROVED");
         bookingsByOwner2AndApproved.forEach(
                 booking -> assertEqualsBookings(booking, testBookings.get(booking.getId().intValue() - 1))
         );
-        final List<Booking> bookingsByOwner2AndRejected = bookingRepository.findAllByItemOwnerIdAndStatus(2L,
+        final List<Booking> bookingsByOwner2AndRejected = bookingRepository.findAllByOwnerIdAndStatus(2L,
                 BookingStatus.REJECTED, Pageable.unpaged());
         assertEquals(2, bookingsByOwner2AndRejected.size(),
                 "Неверное количество аренд в статусе REJECTED");
@@ -270,12 +281,12 @@ class BookingRepositoryTest {
     @Test
     @DirtiesContext
     void findAllByItemIdAndBookerIdAndEndBefore() {
-        final Set<Booking> bookingsByBooker2 = bookingRepository.findAllByItemIdAndBookerIdAndEndBefore(1L,
-                2L, TEST_TIME);
+        final Set<AbstractBooking> bookingsByBooker2 =
+                bookingHistoryRepository.findAllByItemIdAndBookerIdAndEndBefore(1L, 2L, TEST_TIME);
         assertTrue(bookingsByBooker2.isEmpty(),
                 "Для вещи 2 арендатора 2 возвращается непустой список прошлых аренд");
-        final Set<Booking> bookingsByBooker1 = bookingRepository.findAllByItemIdAndBookerIdAndEndBefore(2L,
-                1L, TEST_TIME);
+        final Set<AbstractBooking> bookingsByBooker1 =
+                bookingHistoryRepository.findAllByItemIdAndBookerIdAndEndBefore(2L, 1L, TEST_TIME);
         assertEquals(4, bookingsByBooker1.size(),
                 "Неверное количество прошлых аренд для веши 2 для арендатора 1");
         bookingsByBooker1.forEach(
@@ -285,17 +296,158 @@ class BookingRepositoryTest {
 
     @Test
     @DirtiesContext
-    void findFirstByItemAndEndBeforeOrderByEndDesc() {
-        final Optional<Booking> booking = bookingRepository.findFirstByItemAndEndBeforeOrderByEndDesc(testItem2, TEST_TIME);
+    void findFirstByItemAndStatusInAndEndBeforeOrderByEndDesc() {
+        final Optional<AbstractBooking> booking =
+                bookingHistoryRepository.findFirstByItemAndStatusInAndEndBeforeOrderByEndDesc(
+                        testItem2, ACTIVE_STATUSES, TEST_TIME);
+        assertTrue(booking.isPresent(), "Возвращается пустая аренда");
+        assertTrue(Set.of(5L, 7L).contains(booking.get().getId()), "Возвращается неверная последняя аренда");
+        assertTrue(bookingHistoryRepository.findFirstByItemAndStatusInAndEndBeforeOrderByEndDesc(testItem1,
+                ACTIVE_STATUSES, TEST_TIME).isEmpty(), "Для вещи без завершенных аренд возвращается аренда");
+    }
+
+    @Test
+    @DirtiesContext
+    void findFirstByItemAndStatusInAndStartAfterOrderByStartAsc() {
+        final Optional<Booking> booking = bookingRepository.findFirstByItemAndStatusInAndStartAfterOrderByStartAsc(
+                testItem1, ACTIVE_STATUSES, TEST_TIME.minusHours(3));
         assertTrue(booking.isPresent(), "Возвращается пустая аренда");
-        assertEqualsBookings(testBookings.get(4), booking.get());
+        assertTrue(Set.of(9L, 11L).contains(booking.get().getId()), "Возвращается не ближайшая следующая аренда");
+        assertTrue(bookingRepository.findFirstByItemAndStatusInAndStartAfterOrderByStartAsc(testItem2,
+                ACTIVE_STATUSES, TEST_TIME).isEmpty(), "Для вещи без будущих аренд возвращается аренда");
     }
 
     @Test
     @DirtiesContext
-    void findFirstByItemAndStartAfterOrderByStartDesc() {
-        final Optional<Booking> booking = bookingRepository.findFirstByItemAndStartAfterOrderByStartDesc(testItem1, TEST_TIME);
+    void findFirstByItemAndStatusInAndEndAfterOrderByEndAsc() {
+        final Optional<Booking> booking = bookingRepository.findFirstByItemAndStatusInAndEndAfterOrderByEndAsc(
+                testItem1, ACTIVE_STATUSES, TEST_TIME);
         assertTrue(booking.isPresent(), "Возвращается пустая аренда");
-        assertEqualsBookings(testBookings.get(0), booking.get());
+        assertTrue(Set.of(9L, 11L).contains(booking.get().getId()), "Возвращается неверная текущая аренда");
+    }
+
+    @Test
+    @DirtiesContext
+    void findPageByBooker() {
+        final Pageable pageable = PageRequest.of(0, 3, Sort.by("start", "id").descending());
+
+        final List<AbstractBooking> firstPage = bookingHistoryRepository.findPageByBooker(testUser1,
+                TEST_TIME.plusDays(1), Long.MAX_VALUE, pageable);
+        assertEquals(List.of(4L, 3L, 2L), toIds(firstPage), "Неверная первая страница аренд");
+
+        final AbstractBooking last = firstPage.get(firstPage.size() - 1);
+        final List<AbstractBooking> secondPage = bookingHistoryRepository.findPageByBooker(testUser1, last.getStart(),
+                last.getId(), pageable);
+        assertEquals(List.of(1L, 8L, 7L), toIds(secondPage), "Неверная вторая страница аренд");
+    }
+
+    @Test
+    @DirtiesContext
+    void findPageByBookerAndStatus() {
+        final Pageable pageable = PageRequest.of(0, 10, Sort.by("start", "id").descending());
+
+        final List<Booking> bookings = bookingRepository.findPageByBookerAndStatus(testUser1,
+                BookingStatus.APPROVED, TEST_TIME.plusHours(1), 1L, pageable);
+        assertEquals(List.of(5L), toIds(bookings), "Неверная страница аренд после курсора");
+    }
+
+    @Test
+    @DirtiesContext
+    void findAllByItemIdInPeriod() {
+        final List<AbstractBooking> bookings = bookingHistoryRepository.findAllByItemIdInPeriod(testItem1.getId(),
+                Set.of(BookingStatus.APPROVED, BookingStatus.WAITING), TEST_TIME, TEST_TIME.plusHours(3));
+        final List<Long> ids = toIds(bookings);
+        assertEquals(4, ids.size(), "Неверное количество аренд за период");
+        assertEquals(Set.of(9L, 11L), Set.copyOf(ids.subList(0, 2)), "Неверный порядок аренд за период");
+        assertEquals(Set.of(1L, 3L), Set.copyOf(ids.subList(2, 4)), "Неверный порядок аренд за период");
+
+        assertTrue(bookingHistoryRepository.findAllByItemIdInPeriod(testItem1.getId(),
+                Set.of(BookingStatus.APPROVED), TEST_TIME.plusHours(2), TEST_TIME.plusHours(3)).isEmpty(),
+                "Возвращаются аренды вне периода");
+    }
+
+    @Test
+    @DirtiesContext
+    void findAllByItemIdInPeriodIncludesLongBookings() {
+        final Booking longBooking = bookingRepository.save(Booking.of(null, TEST_TIME.minusYears(2),
+                TEST_TIME.plusHours(5), testItem2, testUser1, BookingStatus.APPROVED));
+
+        assertTrue(toIds(bookingHistoryRepository.findAllByItemIdInPeriod(testItem2.getId(),
+                        Set.of(BookingStatus.APPROVED), TEST_TIME.plusHours(3), TEST_TIME.plusHours(4)))
+                        .contains(longBooking.getId()),
+                "Не возвращается аренда, начавшаяся задолго до периода");
+    }
+
+    @Test
+    @DirtiesContext
+    void findAllByItemIdInPeriodIncludesArchive() {
+        bookingRepository.copyToArchive(Set.of(5L));
+        bookingRepository.deleteAllByIdInBatch(Set.of(5L));
+
+        assertEquals(List.of(5L, 7L), toIds(bookingHistoryRepository.findAllByItemIdInPeriod(testItem2.getId(),
+                        Set.of(BookingStatus.APPROVED, BookingStatus.WAITING), TEST_TIME.minusHours(3), TEST_TIME))
+                        .stream().sorted().collect(Collectors.toList()),
+                "Занятость за прошедший период не учитывает архивные аренды");
+    }
+
+    @Test
+    @DirtiesContext
+    void lockIdsByStatusInAndEndBefore() {
+        final List<Long> ids = bookingRepository.lockIdsByStatusInAndEndBefore(
+                Set.of(BookingStatus.REJECTED, BookingStatus.CANCELED), TEST_TIME, Pageable.unpaged());
+        assertEquals(Set.of(6L, 8L), Set.copyOf(ids), "Неверные аренды для переноса в архив");
+    }
+
+    @Test
+    @DirtiesContext
+    void copyToArchive() {
+        final Set<Long> archivedIds = Set.of(5L, 6L);
+        assertEquals(2, bookingRepository.copyToArchive(archivedIds), "Неверное количество перенесенных аренд");
+        bookingRepository.deleteAllByIdInBatch(archivedIds);
+
+        assertTrue(bookingRepository.findAllById(archivedIds).isEmpty(),
+                "Перенесенные аренды остаются в оперативной таблице");
+        final List<AbstractBooking> pastBookings = bookingHistoryRepository.findAllByBookerAndEndBefore(testUser1,
+                TEST_TIME, Pageable.unpaged());
+        assertEquals(Set.of(5L, 6L, 7L, 8L), Set.copyOf(toIds(pastBookings)),
+                "История аренд не включает архивные аренды");
+        pastBookings.forEach(
+                booking -> assertEqualsBookings(booking, testBookings.get(booking.getId().intValue() - 1))
+        );
+        assertTrue(bookingHistoryRepository.findById(5L).isPresent(), "Архивная аренда не находится по id");
+        assertEqualsCounts(List.of(8L, 0L, 4L, 4L, 2L, 2L),
+                bookingHistoryRepository.countByBookerGroupByState(testUser1, LocalDateTime.now()));
+    }
+
+    private static void assertEqualsCounts(List<Long> expected, BookingStateCounts counts) {
+        assertEquals(expected, List.of(counts.getAllCount(), counts.getCurrentCount(), counts.getPastCount(),
+                counts.getFutureCount(), counts.getWaitingCount(), counts.getRejectedCount()),
+                "Неверное количество аренд по состояниям");
+    }
+
+    @Test
+    @DirtiesContext
+    void countByBookerGroupByState() {
+        final LocalDateTime present = LocalDateTime.now();
+        assertEqualsCounts(List.of(8L, 0L, 4L, 4L, 2L, 2L),
+                bookingHistoryRepository.countByBookerGroupByState(testUser1, present));
+        assertEqualsCounts(List.of(4L, 4L, 0L, 0L, 1L, 1L),
+                bookingHistoryRepository.countByBookerGroupByState(testUser2, present));
+    }
+
+    @Test
+    @DirtiesContext
+    void countByOwnerIdGroupByState() {
+        final LocalDateTime present = LocalDateTime.now();
+        assertEqualsCounts(List.of(8L, 4L, 0L, 4L, 2L, 2L),
+                bookingHistoryRepository.countByOwnerIdGroupByState(testUser2.getId(), present));
+        assertEqualsCounts(List.of(4L, 0L, 4L, 0L, 1L, 1L),
+                bookingHistoryRepository.countByOwnerIdGroupByState(testUser1.getId(), present));
+        assertEqualsCounts(List.of(0L, 0L, 0L, 0L, 0L, 0L),
+                bookingHistoryRepository.countByOwnerIdGroupByState(3L, present));
+    }
+
+    private static List<Long> toIds(List<? extends AbstractBooking> bookings) {
+        return bookings.stream().map(AbstractBooking::getId).collect(Collectors.toList());
     }
-}
\ No newline at end of file
+}
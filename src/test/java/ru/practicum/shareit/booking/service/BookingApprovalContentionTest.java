@@ -0,0 +1,141 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.common.exceptoins.BadRequestException;
+import ru.practicum.shareit.common.exceptoins.ConflictException;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверяет подтверждение бронирований при одновременных запросах и измеряет пропускную способность.
+ * Замер не входит в обычный прогон тестов, запускается профилем benchmark: mvn test -P benchmark.
+ */
+@Slf4j
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:contention")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+class BookingApprovalContentionTest {
+
+    static int THREADS_COUNT = 8;
+    static int BOOKINGS_COUNT = 200;
+
+    @Autowired
+    BookingService bookingService;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    ItemRepository itemRepository;
+    @Autowired
+    BookingRepository bookingRepository;
+
+    User owner;
+    User booker;
+    Item item;
+
+    @BeforeEach
+    void beforeEachTest() {
+        owner = userRepository.save(User.of(null, "Owner", "owner@email.ru"));
+        booker = userRepository.save(User.of(null, "Booker", "booker@email.ru"));
+        item = itemRepository.save(Item.of(null, "Item", "Item description", true, owner.getId(), null));
+    }
+
+    private List<Booking> createWaitingBookings(int count) {
+        final LocalDateTime start = LocalDateTime.now().plusDays(1);
+        return bookingRepository.saveAll(IntStream.range(0, count)
+                .mapToObj(i -> Booking.of(null, start.plusDays(i), start.plusDays(i).plusHours(1), item, booker,
+                        BookingStatus.WAITING))
+                .collect(Collectors.toList()));
+    }
+
+    private static <T> List<Future<T>> runConcurrently(List<Callable<T>> tasks) throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT);
+        try {
+            return executor.invokeAll(tasks);
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    @Test
+    void concurrentApprovalsOfSameBooking() throws Exception {
+        final Long bookingId = createWaitingBookings(1).get(0).getId();
+        final AtomicInteger approved = new AtomicInteger();
+        final AtomicInteger refused = new AtomicInteger();
+
+        final List<Callable<Void>> tasks = IntStream.range(0, THREADS_COUNT)
+                .mapToObj(i -> (Callable<Void>) () -> {
+                    try {
+                        bookingService.approveRejectBooking(bookingId, owner.getId(), true);
+                        approved.incrementAndGet();
+                    } catch (BadRequestException | ConflictException e) {
+                        refused.incrementAndGet();
+                    }
+                    return null;
+                })
+                .collect(Collectors.toList());
+        for (Future<Void> future : runConcurrently(tasks)) {
+            future.get();
+        }
+
+        final Booking booking = bookingRepository.findById(bookingId).orElseThrow();
+        assertEquals(THREADS_COUNT, approved.get() + refused.get(), "Не все запросы завершились");
+        assertEquals(1, approved.get(), "Бронирование подтверждено более одного раза");
+        assertEquals(BookingStatus.APPROVED, booking.getStatus(), "Бронирование не подтверждено");
+        assertEquals(1, booking.getVersion(), "Статус бронирования изменен более одного раза");
+    }
+
+    @Test
+    @Tag("benchmark")
+    void approvalThroughput() throws Exception {
+        final List<Booking> bookings = createWaitingBookings(BOOKINGS_COUNT);
+        final List<Callable<Void>> tasks = bookings.stream()
+                .map(booking -> (Callable<Void>) () -> {
+                    bookingService.approveRejectBooking(booking.getId(), owner.getId(), true);
+                    return null;
+                })
+                .collect(Collectors.toList());
+
+        final long started = System.nanoTime();
+        final List<Future<Void>> futures = runConcurrently(tasks);
+        final long elapsed = System.nanoTime() - started;
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+
+        log.info("Подтверждено {} бронирований в {} потоков: {} подтверждений в секунду", BOOKINGS_COUNT,
+                THREADS_COUNT, BOOKINGS_COUNT * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, 1));
+        final List<Booking> approvedBookings = bookingRepository.findAllById(bookings.stream()
+                .map(Booking::getId)
+                .collect(Collectors.toList()));
+        assertEquals(BOOKINGS_COUNT, approvedBookings.size(), "Неверное количество бронирований");
+        approvedBookings.forEach(booking -> assertEquals(BookingStatus.APPROVED, booking.getStatus(),
+                "Бронирование не подтверждено"));
+    }
+}
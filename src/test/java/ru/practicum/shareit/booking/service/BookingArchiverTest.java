@@ -0,0 +1,78 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class BookingArchiverTest {
+
+    BookingRepository bookingRepository = mock(BookingRepository.class);
+    TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+
+    BookingArchiver bookingArchiver = new BookingArchiver(bookingRepository, transactionTemplate, Duration.ofDays(30));
+
+    @BeforeEach
+    void beforeEachTest() {
+        when(transactionTemplate.execute(any())).thenAnswer(
+                invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    private static List<Long> ids(long from, long to) {
+        return LongStream.range(from, to).boxed().collect(Collectors.toList());
+    }
+
+    @Test
+    void archiveInBatches() {
+        final List<Long> fullBatch = ids(0, BookingArchiver.ARCHIVE_BATCH_SIZE);
+        final List<Long> lastBatch = ids(BookingArchiver.ARCHIVE_BATCH_SIZE, BookingArchiver.ARCHIVE_BATCH_SIZE + 3);
+        when(bookingRepository.lockIdsByStatusInAndEndBefore(anyCollection(), any(LocalDateTime.class),
+                any(Pageable.class))).thenReturn(fullBatch, lastBatch);
+
+        final int archived = bookingArchiver.archive(BookingArchiver.DECLINED_STATUSES, LocalDateTime.now());
+
+        assertEquals(fullBatch.size() + lastBatch.size(), archived, "Неверное количество перенесенных аренд");
+        verify(bookingRepository).copyToArchive(fullBatch);
+        verify(bookingRepository).deleteAllByIdInBatch(fullBatch);
+        verify(bookingRepository).copyToArchive(lastBatch);
+        verify(bookingRepository).deleteAllByIdInBatch(lastBatch);
+        verify(transactionTemplate, times(2)).execute(any());
+    }
+
+    @Test
+    void archiveDue() {
+        when(bookingRepository.lockIdsByStatusInAndEndBefore(anyCollection(), any(LocalDateTime.class),
+                any(Pageable.class))).thenReturn(Collections.emptyList());
+        final LocalDateTime started = LocalDateTime.now();
+
+        bookingArchiver.archiveDue();
+
+        verify(bookingRepository).lockIdsByStatusInAndEndBefore(eq(BookingArchiver.DECLINED_STATUSES),
+                argThat(before -> !before.isBefore(started)), any(Pageable.class));
+        verify(bookingRepository).lockIdsByStatusInAndEndBefore(eq(Set.of(BookingStatus.APPROVED)),
+                argThat(before -> before.isBefore(started.minusDays(29))), any(Pageable.class));
+        verify(bookingRepository, never()).copyToArchive(anyCollection());
+        verify(bookingRepository, never()).deleteAllByIdInBatch(any());
+    }
+}
@@ -2,15 +2,38 @@ package ru.practicum.shareit.booking.service;
 
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingMapper;
+import ru.practicum.shareit.booking.dto.BookingSummaryDto;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.overlap.BookingIntervalIndex;
+import ru.practicum.shareit.booking.repository.BookingHistoryRepository;
 import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.repository.BookingStateCounts;
+import ru.practicum.shareit.common.PageCursor;
+import ru.practicum.shareit.common.datasource.ReadReplicaRouting;
 import ru.practicum.shareit.common.exceptoins.BadRequestException;
+import ru.practicum.shareit.common.exceptoins.ConflictException;
 import ru.practicum.shareit.common.exceptoins.NotFoundException;
 import ru.practicum.shareit.common.exceptoins.ValidationException;
+import ru.practicum.shareit.common.outbox.AggregateType;
+import ru.practicum.shareit.common.outbox.EventType;
+import ru.practicum.shareit.common.outbox.OutboxPublisher;
 import ru.practicum.shareit.item.dto.ItemMapper;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.repository.ItemRepository;
@@ -18,15 +41,30 @@ import ru.practicum.shareit.requests.model.ItemRequest;
 import ru.practicum.shareit.user.dto.UserMapper;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.user.service.UserCache;
 
+import javax.persistence.EntityManager;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
@@ -35,10 +73,21 @@ class BookingServiceTest {
     static LocalDateTime NOW_DATE_TIME = LocalDateTime.now();
 
     BookingRepository bookingRepository = mock(BookingRepository.class);
+    BookingHistoryRepository bookingHistoryRepository = mock(BookingHistoryRepository.class);
     UserRepository userRepository = mock(UserRepository.class);
+    UserCache userCache = new UserCache(userRepository, new ReadReplicaRouting(""),
+            mock(PlatformTransactionManager.class), 10, Duration.ofMinutes(5));
     ItemRepository itemRepository = mock(ItemRepository.class);
 
-    BookingService bookingService = new BookingServiceImpl(bookingRepository, userRepository, itemRepository);
+    TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    OutboxPublisher outboxPublisher = mock(OutboxPublisher.class);
+    EntityManager entityManager = mock(EntityManager.class);
+
+    BookingIntervalIndex bookingIntervalIndex = new BookingIntervalIndex(bookingRepository);
+
+    BookingService bookingService = new BookingServiceImpl(bookingRepository, bookingHistoryRepository,
+            userRepository, userCache, itemRepository, bookingIntervalIndex, transactionTemplate, outboxPublisher,
+            entityManager);
 
     User testUser = User.of(1L, "Test user", "user@test.email");
     ItemRequest testItemRequest = ItemRequest.of(1L, "description", testUser, NOW_DATE_TIME);
@@ -51,6 +100,13 @@ class BookingServiceTest {
             UserMapper.toUserDto(testUser), ItemMapper.toItemDto(testItem), 1L);
     Booking testBooking = Booking.of(1L, NOW_DATE_TIME, NOW_DATE_TIME, testItem, testUser, BookingStatus.APPROVED);
 
+    @BeforeEach
+    void beforeEachTest() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> invocation
+                .<TransactionCallback<?>>getArgument(0).doInTransaction(new SimpleTransactionStatus()));
+        when(userRepository.getReferenceById(anyLong())).thenReturn(testUser);
+    }
+
     @Test
     void createBookingByInvalidUser() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
@@ -118,6 +174,21 @@ class BookingServiceTest {
 
         assertNotNull(bookingDto, "Не создается аренда");
         assertEquals(testBookingDto.getId(), bookingDto.getId(), "Возвращается неверный id аренды");
+        verify(bookingRepository).save(argThat(booking -> testItem.getOwnerId().equals(booking.getOwnerId())));
+        verify(outboxPublisher).publish(AggregateType.BOOKING, testBooking.getId(), EventType.CREATED);
+    }
+
+    @Test
+    void createBookingOverlapping() {
+        bookingIntervalIndex.reserve(Booking.of(2L, NOW_DATE_TIME.plusDays(1), NOW_DATE_TIME.plusDays(3), testItem,
+                testUser, BookingStatus.APPROVED));
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(itemRepository.findById(anyLong())).thenReturn(Optional.of(testItem));
+
+        Throwable e = assertThrows(BadRequestException.class, () -> bookingService.createBooking(
+                BookingDto.of(null, NOW_DATE_TIME.plusDays(2), NOW_DATE_TIME.plusDays(4), null, null, null, 1L),
+                2L), "Создание пересекающегося бронирования не вызывает исключения");
+        assertEquals("Вещь уже забронирована на указанный период", e.getMessage(), "Неверное сообщение об ошибке");
     }
 
     @Test
@@ -180,11 +251,75 @@ class BookingServiceTest {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
         when(itemRepository.findById(anyLong())).thenReturn(Optional.of(testItemOtherOwner));
         when(bookingRepository.findById(anyLong())).thenReturn(Optional.of(testBooking));
-        when(bookingRepository.save(any(Booking.class))).thenReturn(testBooking);
+        when(bookingRepository.updateStatusIfWaiting(1L, BookingStatus.APPROVED)).thenReturn(1);
 
         final BookingDto bookingDto = bookingService.approveRejectBooking(1L, 1L, true);
         assertNotNull(bookingDto, "Не возвращается аренда");
         assertEquals(BookingStatus.APPROVED, bookingDto.getStatus(), "Не изменяется статус аренды");
+        verify(outboxPublisher).publish(AggregateType.BOOKING, 1L, EventType.UPDATED);
+    }
+
+    @Test
+    void approveRejectBookingOverlapping() {
+        final Booking approvedBooking = Booking.of(2L, NOW_DATE_TIME.plusDays(1), NOW_DATE_TIME.plusDays(3), testItem,
+                testUser, BookingStatus.APPROVED);
+        final Booking testBooking = Booking.of(1L, NOW_DATE_TIME.plusDays(2), NOW_DATE_TIME.plusDays(4), testItem,
+                testUser, BookingStatus.WAITING);
+        bookingIntervalIndex.reserve(approvedBooking);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(bookingRepository.findById(anyLong())).thenReturn(Optional.of(testBooking));
+
+        Throwable e = assertThrows(BadRequestException.class, () -> bookingService.approveRejectBooking(1L,
+                        1L, true),
+                "Подтверждение пересекающегося бронирования не вызывает исключения");
+        assertEquals("Период бронирования пересекается с подтвержденным бронированием", e.getMessage(),
+                "Неверное сообщение об ошибке");
+        assertEquals(BookingStatus.WAITING, testBooking.getStatus(), "Изменяется статус аренды");
+    }
+
+    @Test
+    void approveRejectBookingConstraintViolation() {
+        final Booking testBooking = Booking.of(1L, NOW_DATE_TIME.plusDays(2), NOW_DATE_TIME.plusDays(4), testItem,
+                testUser, BookingStatus.WAITING);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(bookingRepository.findById(anyLong())).thenReturn(Optional.of(testBooking));
+        when(bookingRepository.updateStatusIfWaiting(anyLong(), any(BookingStatus.class)))
+                .thenThrow(new DataIntegrityViolationException("bookings_approved_no_overlap"));
+
+        assertThrows(BadRequestException.class, () -> bookingService.approveRejectBooking(1L, 1L, true),
+                "Нарушение ограничения базы данных не вызывает исключения");
+        assertFalse(bookingIntervalIndex.overlaps(testItem.getId(), testBooking.getStart(), testBooking.getEnd()),
+                "Период не освобождается после ошибки сохранения");
+        verify(outboxPublisher, never()).publish(any(), anyLong(), any());
+    }
+
+    @Test
+    void approveRejectBookingRollbackReleasesReservation() {
+        final Booking testBooking = Booking.of(1L, NOW_DATE_TIME.plusDays(2), NOW_DATE_TIME.plusDays(4), testItem,
+                testUser, BookingStatus.WAITING);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(bookingRepository.findById(anyLong())).thenReturn(Optional.of(testBooking));
+        when(bookingRepository.updateStatusIfWaiting(1L, BookingStatus.APPROVED)).thenReturn(1);
+        doThrow(new QueryTimeoutException("statement timeout"))
+                .when(outboxPublisher).publish(AggregateType.BOOKING, 1L, EventType.UPDATED);
+        doAnswer(invocation -> {
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                return invocation.<TransactionCallback<?>>getArgument(0)
+                        .doInTransaction(new SimpleTransactionStatus());
+            } catch (RuntimeException e) {
+                TransactionSynchronizationManager.getSynchronizations().forEach(synchronization ->
+                        synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+                throw e;
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        }).when(transactionTemplate).execute(any());
+
+        assertThrows(QueryTimeoutException.class, () -> bookingService.approveRejectBooking(1L, 1L, true),
+                "Ошибка записи события не передается вызывающему");
+        assertFalse(bookingIntervalIndex.overlaps(testItem.getId(), testBooking.getStart(), testBooking.getEnd()),
+                "Период не освобождается после отката транзакции");
     }
 
     @Test
@@ -194,11 +329,170 @@ class BookingServiceTest {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
         when(itemRepository.findById(anyLong())).thenReturn(Optional.of(testItemOtherOwner));
         when(bookingRepository.findById(anyLong())).thenReturn(Optional.of(testBooking));
-        when(bookingRepository.save(any(Booking.class))).thenReturn(testBooking);
+        when(bookingRepository.updateStatusIfWaiting(1L, BookingStatus.REJECTED)).thenReturn(1);
 
         final BookingDto bookingDto = bookingService.approveRejectBooking(1L, 1L, false);
         assertNotNull(bookingDto, "Не возвращается аренда");
         assertEquals(BookingStatus.REJECTED, bookingDto.getStatus(), "Не изменяется статус аренды");
+        verify(outboxPublisher).publish(AggregateType.BOOKING, 1L, EventType.UPDATED);
+    }
+
+    @Test
+    void approveRejectBookingConcurrentlyApproved() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(bookingRepository.findById(anyLong())).thenReturn(
+                Optional.of(Booking.of(1L, NOW_DATE_TIME, NOW_DATE_TIME.plusDays(1), testItem, testUser,
+                        BookingStatus.WAITING)),
+                Optional.of(Booking.of(1L, NOW_DATE_TIME, NOW_DATE_TIME.plusDays(1), testItem, testUser,
+                        BookingStatus.APPROVED)));
+        when(bookingRepository.updateStatusIfWaiting(anyLong(), any(BookingStatus.class))).thenReturn(0);
+
+        Throwable e = assertThrows(BadRequestException.class, () -> bookingService.approveRejectBooking(1L, 1L,
+                false), "Изменение статуса одновременно подтвержденной аренды не вызывает исключения");
+        assertEquals("Нельзя изменить статус подтвержденного бронирования", e.getMessage(),
+                "Неверное сообщение об ошибке");
+        verify(bookingRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void approveRejectBookingRetriesOptimisticLockFailure() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(bookingRepository.findById(anyLong())).thenAnswer(invocation -> Optional.of(Booking.of(1L,
+                NOW_DATE_TIME, NOW_DATE_TIME.plusDays(1), testItem, testUser, BookingStatus.REJECTED)));
+        when(bookingRepository.saveAndFlush(any(Booking.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Booking.class, 1L))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        final BookingDto bookingDto = bookingService.approveRejectBooking(1L, 1L, true);
+        assertEquals(BookingStatus.APPROVED, bookingDto.getStatus(), "Не изменяется статус аренды");
+        verify(bookingRepository, times(2)).saveAndFlush(any(Booking.class));
+        verify(outboxPublisher, times(1)).publish(AggregateType.BOOKING, 1L, EventType.UPDATED);
+        assertTrue(bookingIntervalIndex.overlaps(testItem.getId(), NOW_DATE_TIME, NOW_DATE_TIME.plusDays(1)),
+                "Период подтвержденной аренды не занят");
+    }
+
+    @Test
+    void approveRejectBookingRetriesExhausted() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(bookingRepository.findById(anyLong())).thenAnswer(invocation -> Optional.of(Booking.of(1L,
+                NOW_DATE_TIME, NOW_DATE_TIME.plusDays(1), testItem, testUser, BookingStatus.WAITING)));
+        when(bookingRepository.updateStatusIfWaiting(anyLong(), any(BookingStatus.class))).thenReturn(0);
+
+        Throwable e = assertThrows(ConflictException.class, () -> bookingService.approveRejectBooking(1L, 1L,
+                true), "Исчерпание попыток изменения статуса не вызывает исключения");
+        assertEquals("Статус бронирования 1 одновременно изменяется другим запросом", e.getMessage(),
+                "Неверное сообщение об ошибке");
+        verify(bookingRepository, times(3)).updateStatusIfWaiting(1L, BookingStatus.APPROVED);
+        assertFalse(bookingIntervalIndex.overlaps(testItem.getId(), NOW_DATE_TIME, NOW_DATE_TIME.plusDays(1)),
+                "Период не освобождается после неудачной попытки");
+        verify(outboxPublisher, never()).publish(any(), anyLong(), any());
+    }
+
+    @Test
+    void approveRejectBookings() {
+        final Booking approving = Booking.of(1L, NOW_DATE_TIME.plusDays(1), NOW_DATE_TIME.plusDays(2), testItem,
+                testUser, BookingStatus.WAITING);
+        final Booking rejecting = Booking.of(2L, NOW_DATE_TIME.plusDays(1), NOW_DATE_TIME.plusDays(2), testItem,
+                testUser, BookingStatus.WAITING);
+        final Booking approved = Booking.of(3L, NOW_DATE_TIME.plusDays(3), NOW_DATE_TIME.plusDays(4), testItem,
+                testUser, BookingStatus.APPROVED);
+        final Booking otherOwner = Booking.of(4L, NOW_DATE_TIME.plusDays(3), NOW_DATE_TIME.plusDays(4),
+                testItemOtherOwner, testUser, BookingStatus.WAITING);
+        final Booking overlapping = Booking.of(5L, NOW_DATE_TIME.plusDays(1), NOW_DATE_TIME.plusDays(2), testItem,
+                testUser, BookingStatus.WAITING);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(bookingRepository.findAllById(anyIterable()))
+                .thenReturn(List.of(approving, rejecting, approved, otherOwner, overlapping));
+        when(bookingRepository.updateStatusByIdInIfNotApproved(anyCollection(), any(BookingStatus.class)))
+                .thenReturn(1);
+
+        final List<BookingDecisionResultDto> results = bookingService.approveRejectBookings(List.of(
+                BookingDecisionDto.of(1L, true),
+                BookingDecisionDto.of(2L, false),
+                BookingDecisionDto.of(3L, false),
+                BookingDecisionDto.of(4L, true),
+                BookingDecisionDto.of(5L, true),
+                BookingDecisionDto.of(6L, true),
+                BookingDecisionDto.of(1L, false)
+        ), 1L);
+
+        assertEquals(List.of(
+                BookingDecisionResultDto.success(1L, BookingStatus.APPROVED),
+                BookingDecisionResultDto.success(2L, BookingStatus.REJECTED),
+                BookingDecisionResultDto.failure(3L, "Нельзя изменить статус подтвержденного бронирования"),
+                BookingDecisionResultDto.failure(4L,
+                        "Попытка изменения статуса бронирования вещи, принадлежащей другому пользователю"),
+                BookingDecisionResultDto.failure(5L,
+                        "Период бронирования пересекается с подтвержденным бронированием"),
+                BookingDecisionResultDto.failure(6L, "Обращение к несуществующему бронированию (6)"),
+                BookingDecisionResultDto.failure(1L, "Повторное решение по бронированию в пакете")
+        ), results, "Возвращаются неверные результаты пакетного изменения статуса");
+        verify(bookingRepository).updateStatusByIdInIfNotApproved(Set.of(1L), BookingStatus.APPROVED);
+        verify(bookingRepository).updateStatusByIdInIfNotApproved(Set.of(2L), BookingStatus.REJECTED);
+        verify(outboxPublisher).publishAll(AggregateType.BOOKING, List.of(1L), EventType.UPDATED);
+        verify(outboxPublisher).publishAll(AggregateType.BOOKING, List.of(2L), EventType.UPDATED);
+    }
+
+    @Test
+    void approveRejectBookingsConcurrentlyApproved() {
+        final Booking first = Booking.of(1L, NOW_DATE_TIME.plusDays(1), NOW_DATE_TIME.plusDays(2), testItem,
+                testUser, BookingStatus.WAITING);
+        final Booking second = Booking.of(2L, NOW_DATE_TIME.plusDays(3), NOW_DATE_TIME.plusDays(4), testItem,
+                testUser, BookingStatus.WAITING);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(bookingRepository.findAllById(anyIterable())).thenReturn(List.of(first, second), List.of(
+                Booking.of(1L, first.getStart(), first.getEnd(), testItem, testUser, BookingStatus.REJECTED),
+                Booking.of(2L, second.getStart(), second.getEnd(), testItem, testUser, BookingStatus.APPROVED)));
+        when(bookingRepository.updateStatusByIdInIfNotApproved(anyCollection(), any(BookingStatus.class)))
+                .thenReturn(1);
+
+        final List<BookingDecisionResultDto> results = bookingService.approveRejectBookings(List.of(
+                BookingDecisionDto.of(1L, false),
+                BookingDecisionDto.of(2L, false)
+        ), 1L);
+
+        assertEquals(List.of(
+                BookingDecisionResultDto.success(1L, BookingStatus.REJECTED),
+                BookingDecisionResultDto.failure(2L, "Статус бронирования 2 одновременно изменяется другим запросом")
+        ), results, "Возвращаются неверные результаты пакетного изменения статуса");
+        verify(outboxPublisher).publishAll(AggregateType.BOOKING, List.of(1L), EventType.UPDATED);
+    }
+
+    @Test
+    void approveRejectBookingsConstraintViolation() {
+        final Booking testBooking = Booking.of(1L, NOW_DATE_TIME.plusDays(1), NOW_DATE_TIME.plusDays(2), testItem,
+                testUser, BookingStatus.WAITING);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(bookingRepository.findAllById(anyIterable())).thenReturn(List.of(testBooking));
+        when(bookingRepository.findById(anyLong())).thenReturn(Optional.of(testBooking));
+        when(bookingRepository.updateStatusByIdInIfNotApproved(anyCollection(), any(BookingStatus.class)))
+                .thenThrow(new DataIntegrityViolationException("bookings_approved_no_overlap"));
+        when(bookingRepository.updateStatusIfWaiting(anyLong(), any(BookingStatus.class)))
+                .thenThrow(new DataIntegrityViolationException("bookings_approved_no_overlap"));
+
+        final List<BookingDecisionResultDto> results = bookingService.approveRejectBookings(
+                List.of(BookingDecisionDto.of(1L, true)), 1L);
+
+        assertEquals(List.of(BookingDecisionResultDto.failure(1L,
+                "Период бронирования пересекается с подтвержденным бронированием")), results,
+                "Возвращаются неверные результаты пакетного изменения статуса");
+        assertFalse(bookingIntervalIndex.overlaps(testItem.getId(), testBooking.getStart(), testBooking.getEnd()),
+                "Период не освобождается после ошибки сохранения");
+    }
+
+    @Test
+    void approveRejectBookingsFailureReleasesReservations() {
+        final Booking testBooking = Booking.of(1L, NOW_DATE_TIME.plusDays(1), NOW_DATE_TIME.plusDays(2), testItem,
+                testUser, BookingStatus.WAITING);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(bookingRepository.findAllById(anyIterable())).thenReturn(List.of(testBooking));
+        when(bookingRepository.updateStatusByIdInIfNotApproved(anyCollection(), any(BookingStatus.class)))
+                .thenThrow(new QueryTimeoutException("statement timeout"));
+
+        assertThrows(QueryTimeoutException.class, () -> bookingService.approveRejectBookings(
+                List.of(BookingDecisionDto.of(1L, true)), 1L), "Ошибка сохранения не передается вызывающему");
+        assertFalse(bookingIntervalIndex.overlaps(testItem.getId(), testBooking.getStart(), testBooking.getEnd()),
+                "Период не освобождается после ошибки сохранения");
     }
 
     @Test
@@ -215,7 +509,7 @@ class BookingServiceTest {
     void getBookingWithInvalidBookingId() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
         when(itemRepository.findById(anyLong())).thenReturn(Optional.of(testItemOtherOwner));
-        when(bookingRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(bookingHistoryRepository.findById(anyLong())).thenReturn(Optional.empty());
 
         Throwable e = assertThrows(NotFoundException.class, () -> bookingService.getBookingById(1L, 1L),
                 "Запрос от несуществующей аренды не вызывает исключения");
@@ -230,7 +524,7 @@ class BookingServiceTest {
     void getBookingByIdByNotOwner() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
         when(itemRepository.findById(anyLong())).thenReturn(Optional.of(testItemOtherOwner));
-        when(bookingRepository.findById(anyLong())).thenReturn(Optional.of(testBooking));
+        when(bookingHistoryRepository.findById(anyLong())).thenReturn(Optional.of(testBooking));
 
         Throwable e = assertThrows(NotFoundException.class, () -> bookingService.getBookingById(1L, 2L),
                 "Запрос от не владельца не вызывает исключения");
@@ -248,7 +542,7 @@ class BookingServiceTest {
 
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
         when(itemRepository.findById(anyLong())).thenReturn(Optional.of(testItemOtherOwner));
-        when(bookingRepository.findById(anyLong())).thenReturn(Optional.of(testBooking));
+        when(bookingHistoryRepository.findById(anyLong())).thenReturn(Optional.of(testBooking));
 
         final BookingDto bookingDto = bookingService.getBookingById(1L, 1L);
 
@@ -270,7 +564,8 @@ class BookingServiceTest {
     @Test
     void getAllBookingsByBookerAndStateAll() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
-        when(bookingRepository.findAllByBooker(any(User.class), any(Pageable.class))).thenReturn(List.of(testBooking));
+        when(bookingHistoryRepository.findAllByBooker(any(User.class), any(Pageable.class)))
+                .thenReturn(List.of(testBooking));
 
         final List<BookingDto> bookingsDto = bookingService.getAllBookingsByBookerAndState(1L, "ALL",
                 0, 10);
@@ -308,7 +603,7 @@ class BookingServiceTest {
     @Test
     void getAllBookingsByBookerAndStatePast() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
-        when(bookingRepository.findAllByBookerAndEndBefore(any(User.class), any(LocalDateTime.class),
+        when(bookingHistoryRepository.findAllByBookerAndEndBefore(any(User.class), any(LocalDateTime.class),
                 any(Pageable.class))).thenReturn(List.of(testBooking));
 
         final List<BookingDto> bookingsDto = bookingService.getAllBookingsByBookerAndState(1L, "PAST",
@@ -334,7 +629,8 @@ class BookingServiceTest {
     @Test
     void getAllBookingsByBookerAndStateRejected() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
-        when(bookingRepository.findAllByBookerAndStatus(any(User.class), any(BookingStatus.class), any(Pageable.class)))
+        when(bookingHistoryRepository.findAllByBookerAndStatus(any(User.class), any(BookingStatus.class),
+                any(Pageable.class)))
                 .thenReturn(List.of(testBooking));
 
         final List<BookingDto> bookingsDto = bookingService.getAllBookingsByBookerAndState(1L, "REJECTED",
@@ -344,6 +640,27 @@ class BookingServiceTest {
         assertFalse(bookingsDto.isEmpty(), "Возвращается пустой список аренд");
     }
 
+    @Test
+    void getAllBookingsByBookerAndStateAfterCursor() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(bookingRepository.findPageByBookerAndStatus(any(User.class), any(BookingStatus.class),
+                any(LocalDateTime.class), anyLong(), any(Pageable.class))).thenReturn(List.of(testBooking));
+
+        final List<BookingDto> bookingsDto = bookingService.getAllBookingsByBookerAndState(1L, "WAITING",
+                PageCursor.of(LocalDateTime.now(), 10L), 10);
+
+        assertNotNull(bookingsDto, "Не возвращается список аренд");
+        assertFalse(bookingsDto.isEmpty(), "Возвращается пустой список аренд");
+    }
+
+    @Test
+    void getAllBookingsByBookerAndStateAfterInvalidCursor() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+
+        assertThrows(BadRequestException.class, () -> bookingService.getAllBookingsByBookerAndState(1L, "ALL",
+                PageCursor.of(10L), 10), "Курсор без даты начала аренды не вызывает исключения");
+    }
+
     @Test
     void getAllBookingsByBookerAndStateUnknown() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
@@ -368,7 +685,8 @@ class BookingServiceTest {
     @Test
     void getAllBookingsByOwnerAndStateAll() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
-        when(bookingRepository.findAllByItemOwnerId(anyLong(), any(Pageable.class))).thenReturn(List.of(testBooking));
+        when(bookingHistoryRepository.findAllByOwnerId(anyLong(), any(Pageable.class)))
+                .thenReturn(List.of(testBooking));
 
         final List<BookingDto> bookingsDto = bookingService.getAllBookingsByOwnerAndState(1L, "ALL",
                 0, 10);
@@ -380,7 +698,7 @@ class BookingServiceTest {
     @Test
     void getAllBookingsByOwnerAndStateCurrent() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
-        when(bookingRepository.findAllByItemOwnerIdStateCurrent(anyLong(), any(Pageable.class)))
+        when(bookingRepository.findAllByOwnerIdStateCurrent(anyLong(), any(Pageable.class)))
                 .thenReturn(List.of(testBooking));
 
         final List<BookingDto> bookingsDto = bookingService.getAllBookingsByOwnerAndState(1L, "CURRENT",
@@ -393,7 +711,7 @@ class BookingServiceTest {
     @Test
     void getAllBookingsByOwnerAndStateFuture() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
-        when(bookingRepository.findAllByItemOwnerIdAndStartAfter(anyLong(), any(LocalDateTime.class),
+        when(bookingRepository.findAllByOwnerIdAndStartAfter(anyLong(), any(LocalDateTime.class),
                 any(Pageable.class))).thenReturn(List.of(testBooking));
 
         final List<BookingDto> bookingsDto = bookingService.getAllBookingsByOwnerAndState(1L, "FUTURE",
@@ -406,7 +724,7 @@ class BookingServiceTest {
     @Test
     void getAllBookingsByOwnerAndStatePast() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
-        when(bookingRepository.findAllByItemOwnerIdAndEndBefore(anyLong(), any(LocalDateTime.class),
+        when(bookingHistoryRepository.findAllByOwnerIdAndEndBefore(anyLong(), any(LocalDateTime.class),
                 any(Pageable.class))).thenReturn(List.of(testBooking));
 
         final List<BookingDto> bookingsDto = bookingService.getAllBookingsByOwnerAndState(1L, "PAST",
@@ -419,7 +737,7 @@ class BookingServiceTest {
     @Test
     void getAllBookingsByOwnerAndStateWaiting() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
-        when(bookingRepository.findAllByItemOwnerIdAndStatus(anyLong(), any(BookingStatus.class), any(Pageable.class)))
+        when(bookingRepository.findAllByOwnerIdAndStatus(anyLong(), any(BookingStatus.class), any(Pageable.class)))
                 .thenReturn(List.of(testBooking));
 
         final List<BookingDto> bookingsDto = bookingService.getAllBookingsByOwnerAndState(1L, "WAITING",
@@ -432,7 +750,8 @@ class BookingServiceTest {
     @Test
     void getAllBookingsByOwnerAndStateRejected() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
-        when(bookingRepository.findAllByItemOwnerIdAndStatus(anyLong(), any(BookingStatus.class), any(Pageable.class)))
+        when(bookingHistoryRepository.findAllByOwnerIdAndStatus(anyLong(), any(BookingStatus.class),
+                any(Pageable.class)))
                 .thenReturn(List.of(testBooking));
 
         final List<BookingDto> bookingsDto = bookingService.getAllBookingsByOwnerAndState(1L, "REJECTED",
@@ -442,6 +761,41 @@ class BookingServiceTest {
         assertFalse(bookingsDto.isEmpty(), "Возвращается пустой список аренд");
     }
 
+    @Test
+    void exportBookingsByOwnerAndState() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(bookingHistoryRepository.streamAllByOwnerId(anyLong(), any())).thenReturn(Stream.of(testBooking));
+
+        final List<BookingDto> bookingsDto = new ArrayList<>();
+        bookingService.exportBookingsByOwnerAndState(1L, "ALL", bookingsDto::add);
+
+        assertEquals(List.of(BookingMapper.toBookingDto(testBooking)), bookingsDto, "Выгружаются неверные аренды");
+        verify(entityManager).detach(testBooking);
+        verify(entityManager).detach(testItem);
+        verify(entityManager).detach(testUser);
+        verify(bookingHistoryRepository, never()).findAllByOwnerId(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    void exportBookingsByOwnerAndStateWaiting() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(bookingRepository.streamAllByOwnerIdAndStatus(anyLong(), any(), any())).thenReturn(Stream.empty());
+
+        bookingService.exportBookingsByOwnerAndState(1L, "WAITING", booking -> fail("Выгружена лишняя аренда"));
+
+        verify(bookingRepository).streamAllByOwnerIdAndStatus(eq(1L), eq(BookingStatus.WAITING), any());
+    }
+
+    @Test
+    void exportBookingsByOwnerAndStateUnknown() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+
+        Throwable e = assertThrows(BadRequestException.class, () -> bookingService.exportBookingsByOwnerAndState(
+                        1L, "unknown", booking -> fail("Выгружена лишняя аренда")),
+                "Выгрузка с неподдерживаемым статусом не вызывает исключения");
+        assertEquals("Unknown state: UNSUPPORTED_STATUS", e.getMessage(), "Неверное сообщение об ошибке");
+    }
+
     @Test
     void getAllBookingsByOwnerAndStateUnknown() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
@@ -451,4 +805,42 @@ class BookingServiceTest {
                 "Запрос с неподдерживаемым статусом не вызывает исключения");
         assertEquals("Unknown state: UNSUPPORTED_STATUS", e.getMessage(),"Неверное сообщение об ошибке");
     }
-}
\ No newline at end of file
+
+    @Test
+    void getBookingsSummaryByBookerByInvalidUser() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> bookingService.getBookingsSummaryByBooker(1L),
+                "Запрос от несуществующего пользователя не вызывает исключения");
+        verify(bookingHistoryRepository, never()).countByBookerGroupByState(any(), any());
+    }
+
+    @Test
+    void getBookingsSummaryByBooker() {
+        final BookingStateCounts counts = mock(BookingStateCounts.class);
+        when(counts.getAllCount()).thenReturn(6L);
+        when(counts.getCurrentCount()).thenReturn(1L);
+        when(counts.getPastCount()).thenReturn(2L);
+        when(counts.getFutureCount()).thenReturn(3L);
+        when(counts.getWaitingCount()).thenReturn(4L);
+        when(counts.getRejectedCount()).thenReturn(5L);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(bookingHistoryRepository.countByBookerGroupByState(eq(testUser), any(LocalDateTime.class)))
+                .thenReturn(counts);
+
+        assertEquals(BookingSummaryDto.of(6L, 1L, 2L, 3L, 4L, 5L), bookingService.getBookingsSummaryByBooker(1L),
+                "Неверное количество аренд по состояниям");
+    }
+
+    @Test
+    void getBookingsSummaryByOwner() {
+        final BookingStateCounts counts = mock(BookingStateCounts.class);
+        when(counts.getAllCount()).thenReturn(2L);
+        when(counts.getWaitingCount()).thenReturn(2L);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(bookingHistoryRepository.countByOwnerIdGroupByState(eq(1L), any(LocalDateTime.class))).thenReturn(counts);
+
+        assertEquals(BookingSummaryDto.of(2L, 0L, 0L, 0L, 2L, 0L), bookingService.getBookingsSummaryByOwner(1L),
+                "Неверное количество аренд по состояниям");
+    }
+}
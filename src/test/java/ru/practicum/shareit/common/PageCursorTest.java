@@ -0,0 +1,50 @@
+package ru.practicum.shareit.common;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import ru.practicum.shareit.common.exceptoins.BadRequestException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCursorTest {
+
+    @Test
+    void encodeDecode() {
+        final LocalDateTime key = LocalDateTime.of(2022, 9, 1, 12, 30, 15);
+        final PageCursor cursor = PageCursor.of(key, 42L);
+
+        final PageCursor decoded = PageCursor.decode(cursor.encode());
+        assertEquals(cursor, decoded, "Курсор не восстанавливается после кодирования");
+        assertEquals(key, decoded.getDateTimeKey(), "Неверное значение ключа курсора");
+        assertEquals(PageCursor.of(7L), PageCursor.decode(PageCursor.of(7L).encode()),
+                "Курсор без ключа не восстанавливается после кодирования");
+    }
+
+    @Test
+    void decodeInvalid() {
+        assertThrows(BadRequestException.class, () -> PageCursor.decode("!"),
+                "Некорректный курсор не вызывает исключения");
+        assertThrows(BadRequestException.class, () -> PageCursor.decode("bm8tc2VwYXJhdG9y"),
+                "Курсор без разделителя не вызывает исключения");
+        assertThrows(BadRequestException.class, () -> PageCursor.of(1L).getDateTimeKey(),
+                "Курсор без даты не вызывает исключения");
+    }
+
+    @Test
+    void toResponse() {
+        final Function<Long, PageCursor> cursorOf = PageCursor::of;
+
+        final ResponseEntity<List<Long>> fullPage = PageCursor.toResponse(List.of(1L, 2L), 2, cursorOf);
+        assertEquals(PageCursor.of(2L).encode(), fullPage.getHeaders().getFirst(PageCursor.NEXT_CURSOR_HEADER),
+                "Для полной страницы не возвращается курсор следующей страницы");
+
+        final ResponseEntity<List<Long>> lastPage = PageCursor.toResponse(List.of(1L), 2, cursorOf);
+        assertFalse(lastPage.getHeaders().containsKey(PageCursor.NEXT_CURSOR_HEADER),
+                "Для последней страницы возвращается курсор следующей страницы");
+        assertEquals(List.of(1L), lastPage.getBody(), "Возвращается неверная страница");
+    }
+}
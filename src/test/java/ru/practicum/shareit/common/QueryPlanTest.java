@@ -0,0 +1,198 @@
+package ru.practicum.shareit.common;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingHistoryRepository;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.common.outbox.OutboxEventRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.CommentRepository;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.requests.model.ItemRequest;
+import ru.practicum.shareit.requests.repository.ItemRequestRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет, что запросы репозиториев выполняются по индексам, а не полным просмотром таблиц.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "ru.practicum.shareit.common.QueryPlanTest$RecordingStatementInspector")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+class QueryPlanTest {
+
+    static int USERS_COUNT = 50;
+    static int ITEMS_PER_USER = 4;
+    static int BOOKINGS_PER_ITEM = 5;
+    static LocalDateTime NOW = LocalDateTime.now();
+
+    UserRepository userRepository;
+    ItemRepository itemRepository;
+    ItemRequestRepository itemRequestRepository;
+    BookingRepository bookingRepository;
+    BookingHistoryRepository bookingHistoryRepository;
+    CommentRepository commentRepository;
+    OutboxEventRepository outboxEventRepository;
+    EntityManager entityManager;
+    JdbcTemplate jdbcTemplate;
+
+    public static class RecordingStatementInspector implements StatementInspector {
+
+        static List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+
+    @BeforeEach
+    void beforeEachTest() {
+        for (long userId = 1; userId <= USERS_COUNT; userId++) {
+            final User user = userRepository.save(User.of(null, "User " + userId, userId + "@email.ru"));
+            final ItemRequest request = itemRequestRepository.save(ItemRequest.of(null, "Request " + userId,
+                    user, NOW.minusDays(userId)));
+            for (int i = 0; i < ITEMS_PER_USER; i++) {
+                itemRepository.save(Item.of(null, "Item " + userId + "-" + i, "Description", true, userId,
+                        i == 0 ? request : null));
+            }
+        }
+        jdbcTemplate.update("insert into bookings (start_date, end_date, item_id, booker_id, status, owner_id) " +
+                "select dateadd(HOUR, x, cast(? as timestamp)), dateadd(HOUR, x + 1, cast(? as timestamp)), " +
+                "i.id, mod(i.owner_id, " + USERS_COUNT + ") + 1, 'WAITING', i.owner_id " +
+                "from items i cross join system_range(1, " + BOOKINGS_PER_ITEM + ")", NOW, NOW);
+        jdbcTemplate.update("insert into comments (text, item_id, author_id, created_date) " +
+                "select 'Comment', i.id, i.owner_id, ? from items i", NOW);
+        jdbcTemplate.execute("analyze");
+        entityManager.flush();
+        entityManager.clear();
+        RecordingStatementInspector.STATEMENTS.clear();
+    }
+
+    @Test
+    @DirtiesContext
+    void repositoryQueriesUseIndexes() {
+        final User user = userRepository.findById(1L).orElseThrow();
+        final Item item = itemRepository.findById(1L).orElseThrow();
+        final ItemRequest request = itemRequestRepository.findById(1L).orElseThrow();
+        final Pageable byStartAndId = PageRequest.of(0, 10, Sort.by("start", "id").descending());
+        final Set<BookingStatus> activeStatuses = Set.of(BookingStatus.APPROVED, BookingStatus.WAITING);
+        RecordingStatementInspector.STATEMENTS.clear();
+
+        userRepository.findAllBy(PageRequest.of(0, 10, Sort.by("id")));
+        userRepository.findAllByIdGreaterThan(1L, PageRequest.of(0, 10, Sort.by("id")));
+
+        itemRepository.findAllByOwnerId(1L, PageRequest.of(0, 10, Sort.by("id")));
+        itemRepository.findAllByOwnerIdAndIdGreaterThan(1L, 0L, PageRequest.of(0, 10, Sort.by("id")));
+        itemRepository.findAllByIdGreaterThan(0L, PageRequest.of(0, 10, Sort.by("id")));
+        itemRepository.streamAllByOwnerIdOrderByIdAsc(1L).close();
+        itemRepository.findAllByRequest(request);
+        itemRepository.findAllByRequestIdIn(Set.of(1L, 2L));
+        itemRepository.findIdsByBookingsRefreshAtNotAfter(NOW, PageRequest.of(0, 10));
+
+        itemRequestRepository.findAllByRequestorOrderByCreated(user);
+        itemRequestRepository.findAllByNotRequestorOrderByCreated(user, PageRequest.of(0, 10));
+        itemRequestRepository.findPageByNotRequestor(user, NOW.minusDays(10), 0L, PageRequest.of(0, 10));
+
+        commentRepository.findAllByItemOrderByCreated(item);
+        commentRepository.findAllByItemIdInOrderByCreated(Set.of(1L, 2L));
+
+        bookingRepository.findAllByBookerStateCurrent(user, byStartAndId);
+        bookingRepository.findAllByBookerAndStartAfter(user, NOW, byStartAndId);
+        bookingRepository.findAllByBookerAndStatus(user, BookingStatus.WAITING, byStartAndId);
+        bookingRepository.findPageByBookerStateCurrent(user, NOW, 0L, byStartAndId);
+        bookingRepository.findPageByBookerAndStartAfter(user, NOW, NOW.plusDays(1), 0L, byStartAndId);
+        bookingRepository.findPageByBookerAndStatus(user, BookingStatus.WAITING, NOW, 0L, byStartAndId);
+        bookingRepository.findAllByOwnerIdStateCurrent(1L, byStartAndId);
+        bookingRepository.findAllByOwnerIdAndStartAfter(1L, NOW, byStartAndId);
+        bookingRepository.findAllByOwnerIdAndStatus(1L, BookingStatus.WAITING, byStartAndId);
+        bookingRepository.findFirstByItemAndStatusInAndStartAfterOrderByStartAsc(item, activeStatuses, NOW);
+        bookingRepository.findFirstByItemAndStatusInAndEndAfterOrderByEndAsc(item, activeStatuses, NOW);
+        bookingRepository.findAllByStatusAndEndAfterAndIdGreaterThan(BookingStatus.APPROVED, NOW, 0L,
+                PageRequest.of(0, 10, Sort.by("id")));
+
+        bookingRepository.streamAllByOwnerIdStateCurrent(1L, byStartAndId.getSort()).close();
+        bookingRepository.streamAllByOwnerIdAndStartAfter(1L, NOW, byStartAndId.getSort()).close();
+        bookingRepository.streamAllByOwnerIdAndStatus(1L, BookingStatus.WAITING, byStartAndId.getSort()).close();
+
+        bookingRepository.lockIdsByStatusInAndEndBefore(Set.of(BookingStatus.REJECTED), NOW, PageRequest.of(0, 10));
+
+        bookingHistoryRepository.findById(1L);
+        bookingHistoryRepository.findAllByBooker(user, byStartAndId);
+        bookingHistoryRepository.findAllByBookerAndEndBefore(user, NOW, byStartAndId);
+        bookingHistoryRepository.findPageByBooker(user, NOW, 0L, byStartAndId);
+        bookingHistoryRepository.findPageByBookerAndEndBefore(user, NOW, NOW, 0L, byStartAndId);
+        bookingHistoryRepository.countByBookerGroupByState(user, NOW);
+        bookingHistoryRepository.findAllByOwnerId(1L, byStartAndId);
+        bookingHistoryRepository.countByOwnerIdGroupByState(1L, NOW);
+        bookingHistoryRepository.findAllByOwnerIdAndEndBefore(1L, NOW, byStartAndId);
+        bookingHistoryRepository.findAllByItemIdAndBookerIdAndEndBefore(1L, 1L, NOW);
+        bookingHistoryRepository.findFirstByItemAndStatusInAndEndBeforeOrderByEndDesc(item, activeStatuses, NOW);
+        bookingHistoryRepository.findAllByItemIdInPeriod(1L, activeStatuses, NOW, NOW.plusDays(1));
+        bookingHistoryRepository.findAllByBookerAndStatus(user, BookingStatus.REJECTED, byStartAndId);
+        bookingHistoryRepository.findPageByBookerAndStatus(user, BookingStatus.REJECTED, NOW, 0L, byStartAndId);
+        bookingHistoryRepository.findAllByOwnerIdAndStatus(1L, BookingStatus.REJECTED, byStartAndId);
+        bookingHistoryRepository.streamAllByOwnerId(1L, byStartAndId.getSort()).close();
+        bookingHistoryRepository.streamAllByOwnerIdAndEndBefore(1L, NOW, byStartAndId.getSort()).close();
+        bookingHistoryRepository.streamAllByOwnerIdAndStatus(1L, BookingStatus.REJECTED, byStartAndId.getSort())
+                .close();
+
+        outboxEventRepository.findAllByParkedFalseAndIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 10));
+        outboxEventRepository.lockDeliverableByIdIn(List.of(1L, 2L));
+
+        final List<String> statements = new ArrayList<>(RecordingStatementInspector.STATEMENTS);
+        assertFalse(statements.isEmpty(), "Не перехвачены запросы репозиториев");
+
+        final List<String> tableScans = new ArrayList<>();
+        for (String sql : statements) {
+            final String plan = explain(sql);
+            if (plan.contains("tableScan")) {
+                tableScans.add(sql + "\n" + plan);
+            }
+        }
+        assertTrue(tableScans.isEmpty(), "Запросы выполняются полным просмотром таблиц:\n"
+                + String.join("\n\n", tableScans));
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.execute("explain " + sql, (PreparedStatement statement) -> {
+            final int parameters = statement.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= parameters; i++) {
+                statement.setObject(i, null);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                final StringBuilder plan = new StringBuilder();
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1));
+                }
+                return plan.toString();
+            }
+        });
+    }
+}
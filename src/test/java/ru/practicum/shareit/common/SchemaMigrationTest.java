@@ -0,0 +1,88 @@
+package ru.practicum.shareit.common;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет, что schema.sql переводит базу данных исходной версии на текущую схему без потери данных
+ * и может выполняться повторно.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+class SchemaMigrationTest {
+
+    DataSource dataSource;
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "test", "test");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        new ResourceDatabasePopulator(new ClassPathResource("schema-baseline.sql")).execute(dataSource);
+        jdbcTemplate.update("insert into users (name, email) values ('Owner', 'owner@email.ru')");
+        jdbcTemplate.update("insert into items (name, description, is_available, owner_id) " +
+                "values ('Item', 'Description', true, 1)");
+        jdbcTemplate.update("insert into bookings (start_date, end_date, item_id, booker_id, status) " +
+                "values (localtimestamp, localtimestamp, 1, 1, 'WAITING')");
+    }
+
+    private void migrate() {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+    }
+
+    private List<String> indexNames() {
+        return jdbcTemplate.queryForList("select index_name from information_schema.indexes", String.class);
+    }
+
+    @Test
+    void migratesBaselineSchemaKeepingData() {
+        migrate();
+
+        assertTrue(indexNames().containsAll(List.of("BOOKINGS_BOOKER_START_IDX", "BOOKINGS_ITEM_END_IDX",
+                "ITEMS_OWNER_IDX", "REQUESTS_REQUESTOR_CREATED_IDX", "COMMENTS_ITEM_CREATED_IDX")),
+                "Индексы не созданы на существующей базе данных");
+        assertEquals(1L, jdbcTemplate.queryForObject("select owner_id from bookings where id = 1", Long.class),
+                "Владелец не перенесен в существующее бронирование");
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from items", Integer.class),
+                "Данные потеряны при миграции");
+    }
+
+    @Test
+    void keepsOverlappingApprovedBookings() {
+        migrate();
+        jdbcTemplate.update("insert into bookings (id, start_date, end_date, item_id, booker_id, owner_id, status) " +
+                "values (2, '2030-01-01 10:00', '2030-01-03 10:00', 1, 1, 1, 'APPROVED'), " +
+                "(3, '2030-01-02 10:00', '2030-01-04 10:00', 1, 1, 1, 'APPROVED')");
+
+        migrate();
+
+        assertEquals(List.of("APPROVED", "APPROVED"), jdbcTemplate.queryForList(
+                "select status from bookings where id > 1 order by id", String.class),
+                "Миграция изменила статус бронирований");
+    }
+
+    @Test
+    void migrationIsRepeatable() {
+        migrate();
+        final List<String> indexes = indexNames();
+
+        migrate();
+
+        assertEquals(indexes.size(), indexNames().size(), "Повторное выполнение изменило набор индексов");
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from bookings", Integer.class),
+                "Данные потеряны при повторной миграции");
+    }
+}
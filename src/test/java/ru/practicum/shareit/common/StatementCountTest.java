@@ -0,0 +1,306 @@
+package ru.practicum.shareit.common;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.model.Comment;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.CommentRepository;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.service.ItemBookingsRefresher;
+import ru.practicum.shareit.requests.model.ItemRequest;
+import ru.practicum.shareit.requests.repository.ItemRequestRepository;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.user.service.UserCache;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет количество SQL-запросов, выполняемых при обращении к эндпоинтам чтения.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:statements")
+@AutoConfigureMockMvc
+@DirtiesContext
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+class StatementCountTest {
+
+    static int BOOKINGS_COUNT = 5;
+    static int COMMENTS_COUNT = 3;
+    static int REQUESTS_COUNT = 4;
+    static int BATCH_SIZE = 20;
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    ItemRequestRepository itemRequestRepository;
+    @Autowired
+    ItemRepository itemRepository;
+    @Autowired
+    BookingRepository bookingRepository;
+    @Autowired
+    CommentRepository commentRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    ItemBookingsRefresher itemBookingsRefresher;
+    @Autowired
+    UserCache userCache;
+
+    User owner;
+    User booker;
+    Item item;
+    ItemRequest request;
+    Booking booking;
+
+    @BeforeAll
+    void beforeAll() {
+        final LocalDateTime now = LocalDateTime.now();
+        owner = userRepository.save(User.of(null, "Owner", "owner@email.ru"));
+        booker = userRepository.save(User.of(null, "Booker", "booker@email.ru"));
+        item = itemRepository.save(Item.of(null, "Item", "Item description", true, owner.getId(), null));
+        for (int i = 0; i < REQUESTS_COUNT; i++) {
+            request = itemRequestRepository.save(ItemRequest.of(null, "Request " + i, booker, now.minusHours(i)));
+            itemRepository.save(Item.of(null, "Requested item " + i, "Item description", true, owner.getId(),
+                    request));
+        }
+        for (int i = 0; i < BOOKINGS_COUNT; i++) {
+            booking = bookingRepository.save(Booking.of(null, now.plusDays(i - 2), now.plusDays(i - 2).plusHours(1),
+                    item, booker, BookingStatus.APPROVED));
+        }
+        itemBookingsRefresher.refresh(item.getId());
+        for (int i = 0; i < COMMENTS_COUNT; i++) {
+            commentRepository.save(Comment.of(null, "Comment " + i, item, booker, now));
+        }
+        userCache.find(owner.getId());
+        userCache.find(booker.getId());
+    }
+
+    private Statistics getStatistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private long countStatements(MockHttpServletRequestBuilder request) throws Exception {
+        final Statistics statistics = getStatistics();
+        statistics.clear();
+        mockMvc.perform(request).andExpect(status().is2xxSuccessful());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void assertStatements(long expected, MockHttpServletRequestBuilder request) throws Exception {
+        assertEquals(expected, countStatements(request),
+                String.format("Неверное количество запросов к базе данных для %s", request.buildRequest(null)
+                        .getRequestURI()));
+    }
+
+    @Test
+    void bookingEndpoints() throws Exception {
+        for (String state : List.of("ALL", "CURRENT", "FUTURE", "PAST", "WAITING")) {
+            assertStatements(1, get("/bookings").param("state", state)
+                    .header("X-Sharer-User-Id", booker.getId()));
+            assertStatements(1, get("/bookings/owner").param("state", state)
+                    .header("X-Sharer-User-Id", owner.getId()));
+        }
+        assertStatements(1, get("/bookings/summary").header("X-Sharer-User-Id", booker.getId()));
+        assertStatements(1, get("/bookings/owner/summary").header("X-Sharer-User-Id", owner.getId()));
+        assertStatements(1, get("/bookings/{bookingId}", booking.getId())
+                .header("X-Sharer-User-Id", booker.getId()));
+    }
+
+    @Test
+    void itemEndpoints() throws Exception {
+        entityManagerFactory.getCache().evict(Item.class);
+        assertStatements(2, get("/items/{itemId}", item.getId()).header("X-Sharer-User-Id", owner.getId()));
+        assertStatements(1, get("/items/{itemId}", item.getId()).header("X-Sharer-User-Id", owner.getId()));
+        assertStatements(1, get("/items/{itemId}", item.getId()).header("X-Sharer-User-Id", booker.getId()));
+        assertStatements(2, get("/items").header("X-Sharer-User-Id", owner.getId()));
+        assertStatements(1, get("/items/search").param("text", "item"));
+    }
+
+    /**
+     * Повторное чтение вещи и запроса вещи берет сущность из кэша второго уровня и экономит обращение к базе.
+     * Аренды в кэш не помещаются: GET /bookings/{id} читает аренду вместе с вещью и арендатором одним запросом
+     * и с кэшем, и без него.
+     */
+    @Test
+    void secondLevelCacheSavesRoundTrips() throws Exception {
+        entityManagerFactory.getCache().evictAll();
+        final long itemWithoutCache = countStatements(get("/items/{itemId}", item.getId())
+                .header("X-Sharer-User-Id", owner.getId()));
+        final long itemWithCache = countStatements(get("/items/{itemId}", item.getId())
+                .header("X-Sharer-User-Id", owner.getId()));
+        assertEquals(itemWithoutCache - 1, itemWithCache, "Вещь не читается из кэша второго уровня");
+        assertEquals(1, getStatistics().getSecondLevelCacheHitCount(), "Неверная статистика кэша второго уровня");
+
+        entityManagerFactory.getCache().evictAll();
+        final long requestWithoutCache = countStatements(get("/requests/{requestId}", request.getId())
+                .header("X-Sharer-User-Id", owner.getId()));
+        final long requestWithCache = countStatements(get("/requests/{requestId}", request.getId())
+                .header("X-Sharer-User-Id", owner.getId()));
+        assertEquals(requestWithoutCache - 1, requestWithCache, "Запрос вещи не читается из кэша второго уровня");
+        mockMvc.perform(get("/actuator/metrics/hibernate.second.level.cache.requests")
+                        .param("tag", "region:requests")
+                        .param("tag", "result:hit"))
+                .andExpect(status().isOk());
+
+        entityManagerFactory.getCache().evictAll();
+        assertStatements(1, get("/bookings/{bookingId}", booking.getId())
+                .header("X-Sharer-User-Id", booker.getId()));
+        assertStatements(1, get("/bookings/{bookingId}", booking.getId())
+                .header("X-Sharer-User-Id", booker.getId()));
+    }
+
+    @Test
+    void userEndpoints() throws Exception {
+        assertStatements(0, get("/users/{userId}", owner.getId()));
+        assertStatements(1, get("/users").param("size", "1"));
+        assertStatements(1, get("/users").param("after", PageCursor.of(owner.getId()).encode()));
+
+        final UserDto created = objectMapper.readValue(mockMvc.perform(post("/users")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(UserDto.of(null, "Created", "created@email.ru"))))
+                .andReturn().getResponse().getContentAsString(), UserDto.class);
+        assertStatements(0, get("/users/{userId}", created.getId()));
+        assertTrue(countStatements(post("/users")
+                .contentType("application/json")
+                .content(objectMapper.writeValueAsString(UserDto.of(null, "Other", "other@email.ru")))) <= 5,
+                "Создание пользователя выполняет лишние запросы");
+        assertTrue(countStatements(patch("/users/{userId}", created.getId())
+                .contentType("application/json")
+                .content(objectMapper.writeValueAsString(UserDto.of(null, "Updated", null)))) <= 4,
+                "Обновление пользователя выполняет лишние запросы");
+        assertTrue(countStatements(delete("/users/{userId}", created.getId())) <= 4,
+                "Удаление пользователя выполняет лишние запросы");
+        assertTrue(entityManagerFactory.getCache().contains(User.class, owner.getId()),
+                "Изменение пользователя вытеснило из кэша второго уровня других пользователей");
+    }
+
+    @Test
+    void exportEndpointsUseSingleQuery() throws Exception {
+        assertStatements(1, get("/bookings/owner/export").header("X-Sharer-User-Id", owner.getId()));
+        assertStatements(1, get("/bookings/owner/export").param("state", "FUTURE").param("format", "csv")
+                .header("X-Sharer-User-Id", owner.getId()));
+        assertStatements(1, get("/items/export").header("X-Sharer-User-Id", owner.getId()));
+
+        final String bookings = mockMvc.perform(get("/bookings/owner/export")
+                        .header("X-Sharer-User-Id", owner.getId()))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(bookingRepository.findAll().stream()
+                        .filter(booking -> owner.getId().equals(booking.getOwnerId()))
+                        .count(), bookings.lines().count(), "Выгружены не все аренды");
+        final String items = mockMvc.perform(get("/items/export").param("format", "csv")
+                        .header("X-Sharer-User-Id", owner.getId()))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(1 + itemRepository.findAllByOwnerId(owner.getId(), Pageable.unpaged()).size(),
+                items.lines().count(), "Выгружены не все вещи");
+    }
+
+    @Test
+    void userStreamUsesSingleQuery() throws Exception {
+        final Statistics statistics = getStatistics();
+        statistics.clear();
+        final String body = mockMvc.perform(get("/users/stream"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(1, statistics.getPrepareStatementCount(), "Потоковая выгрузка выполняет лишние запросы");
+        assertEquals(userRepository.count(), body.lines().count(), "Выгружены не все пользователи");
+    }
+
+    @Test
+    void saveAllIsBatched() {
+        final List<User> users = IntStream.range(0, BATCH_SIZE)
+                .mapToObj(i -> User.of(null, "Batch user " + i, "batch" + i + "@email.ru"))
+                .collect(Collectors.toList());
+        final Statistics statistics = getStatistics();
+        statistics.clear();
+
+        transactionTemplate.executeWithoutResult(status -> userRepository.saveAll(users));
+
+        assertEquals(BATCH_SIZE, statistics.getEntityInsertCount(), "Сохранены не все пользователи");
+        assertTrue(statistics.getPrepareStatementCount() <= 2,
+                "Пакетное сохранение выполняется отдельными запросами для каждой записи");
+    }
+
+    @Test
+    void createItemsIsBatched() throws Exception {
+        final List<ItemDto> itemsDto = IntStream.range(0, BATCH_SIZE)
+                .mapToObj(i -> ItemDto.of(null, "Batch item " + i, "Item description", true,
+                        i % 2 == 0 ? request.getId() : null))
+                .collect(Collectors.toList());
+
+        final long statements = countStatements(post("/items/batch")
+                .header("X-Sharer-User-Id", owner.getId())
+                .contentType("application/json")
+                .content(objectMapper.writeValueAsString(itemsDto)));
+        assertTrue(statements <= 7, "Пакетное создание вещей выполняется отдельными запросами для каждой вещи");
+    }
+
+    @Test
+    void approveRejectBatchIsBatched() throws Exception {
+        final LocalDateTime start = LocalDateTime.now().plusYears(1);
+        final Item batchItem = itemRepository.save(Item.of(null, "Batch booking item", "Item description", true,
+                owner.getId(), null));
+        final List<BookingDecisionDto> decisions = bookingRepository.saveAll(IntStream.range(0, BATCH_SIZE)
+                        .mapToObj(i -> Booking.of(null, start.plusDays(i), start.plusDays(i).plusHours(1), batchItem,
+                                booker, BookingStatus.WAITING))
+                        .collect(Collectors.toList()))
+                .stream()
+                .map(waiting -> BookingDecisionDto.of(waiting.getId(), waiting.getId() % 2 == 0))
+                .collect(Collectors.toList());
+
+        final long statements = countStatements(patch("/bookings/batch")
+                .header("X-Sharer-User-Id", owner.getId())
+                .contentType("application/json")
+                .content(objectMapper.writeValueAsString(decisions)));
+        assertTrue(statements <= 20, "Пакетное изменение статуса выполняется отдельными запросами для каждой аренды");
+    }
+
+    @Test
+    void requestEndpoints() throws Exception {
+        assertStatements(2, get("/requests").header("X-Sharer-User-Id", booker.getId()));
+        assertStatements(2, get("/requests/all").header("X-Sharer-User-Id", owner.getId()));
+        assertStatements(2, get("/requests/all").param("from", "0").param("size", "2")
+                .header("X-Sharer-User-Id", owner.getId()));
+        assertStatements(1, get("/requests/{requestId}", request.getId())
+                .header("X-Sharer-User-Id", owner.getId()));
+    }
+}
@@ -0,0 +1,183 @@
+package ru.practicum.shareit.common.datasource;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.common.outbox.AggregateType;
+import ru.practicum.shareit.common.outbox.EventType;
+import ru.practicum.shareit.common.outbox.OutboxEvent;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.user.service.UserCache;
+import ru.practicum.shareit.user.service.UserService;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет на двух экземплярах H2, что транзакции только для чтения выполняются на реплике,
+ * а остальные — на основной базе данных, в том числе когда запрос сначала читает, а затем изменяет данные.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary",
+        "shareit.datasource.replica.url=jdbc:h2:mem:routing-replica",
+        "shareit.datasource.replica.username=test",
+        "shareit.datasource.replica.password=test"
+})
+@AutoConfigureMockMvc
+@DirtiesContext
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+class ReadReplicaRoutingTest {
+
+    static String INSERT_USER = "insert into users (id, name, email) values (?, ?, ?)";
+    static String INSERT_ITEM = "insert into items (id, name, description, is_available, owner_id) " +
+            "values (1000, 'Item', 'Description', true, 1000)";
+    static String INSERT_BOOKING = "insert into bookings (id, start_date, end_date, item_id, booker_id, status, " +
+            "owner_id) values (?, ?, ?, 1000, 1001, 'WAITING', 1000)";
+    static PageRequest FIRST_USER = PageRequest.of(0, 1, Sort.by("id"));
+    static String SELECT_STATUS = "select status from bookings where id = ?";
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    UserService userService;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    UserCache userCache;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    @Qualifier("primaryDataSource")
+    DataSource primaryDataSource;
+    @Autowired
+    @Qualifier("replicaDataSource")
+    DataSource replicaDataSource;
+
+    JdbcTemplate primary;
+    JdbcTemplate replica;
+    TransactionTemplate readWriteTransaction;
+    TransactionTemplate readOnlyTransaction;
+
+    @BeforeAll
+    void beforeAll() {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(replicaDataSource);
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+        readWriteTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        primary.update(INSERT_USER, 1000L, "Primary", "user@email.ru");
+        replica.update(INSERT_USER, 1000L, "Replica", "user@email.ru");
+        final LocalDateTime start = LocalDateTime.now().plusDays(1);
+        for (JdbcTemplate database : List.of(primary, replica)) {
+            database.update(INSERT_USER, 1001L, "Booker", "booker@email.ru");
+            database.update(INSERT_ITEM);
+            for (long bookingId = 1000L; bookingId <= 1002L; bookingId++) {
+                final LocalDateTime bookingStart = start.plusDays(2 * (bookingId - 1000L));
+                database.update(INSERT_BOOKING, bookingId, bookingStart, bookingStart.plusDays(1));
+            }
+        }
+    }
+
+    private void assertApprovedOnPrimaryOnly(long bookingId) {
+        assertEquals("APPROVED", primary.queryForObject(SELECT_STATUS, String.class, bookingId),
+                "Статус бронирования не записан в основную базу данных");
+        assertEquals("WAITING", replica.queryForObject(SELECT_STATUS, String.class, bookingId),
+                "Статус бронирования записан в реплику");
+    }
+
+    private static List<String> names(List<User> users) {
+        return users.stream().map(User::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    void readOnlyTransactionsUseReplica() {
+        final List<UserDto> users = userService.getAllUsers(0, 1);
+        assertEquals(1, users.size(), "Неверное количество пользователей на реплике");
+        assertEquals("Replica", users.get(0).getName(), "Чтение выполняется не на реплике");
+
+        assertEquals(List.of("Replica"), readOnlyTransaction.execute(status ->
+                names(userRepository.findAllBy(FIRST_USER))), "Чтение выполняется не на реплике");
+    }
+
+    @Test
+    void readWriteTransactionsUsePrimary() {
+        assertEquals(List.of("Primary"), readWriteTransaction.execute(status ->
+                        names(userRepository.findAllBy(FIRST_USER))),
+                "Транзакция на запись читает не основную базу данных");
+
+        final UserDto created = userService.createUser(UserDto.of(null, "Created", "created@email.ru"));
+        assertEquals(1, primary.queryForObject("select count(*) from users where id = ?", Integer.class,
+                created.getId()), "Пользователь не записан в основную базу данных");
+        assertEquals(0, replica.queryForObject("select count(*) from users where id = ?", Integer.class,
+                created.getId()), "Пользователь записан в реплику");
+        userService.removeUser(created.getId());
+    }
+
+    @Test
+    void requestWritesToPrimaryAfterReading() throws Exception {
+        mockMvc.perform(patch("/bookings/{bookingId}", 1000L)
+                        .header("X-Sharer-User-Id", 1000L)
+                        .param("approved", "true"))
+                .andExpect(status().isOk());
+
+        assertApprovedOnPrimaryOnly(1000L);
+    }
+
+    @Test
+    void batchRequestWritesToPrimaryAfterReading() throws Exception {
+        mockMvc.perform(patch("/bookings/batch")
+                        .header("X-Sharer-User-Id", 1000L)
+                        .contentType("application/json")
+                        .content("[{\"bookingId\":1001,\"approved\":true},{\"bookingId\":1002,\"approved\":true}]"))
+                .andExpect(status().isOk());
+
+        assertApprovedOnPrimaryOnly(1001L);
+        assertApprovedOnPrimaryOnly(1002L);
+    }
+
+    @Test
+    void cachesAreFilledFromPrimary() {
+        entityManagerFactory.getCache().evict(User.class);
+        userCache.onEvent(OutboxEvent.of(1L, AggregateType.USER, 1000L, EventType.UPDATED, LocalDateTime.now()));
+
+        readOnlyTransaction.executeWithoutResult(status -> userRepository.findById(1000L));
+        assertFalse(entityManagerFactory.getCache().contains(User.class, 1000L),
+                "Пользователь, прочитанный с реплики, помещен в кэш второго уровня");
+        assertEquals("Primary", userService.getUserById(1000L).getName(), "Кэш пользователей заполняется с реплики");
+
+        entityManagerFactory.getCache().evict(User.class);
+        readWriteTransaction.executeWithoutResult(status -> userRepository.findById(1000L));
+        assertTrue(entityManagerFactory.getCache().contains(User.class, 1000L),
+                "Пользователь, прочитанный с основной базы данных, не помещен в кэш второго уровня");
+    }
+}
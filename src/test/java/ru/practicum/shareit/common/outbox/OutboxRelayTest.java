@@ -0,0 +1,269 @@
+package ru.practicum.shareit.common.outbox;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * Репозиторий событий заменен таблицей в памяти, чтобы проверять доставку по ее содержимому.
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class OutboxRelayTest {
+
+    static LocalDateTime NOW_DATE_TIME = LocalDateTime.now();
+    static int MAX_ATTEMPTS = 3;
+    static Duration RETRY_BACKOFF = Duration.ofSeconds(10);
+    static Duration MAX_RETRY_BACKOFF = Duration.ofSeconds(30);
+
+    OutboxEventRepository outboxEventRepository = mock(OutboxEventRepository.class);
+    @SuppressWarnings("unchecked")
+    ObjectProvider<OutboxSubscriber> subscribers = mock(ObjectProvider.class);
+    NavigableMap<Long, OutboxEvent> table = new TreeMap<>();
+    List<OutboxEvent> received = new ArrayList<>();
+
+    OutboxRelay outboxRelay = new OutboxRelay(outboxEventRepository, subscribers,
+            mock(PlatformTransactionManager.class), MAX_ATTEMPTS, RETRY_BACKOFF, MAX_RETRY_BACKOFF);
+
+    private static OutboxEvent event(long id, AggregateType aggregateType, long aggregateId) {
+        return OutboxEvent.of(id, aggregateType, aggregateId, EventType.UPDATED, NOW_DATE_TIME);
+    }
+
+    private static List<Long> ids(Collection<OutboxEvent> events) {
+        return events.stream().map(OutboxEvent::getId).collect(Collectors.toList());
+    }
+
+    private List<OutboxEvent> store(OutboxEvent... events) {
+        Stream.of(events).forEach(event -> table.put(event.getId(), event));
+        return List.of(events);
+    }
+
+    private void subscribe(OutboxSubscriber subscriber) {
+        when(subscribers.orderedStream()).thenAnswer(invocation -> Stream.of(subscriber));
+    }
+
+    private void subscribeFailingOn(OutboxEvent failing) {
+        subscribe(event -> {
+            if (event == failing) {
+                throw new IllegalStateException("Ошибка подписчика");
+            }
+            received.add(event);
+        });
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        when(outboxEventRepository.findAllByParkedFalseAndIdGreaterThanOrderByIdAsc(anyLong(), any(Pageable.class)))
+                .thenAnswer(invocation -> {
+                    final Pageable pageable = invocation.getArgument(1);
+                    return table.tailMap(invocation.getArgument(0), false).values().stream()
+                            .filter(event -> !event.isParked())
+                            .limit(pageable.getPageSize())
+                            .collect(Collectors.toList());
+                });
+        when(outboxEventRepository.lockDeliverableByIdIn(anyCollection())).thenAnswer(invocation -> {
+            final Collection<Long> ids = invocation.getArgument(0);
+            return table.values().stream()
+                    .filter(event -> ids.contains(event.getId()) && !event.isParked())
+                    .filter(event -> table.headMap(event.getId(), false).values().stream()
+                            .noneMatch(pending -> !pending.isParked() && !ids.contains(pending.getId())
+                                    && pending.getAggregateType() == event.getAggregateType()
+                                    && pending.getAggregateId().equals(event.getAggregateId())))
+                    .collect(Collectors.toList());
+        });
+        when(outboxEventRepository.findById(anyLong()))
+                .thenAnswer(invocation -> Optional.ofNullable(table.get(invocation.<Long>getArgument(0))));
+        doAnswer(invocation -> {
+            final Iterable<Long> ids = invocation.getArgument(0);
+            ids.forEach(table::remove);
+            return null;
+        }).when(outboxEventRepository).deleteAllByIdInBatch(anyIterable());
+    }
+
+    @Test
+    void relayWithoutEvents() {
+        subscribe(received::add);
+
+        assertEquals(0, outboxRelay.relay(), "Неверное количество доставленных событий");
+        verify(outboxEventRepository, never()).deleteAllByIdInBatch(anyIterable());
+    }
+
+    @Test
+    void relayDeliversInOrderAndDeletes() {
+        final List<OutboxEvent> events = store(event(1L, AggregateType.USER, 1L),
+                event(2L, AggregateType.ITEM, 1L), event(3L, AggregateType.USER, 1L));
+        subscribe(received::add);
+
+        assertEquals(3, outboxRelay.relay(), "Неверное количество доставленных событий");
+        assertEquals(events, received, "События доставляются не в порядке идентификаторов");
+        assertTrue(table.isEmpty(), "Доставленные события не удаляются");
+    }
+
+    @Test
+    void relayDrainsBatches() {
+        LongStream.rangeClosed(1, OutboxRelay.RELAY_BATCH_SIZE + 1L)
+                .forEach(id -> store(event(id, AggregateType.BOOKING, id)));
+        subscribe(received::add);
+
+        assertEquals(OutboxRelay.RELAY_BATCH_SIZE + 1, outboxRelay.relay(),
+                "Неверное количество доставленных событий");
+        assertTrue(table.isEmpty(), "Доставленные события не удаляются");
+    }
+
+    @Test
+    void relayHoldsBackFailedAggregate() {
+        final OutboxEvent failing = event(1L, AggregateType.ITEM, 1L);
+        store(failing, event(2L, AggregateType.USER, 1L), event(3L, AggregateType.ITEM, 1L),
+                event(4L, AggregateType.ITEM, 2L));
+        subscribeFailingOn(failing);
+
+        assertEquals(2, outboxRelay.relay(), "Неверное количество доставленных событий");
+        assertEquals(List.of(2L, 4L), ids(received), "Доставляются события агрегата после ошибки");
+        assertEquals(List.of(1L, 3L), ids(table.values()), "Недоставленные события удалены");
+        assertEquals(1, failing.getAttempts(), "Неудачная попытка не учтена");
+        assertNotNull(failing.getNextAttempt(), "Повторная попытка не запланирована");
+    }
+
+    @Test
+    void relayReadsPastHeldBackBatch() {
+        final OutboxEvent failing = event(1L, AggregateType.ITEM, 1L);
+        store(failing);
+        LongStream.rangeClosed(2, OutboxRelay.RELAY_BATCH_SIZE)
+                .forEach(id -> store(event(id, AggregateType.ITEM, 1L)));
+        final OutboxEvent other = store(event(OutboxRelay.RELAY_BATCH_SIZE + 1L, AggregateType.ITEM, 2L)).get(0);
+        subscribeFailingOn(failing);
+
+        assertEquals(1, outboxRelay.relay(), "Неверное количество доставленных событий");
+        assertEquals(List.of(other), received, "Отложенные события задерживают остальную очередь");
+    }
+
+    @Test
+    void relayWaitsForRetryBackoff() {
+        final OutboxEvent failed = event(1L, AggregateType.ITEM, 1L);
+        failed.setAttempts(1);
+        failed.setNextAttempt(LocalDateTime.now().plusMinutes(1));
+        store(failed, event(2L, AggregateType.ITEM, 1L));
+        subscribe(received::add);
+
+        assertEquals(0, outboxRelay.relay(), "Событие доставляется до истечения паузы");
+
+        failed.setNextAttempt(LocalDateTime.now().minusSeconds(1));
+        assertEquals(2, outboxRelay.relay(), "Событие не доставляется после истечения паузы");
+        assertEquals(List.of(1L, 2L), ids(received), "События доставляются не в порядке идентификаторов");
+    }
+
+    @Test
+    void relayParksEventAfterMaxAttempts() {
+        final OutboxEvent failing = event(1L, AggregateType.ITEM, 1L);
+        failing.setAttempts(MAX_ATTEMPTS - 1);
+        store(failing, event(2L, AggregateType.ITEM, 1L));
+        subscribeFailingOn(failing);
+
+        assertEquals(0, outboxRelay.relay(), "Событие агрегата доставлено раньше предыдущего");
+        assertTrue(failing.isParked(), "Событие не отложено после исчерпания попыток");
+        assertEquals(MAX_ATTEMPTS, failing.getAttempts(), "Неверное количество попыток");
+
+        assertEquals(1, outboxRelay.relay(), "Отложенное событие задерживает события агрегата");
+        assertEquals(List.of(2L), ids(received), "Отложенное событие доставляется повторно");
+        assertEquals(List.of(1L), ids(table.values()), "Отложенное событие удалено");
+    }
+
+    @Test
+    void retryBackoffGrowsUpToLimit() {
+        assertEquals(List.of(RETRY_BACKOFF, RETRY_BACKOFF.multipliedBy(2), MAX_RETRY_BACKOFF, MAX_RETRY_BACKOFF),
+                Stream.of(1, 2, 3, 30).map(outboxRelay::retryBackoff).collect(Collectors.toList()),
+                "Неверная пауза перед повторной попыткой");
+    }
+
+    @Test
+    void relayCommittedDeliversAndDeletes() {
+        final List<OutboxEvent> events = store(event(1L, AggregateType.BOOKING, 1L),
+                event(2L, AggregateType.BOOKING, 2L));
+        subscribe(received::add);
+
+        outboxRelay.relayCommitted(events);
+
+        assertEquals(events, received, "События транзакции не доставляются");
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(1L, 2L));
+        verify(outboxEventRepository, never())
+                .findAllByParkedFalseAndIdGreaterThanOrderByIdAsc(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    void relayCommittedKeepsFailedEvents() {
+        final OutboxEvent failing = event(1L, AggregateType.BOOKING, 1L);
+        final List<OutboxEvent> events = store(failing, event(2L, AggregateType.BOOKING, 1L),
+                event(3L, AggregateType.BOOKING, 2L));
+        subscribeFailingOn(failing);
+
+        outboxRelay.relayCommitted(events);
+
+        assertEquals(List.of(3L), ids(received), "Доставляются события агрегата после ошибки");
+        assertEquals(List.of(1L, 2L), ids(table.values()), "Недоставленные события удалены");
+        assertEquals(1, failing.getAttempts(), "Неудачная попытка не учтена");
+    }
+
+    @Test
+    void relayCommittedHoldsBackEventsAfterPendingEvent() {
+        final OutboxEvent pending = event(1L, AggregateType.BOOKING, 1L);
+        pending.setNextAttempt(LocalDateTime.now().plusMinutes(1));
+        store(pending);
+        final List<OutboxEvent> events = store(event(2L, AggregateType.BOOKING, 1L),
+                event(3L, AggregateType.BOOKING, 2L));
+        subscribe(received::add);
+
+        outboxRelay.relayCommitted(events);
+
+        assertEquals(List.of(3L), ids(received), "Событие доставлено раньше предыдущего события агрегата");
+        assertEquals(List.of(1L, 2L), ids(table.values()), "Отложенное событие удалено");
+    }
+
+    @Test
+    void relayCommittedSkipsEventsDeliveredByRelay() {
+        final List<OutboxEvent> events = store(event(1L, AggregateType.BOOKING, 1L));
+        subscribe(received::add);
+        outboxRelay.relay();
+
+        outboxRelay.relayCommitted(events);
+
+        assertEquals(events, received, "Событие доставляется повторно");
+    }
+
+    @Test
+    void relayCommittedIgnoresDeleteFailure() {
+        final List<OutboxEvent> events = store(event(1L, AggregateType.BOOKING, 1L));
+        subscribe(received::add);
+        doThrow(new IllegalStateException("Ошибка удаления")).when(outboxEventRepository)
+                .deleteAllByIdInBatch(anyIterable());
+
+        assertDoesNotThrow(() -> outboxRelay.relayCommitted(events), "Ошибка доставки передается вызывающему");
+        assertFalse(received.isEmpty(), "Событие транзакции не доставляется");
+        assertEquals(1, events.get(0).getAttempts(), "Неудачная попытка не учтена");
+    }
+}
@@ -0,0 +1,165 @@
+package ru.practicum.shareit.common.outbox;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.IllegalTransactionStateException;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.service.UserService;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет запись событий в транзакции изменения и их доставку подписчикам после фиксации и при опросе,
+ * измеряет пропускную способность. Замер не входит в обычный прогон тестов, запускается профилем benchmark:
+ * mvn test -P benchmark.
+ */
+@Slf4j
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:outbox", "shareit.outbox.retry-backoff=PT0S"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+class OutboxThroughputTest {
+
+    static int THREADS_COUNT = 8;
+    static int USERS_COUNT = 200;
+    static int UPDATES_PER_USER = 4;
+
+    @Autowired
+    UserService userService;
+    @Autowired
+    OutboxPublisher outboxPublisher;
+    @Autowired
+    OutboxRelay outboxRelay;
+    @Autowired
+    OutboxEventRepository outboxEventRepository;
+    @Autowired
+    RecordingSubscriber recordingSubscriber;
+
+    @TestConfiguration
+    static class RecordingSubscriberConfiguration {
+
+        @Bean
+        RecordingSubscriber recordingSubscriber() {
+            return new RecordingSubscriber();
+        }
+    }
+
+    static class RecordingSubscriber implements OutboxSubscriber {
+
+        final List<OutboxEvent> events = new CopyOnWriteArrayList<>();
+        volatile boolean failing;
+
+        @Override
+        public void onEvent(OutboxEvent event) {
+            if (failing) {
+                throw new IllegalStateException("Ошибка подписчика");
+            }
+            events.add(event);
+        }
+    }
+
+    private static <T> List<Future<T>> runConcurrently(List<Callable<T>> tasks) throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT);
+        try {
+            return executor.invokeAll(tasks);
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    @Test
+    void eventsAreDeliveredAfterCommit() {
+        final UserDto user = userService.createUser(UserDto.of(null, "User", "user@email.ru"));
+
+        assertThrows(DataIntegrityViolationException.class,
+                () -> userService.createUser(UserDto.of(null, "Other user", "user@email.ru")),
+                "Создание пользователя с занятой почтой не вызывает исключения");
+        assertThrows(IllegalTransactionStateException.class,
+                () -> outboxPublisher.publish(AggregateType.USER, user.getId(), EventType.UPDATED),
+                "Запись события вне транзакции не вызывает исключения");
+
+        assertEquals(1, recordingSubscriber.events.size(), "Событие отмененного изменения не откатывается");
+        final OutboxEvent event = recordingSubscriber.events.get(0);
+        assertEquals(AggregateType.USER, event.getAggregateType(), "Доставляется неверный агрегат");
+        assertEquals(user.getId(), event.getAggregateId(), "Доставляется неверный агрегат");
+        assertEquals(EventType.CREATED, event.getEventType(), "Доставляется неверное событие");
+        assertTrue(outboxEventRepository.findAll().isEmpty(), "Доставленные события не удаляются");
+        assertEquals(0, outboxRelay.relay(), "Доставленные события доставляются повторно");
+    }
+
+    @Test
+    void failedDeliveryIsRetriedByRelay() {
+        recordingSubscriber.failing = true;
+        final UserDto user = userService.createUser(UserDto.of(null, "User", "user@email.ru"));
+
+        final List<OutboxEvent> events = outboxEventRepository.findAll();
+        assertEquals(1, events.size(), "Недоставленное событие не сохраняется");
+        assertEquals(user.getId(), events.get(0).getAggregateId(), "Сохраняется неверный агрегат");
+
+        recordingSubscriber.failing = false;
+        assertEquals(1, outboxRelay.relay(), "Неверное количество доставленных событий");
+        assertEquals(events.get(0).getId(), recordingSubscriber.events.get(0).getId(), "Доставлено неверное событие");
+        assertTrue(outboxEventRepository.findAll().isEmpty(), "Доставленные события не удаляются");
+    }
+
+    @Test
+    @Tag("benchmark")
+    void deliveryThroughput() throws Exception {
+        final List<Callable<Long>> tasks = IntStream.range(0, USERS_COUNT)
+                .mapToObj(i -> (Callable<Long>) () -> {
+                    final Long userId = userService.createUser(UserDto.of(null, "User " + i, i + "@email.ru"))
+                            .getId();
+                    for (int update = 0; update < UPDATES_PER_USER; update++) {
+                        userService.updateUser(userId, UserDto.of(null, "User " + i + "-" + update, null));
+                    }
+                    return userId;
+                })
+                .collect(Collectors.toList());
+        final int eventsCount = USERS_COUNT * (UPDATES_PER_USER + 1);
+
+        final long started = System.nanoTime();
+        final List<Future<Long>> futures = runConcurrently(tasks);
+        final long elapsed = System.nanoTime() - started;
+        for (Future<Long> future : futures) {
+            future.get();
+        }
+
+        log.info("Записано и доставлено {} событий в {} потоков: {} событий в секунду", eventsCount, THREADS_COUNT,
+                eventsCount * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, 1));
+        assertEquals(eventsCount, recordingSubscriber.events.size(), "Доставлены не все события");
+        assertEquals(0, outboxRelay.relay(), "События не доставляются после фиксации");
+
+        final List<EventType> expectedEvents = Stream.concat(Stream.of(EventType.CREATED),
+                Collections.nCopies(UPDATES_PER_USER, EventType.UPDATED).stream()).collect(Collectors.toList());
+        final Map<Long, List<EventType>> eventsByUser = recordingSubscriber.events.stream()
+                .collect(Collectors.groupingBy(OutboxEvent::getAggregateId,
+                        Collectors.mapping(OutboxEvent::getEventType, Collectors.toList())));
+        assertEquals(USERS_COUNT, eventsByUser.size(), "Доставлены события не всех пользователей");
+        eventsByUser.values().forEach(userEvents -> assertEquals(expectedEvents, userEvents,
+                "События пользователя доставляются не в порядке записи"));
+    }
+}
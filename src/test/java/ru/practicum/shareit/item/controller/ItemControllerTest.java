@@ -10,16 +10,22 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.shareit.common.PageCursor;
+import ru.practicum.shareit.common.exceptoins.NotFoundException;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemGetDto;
+import ru.practicum.shareit.item.dto.TimeSlotDto;
 import ru.practicum.shareit.item.service.ItemService;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(ItemController.class)
@@ -68,6 +74,54 @@ class ItemControllerTest {
             )
     );
 
+    @Test
+    void exportByUserIdAsNdjson() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<Consumer<ItemDto>>getArgument(1).accept(testItemDto);
+            return null;
+        }).when(itemService).exportItemsByUserId(eq(1L), any());
+
+        mockMvc.perform(get("/items/export").header("X-Sharer-User-Id", 1))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string(objectMapper.writeValueAsString(testItemDto) + "\n"));
+    }
+
+    @Test
+    void exportByUserIdAsCsv() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<Consumer<ItemDto>>getArgument(1).accept(testItemDto);
+            invocation.<Consumer<ItemDto>>getArgument(1).accept(ItemDto.of(2L, "Drill, cordless", "\"Bosch\"", false,
+                    null));
+            return null;
+        }).when(itemService).exportItemsByUserId(eq(1L), any());
+
+        mockMvc.perform(get("/items/export").header("X-Sharer-User-Id", 1).param("format", "csv"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv;charset=UTF-8"))
+                .andExpect(content().string("id,name,description,available,requestId\n"
+                        + "1,Test item dto,description,true,1\n"
+                        + "2,\"Drill, cordless\",\"\"\"Bosch\"\"\",false,\n"));
+    }
+
+    @Test
+    void exportByInvalidUserId() throws Exception {
+        doThrow(new NotFoundException("Запрос вещи несуществующим пользователем (id=1)"))
+                .when(itemService).exportItemsByUserId(eq(1L), any());
+
+        mockMvc.perform(get("/items/export").header("X-Sharer-User-Id", 1))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentType("application/json"));
+    }
+
+    @Test
+    void exportByUserIdWithUnknownFormat() throws Exception {
+        mockMvc.perform(get("/items/export").header("X-Sharer-User-Id", 1).param("format", "xml"))
+                .andExpect(status().isBadRequest());
+
+        verify(itemService, never()).exportItemsByUserId(anyLong(), any());
+    }
+
     @Test
     void getById() throws Exception {
         when(itemService.getItemById(1L, 1L)).thenReturn(testItemGetDto);
@@ -82,6 +136,26 @@ class ItemControllerTest {
         verify(itemService, times(1)).getItemById(1L, 1L);
     }
 
+    @Test
+    void getAvailability() throws Exception {
+        final LocalDateTime from = LocalDateTime.of(2022, 9, 1, 10, 0);
+        final LocalDateTime to = LocalDateTime.of(2022, 9, 2, 10, 0);
+        when(itemService.getItemAvailability(1L, 1L, from, to))
+                .thenReturn(List.of(TimeSlotDto.of(from, from.plusHours(2)), TimeSlotDto.of(from.plusHours(5), to)));
+
+        mockMvc.perform(
+                        get("/items/1/availability")
+                                .header("X-Sharer-User-Id", 1)
+                                .param("from", "2022-09-01T10:00:00")
+                                .param("to", "2022-09-02T10:00:00")
+                )
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"start\":\"2022-09-01T10:00:00\",\"end\":\"2022-09-01T12:00:00\"},"
+                        + "{\"start\":\"2022-09-01T15:00:00\",\"end\":\"2022-09-02T10:00:00\"}]"));
+
+        verify(itemService, times(1)).getItemAvailability(1L, 1L, from, to);
+    }
+
     @Test
     void getByUserId() throws Exception {
         when(itemService.getItemsByUserId(1L, 0, 10)).thenReturn(testItemsGetDto);
@@ -112,6 +186,23 @@ class ItemControllerTest {
         verify(itemService, times(1)).createItem(testItemDto,1L);
     }
 
+    @Test
+    void createBatch() throws Exception {
+        when(itemService.createItems(List.of(testItemDto, testItemDto), 1L))
+                .thenReturn(List.of(testItemDto, testItemDto));
+
+        mockMvc.perform(
+                        post("/items/batch")
+                                .header("X-Sharer-User-Id", 1)
+                                .contentType("application/json")
+                                .content(objectMapper.writeValueAsString(List.of(testItemDto, testItemDto)))
+                )
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(List.of(testItemDto, testItemDto))));
+
+        verify(itemService, times(1)).createItems(List.of(testItemDto, testItemDto), 1L);
+    }
+
     @Test
     void update() throws Exception {
         when(itemService.updateItem(testItemDto, 1L, 1L)).thenReturn(testItemDto);
@@ -144,6 +235,55 @@ class ItemControllerTest {
         verify(itemService, times(1)).searchItemsBySubstring(anyString(), anyInt(), anyInt());
     }
 
+    @Test
+    void searchBySubstringFullPage() throws Exception {
+        when(itemService.searchItemsBySubstring("TEST", 0, 1)).thenReturn(List.of(testItemDto));
+        when(itemService.isSearchOrderedById()).thenReturn(true);
+
+        mockMvc.perform(
+                    get("/items/search")
+                            .param("text", "TEST")
+                            .param("size", "1")
+                )
+                .andExpect(status().isOk())
+                .andExpect(header().string(PageCursor.NEXT_CURSOR_HEADER,
+                        PageCursor.of(testItemDto.getId()).encode()));
+    }
+
+    @Test
+    void searchBySubstringRankedPageHasNoCursor() throws Exception {
+        when(itemService.searchItemsBySubstring("TEST", 0, 1)).thenReturn(List.of(testItemDto));
+        when(itemService.isSearchOrderedById()).thenReturn(false);
+
+        mockMvc.perform(
+                    get("/items/search")
+                            .param("text", "TEST")
+                            .param("size", "1")
+                )
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(PageCursor.NEXT_CURSOR_HEADER))
+                .andExpect(content().json(objectMapper.writeValueAsString(List.of(testItemDto))));
+    }
+
+    @Test
+    void searchBySubstringAfterCursor() throws Exception {
+        when(itemService.searchItemsBySubstring("TEST", PageCursor.of(0L), 1)).thenReturn(List.of(testItemDto));
+        when(itemService.isSearchOrderedById()).thenReturn(true);
+
+        mockMvc.perform(
+                    get("/items/search")
+                            .param("text", "TEST")
+                            .param("after", PageCursor.of(0L).encode())
+                            .param("size", "1")
+                )
+                .andExpect(status().isOk())
+                .andExpect(header().string(PageCursor.NEXT_CURSOR_HEADER,
+                        PageCursor.of(testItemDto.getId()).encode()))
+                .andExpect(content().json(objectMapper.writeValueAsString(List.of(testItemDto))));
+
+        verify(itemService, times(1)).searchItemsBySubstring("TEST", PageCursor.of(0L), 1);
+    }
+
     @Test
     void createComment() throws Exception {
         when(itemService.createComment(testCommentDto, 1L, 1L)).thenReturn(testCommentDto);
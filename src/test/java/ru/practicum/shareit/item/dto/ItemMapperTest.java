@@ -3,14 +3,12 @@ package ru.practicum.shareit.item.dto;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import org.junit.jupiter.api.Test;
-import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.item.model.BookingSnapshot;
 import ru.practicum.shareit.item.model.Item;
-import ru.practicum.shareit.user.model.User;
 
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,9 +22,7 @@ class ItemMapperTest {
 
     ItemDto testItemDto = ItemDto.of(1L, "Item 1", "Item 1 description", true, null);
 
-    User testUser = User.of(1L, "Test user", "test@user.email");
-
-    Booking testBooking = Booking.of(1L, NOW_DATE_TIME, NOW_DATE_TIME, null, testUser, null);
+    BookingSnapshot testBooking = BookingSnapshot.of(1L, 1L, NOW_DATE_TIME, NOW_DATE_TIME);
 
     ItemGetDto.BookingDto testBookingDto = ItemGetDto.BookingDto.of(1L, 1L, NOW_DATE_TIME,
             NOW_DATE_TIME);
@@ -60,12 +56,19 @@ class ItemMapperTest {
         final ItemGetDto testGetDto = ItemGetDto.of(1L, "Item 1", "Item 1 description", true,
                 testBookingDto, testBookingDto, Collections.emptyList());
 
-        final ItemGetDto itemGetDto = ItemMapper.toItemGetDto(testItem, Optional.of(testBooking),
-                Optional.of(testBooking), Collections.emptyList());
+        final ItemGetDto itemGetDto = ItemMapper.toItemGetDto(testItem, testBooking, testBooking,
+                Collections.emptyList());
         assertNotNull(itemGetDto, "Не возвращается getDto вещи");
         assertEquals(testGetDto, itemGetDto, "Возвращается неверное getDTO вещи");
     }
 
+    @Test
+    void toItemGetDtoWithoutBookings() {
+        final ItemGetDto itemGetDto = ItemMapper.toItemGetDto(testItem, null, null, Collections.emptyList());
+        assertNull(itemGetDto.getLastBooking(), "Возвращается непустое последнее бронирование");
+        assertNull(itemGetDto.getNextBooking(), "Возвращается непустое следующее бронирование");
+    }
+
     @Test
     void defaultConstructor() {
         final ItemMapper itemMapper = new ItemMapper();
@@ -67,4 +67,17 @@ class CommentRepositoryTest {
         assertEqualsComments(testComment2, comments.get(0));
         assertEqualsComments(testComment1, comments.get(1));
     }
+
+    @Test
+    @DirtiesContext
+    void findAllByItemIdInOrderByCreated() {
+        assertTrue(commentRepository.findAllByItemIdInOrderByCreated(List.of(2L)).isEmpty(),
+                "Для вещей без коментариев возвращается непустой список");
+
+        final List<Comment> comments = commentRepository.findAllByItemIdInOrderByCreated(List.of(1L, 2L));
+
+        assertEquals(2, comments.size(), "Возвращается неверное количество коментариев");
+        assertEqualsComments(testComment2, comments.get(0));
+        assertEqualsComments(testComment1, comments.get(1));
+    }
 }
\ No newline at end of file
@@ -7,19 +7,25 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.annotation.DirtiesContext;
+import ru.practicum.shareit.item.model.BookingSnapshot;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.requests.model.ItemRequest;
 import ru.practicum.shareit.requests.repository.ItemRequestRepository;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
 
+import javax.persistence.EntityManager;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @DataJpaTest
@@ -30,6 +36,7 @@ class ItemRepositoryTest {
     ItemRepository itemRepository;
     UserRepository userRepository;
     ItemRequestRepository itemRequestRepository;
+    EntityManager entityManager;
 
     User testUser1 = User.of(1L, "User 1", "user1@email.ru");
     User testUser2 = User.of(2L, "User 2", "user2@email.ru");
@@ -95,4 +102,51 @@ class ItemRepositoryTest {
         assertEquals(1, items.size(), "Возвращается неверынй размер списка");
         assertEqualsItems(testItem2, items.stream().findAny().get());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DirtiesContext
+    void findAllByOwnerIdAndIdGreaterThan() {
+        final List<Item> items = itemRepository.findAllByOwnerIdAndIdGreaterThan(2L, 1L,
+                PageRequest.of(0, 10, Sort.by("id")));
+        assertEquals(1, items.size(), "Возвращается неверынй размер списка");
+        assertEqualsItems(testItem2, items.get(0));
+    }
+
+    @Test
+    @DirtiesContext
+    void searchSubstringAfter() {
+        final List<Item> firstPage = itemRepository.searchSubstringAfter("item", 0L, PageRequest.of(0, 1));
+        assertEquals(1, firstPage.size(), "Возвращается неверынй размер списка");
+        assertEqualsItems(testItem1, firstPage.get(0));
+
+        final List<Item> secondPage = itemRepository.searchSubstringAfter("item", firstPage.get(0).getId(),
+                PageRequest.of(0, 1));
+        assertEquals(1, secondPage.size(), "Возвращается неверынй размер списка");
+        assertEqualsItems(testItem2, secondPage.get(0));
+
+        assertTrue(itemRepository.searchSubstringAfter("item", testItem2.getId(), PageRequest.of(0, 1)).isEmpty(),
+                "После последней вещи возвращается непустой список вещей");
+    }
+
+    @Test
+    @DirtiesContext
+    void updateBookings() {
+        final LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        final Item managed = itemRepository.findById(testItem1.getId()).orElseThrow();
+        managed.setLastBooking(BookingSnapshot.of(1L, 1L, now.minusDays(2), now.minusDays(1)));
+        managed.setBookingsRefreshAt(now.plusDays(1));
+        itemRepository.flush();
+        entityManager.clear();
+
+        final Item item = itemRepository.findById(testItem1.getId()).orElseThrow();
+        assertEquals(1L, item.getLastBooking().getId(), "Не сохраняется последнее бронирование");
+        assertEquals(now.minusDays(1), item.getLastBooking().getEnd(), "Не сохраняется окончание аренды");
+        assertNull(item.getNextBooking(), "Сохраняется пустое следующее бронирование");
+        assertEquals(now.plusDays(1), item.getBookingsRefreshAt(), "Не сохраняется время пересчета");
+
+        assertTrue(itemRepository.findIdsByBookingsRefreshAtNotAfter(now, PageRequest.of(0, 10)).isEmpty(),
+                "Возвращается вещь, время пересчета которой не наступило");
+        assertEquals(List.of(testItem1.getId()), itemRepository.findIdsByBookingsRefreshAtNotAfter(
+                now.plusDays(1), PageRequest.of(0, 10)), "Не возвращается вещь для пересчета");
+    }
+}
@@ -0,0 +1,52 @@
+package ru.practicum.shareit.item.search;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+class ItemSearchTest {
+
+    ItemRepository itemRepository = mock(ItemRepository.class);
+
+    Item testItem = Item.of(1L, "Test item", "description", true, 1L, null);
+    Pageable sortedPageable = PageRequest.of(2, 10, Sort.by("id"));
+
+    @Test
+    void substringSearch() {
+        when(itemRepository.searchSubstring("tem", sortedPageable)).thenReturn(List.of(testItem));
+
+        final List<Item> items = new SubstringItemSearch(itemRepository).search("tem", sortedPageable);
+
+        assertIterableEquals(List.of(testItem), items, "Возвращаются неверные результаты поиска");
+    }
+
+    @Test
+    void fullTextSearchIgnoresSort() {
+        when(itemRepository.searchFullText(anyString(), eq(PageRequest.of(2, 10)))).thenReturn(List.of(testItem));
+
+        final List<Item> items = new FullTextItemSearch(itemRepository).search("tem", sortedPageable);
+
+        assertIterableEquals(List.of(testItem), items, "Возвращаются неверные результаты поиска");
+        verify(itemRepository, times(1)).searchFullText("tem", PageRequest.of(2, 10));
+    }
+
+    @Test
+    void fullTextSearchUnpaged() {
+        new FullTextItemSearch(itemRepository).search("tem", Pageable.unpaged());
+
+        verify(itemRepository, times(1)).searchFullText("tem", Pageable.unpaged());
+    }
+}
@@ -0,0 +1,66 @@
+package ru.practicum.shareit.item.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongPostingListTest {
+
+    @Test
+    void addKeepsSortedUniqueValues() {
+        final LongPostingList list = new LongPostingList();
+        list.add(5L);
+        list.add(1L);
+        list.add(3L);
+        list.add(3L);
+
+        assertEquals(3, list.size(), "Неверное количество значений");
+        assertEquals(1L, list.get(0), "Значения не упорядочены");
+        assertEquals(5L, list.get(2), "Значения не упорядочены");
+
+        list.remove(3L);
+        list.remove(4L);
+        assertEquals(2, list.size(), "Значение не удаляется");
+        assertEquals(5L, list.get(1), "Удалено не то значение");
+    }
+
+    @Test
+    void ceilingSkipsAhead() {
+        final LongPostingList list = new LongPostingList();
+        for (long value = 0; value < 100; value += 2) {
+            list.add(value);
+        }
+
+        assertEquals(0, list.ceiling(-1L, 0), "Неверная позиция значения меньше всех");
+        assertEquals(5, list.ceiling(10L, 0), "Неверная позиция имеющегося значения");
+        assertEquals(6, list.ceiling(11L, 0), "Неверная позиция отсутствующего значения");
+        assertEquals(7, list.ceiling(11L, 7), "Позиция меньше начальной");
+        assertEquals(list.size(), list.ceiling(1000L, 3), "Неверная позиция значения больше всех");
+    }
+
+    @Test
+    void ceilingMatchesSortedSet() {
+        final Random random = new Random(1);
+        final LongPostingList list = new LongPostingList();
+        final TreeSet<Long> expected = new TreeSet<>();
+        for (int i = 0; i < 1000; i++) {
+            final long value = random.nextInt(5000);
+            list.add(value);
+            expected.add(value);
+        }
+
+        int position = 0;
+        for (long value = 0; value < 5100; value += 1 + random.nextInt(50)) {
+            position = list.ceiling(value, position);
+            final Long ceiling = expected.ceiling(value);
+            if (ceiling == null) {
+                assertEquals(list.size(), position, String.format("Найдено значение больше %s", value));
+            } else {
+                assertEquals(ceiling, list.get(position), String.format("Неверное значение не меньше %s", value));
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ru.practicum.shareit.item.search;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.practicum.shareit.common.outbox.AggregateType;
+import ru.practicum.shareit.common.outbox.EventType;
+import ru.practicum.shareit.common.outbox.OutboxEvent;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+class NgramItemSearchTest {
+
+    static List<String> QUERIES = List.of("", "a", "др", "ДРЕЛЬ", "дрель", "аккумулятор", "Item", "tem 1", "1 desc",
+            "em 1", "description", "отвертка", "UNFOUND", "e", "ll");
+
+    ItemRepository itemRepository;
+    UserRepository userRepository;
+
+    User testUser = User.of(1L, "User 1", "user1@email.ru");
+
+    List<Item> testItems = List.of(
+            Item.of(1L, "Item 1", "Item 1 description", true, 1L, null),
+            Item.of(2L, "Item 2", "Item 2 description", false, 1L, null),
+            Item.of(3L, "Дрель", "Простая дрель", true, 1L, null),
+            Item.of(4L, "Аккумуляторная дрель", "Аккумуляторная дрель + аккумулятор", true, 1L, null),
+            Item.of(5L, "Отвертка", "Аккумуляторная отвертка", true, 1L, null),
+            Item.of(6L, "Ball", "Small ball", true, 1L, null),
+            Item.of(7L, "Item 10", "Item 10 description", true, 1L, null)
+    );
+
+    private static List<Long> ids(List<Item> items) {
+        return items.stream().map(Item::getId).collect(Collectors.toList());
+    }
+
+    private void assertSameResults(NgramItemSearch ngramItemSearch) {
+        for (String query : QUERIES) {
+            for (int page = 0; page < 3; page++) {
+                final Pageable pageable = PageRequest.of(page, 2, Sort.by("id"));
+                assertEquals(ids(itemRepository.searchSubstring(query, pageable)),
+                        ids(ngramItemSearch.search(query, pageable)),
+                        String.format("Результаты поиска '%s' на странице %s отличаются", query, page));
+            }
+            assertEquals(ids(itemRepository.searchSubstring(query, Pageable.unpaged())),
+                    ids(ngramItemSearch.search(query, Pageable.unpaged())),
+                    String.format("Результаты поиска '%s' без постраничного вывода отличаются", query));
+            for (long cursorId = 0; cursorId < 8; cursorId += 3) {
+                assertEquals(ids(itemRepository.searchSubstringAfter(query, cursorId, PageRequest.of(0, 2))),
+                        ids(ngramItemSearch.searchAfter(query, cursorId, 2)),
+                        String.format("Результаты поиска '%s' после id=%s отличаются", query, cursorId));
+            }
+        }
+    }
+
+    @BeforeEach
+    void beforeEachTest() {
+        userRepository.save(testUser);
+        itemRepository.saveAll(testItems);
+    }
+
+    @Test
+    @DirtiesContext
+    void searchMatchesSearchSubstring() {
+        final NgramItemSearch ngramItemSearch = new NgramItemSearch(itemRepository);
+        ngramItemSearch.rebuild();
+
+        assertSameResults(ngramItemSearch);
+    }
+
+    @Test
+    @DirtiesContext
+    void searchAfterIndexUpdates() {
+        final NgramItemSearch ngramItemSearch = new NgramItemSearch(itemRepository);
+        ngramItemSearch.rebuild();
+
+        ngramItemSearch.index(itemRepository.save(Item.of(2L, "Item 2", "Item 2 description", true, 1L, null)));
+        ngramItemSearch.index(itemRepository.save(Item.of(3L, "Дрель", "Простая дрель", false, 1L, null)));
+        ngramItemSearch.index(itemRepository.save(Item.of(6L, "Отвертка крестовая", "Крестовая", true, 1L,
+                null)));
+        ngramItemSearch.index(itemRepository.save(Item.of(null, "Новая дрель", "Дрель", true, 1L, null)));
+
+        assertSameResults(ngramItemSearch);
+        assertTrue(ngramItemSearch.search("ball", Pageable.unpaged()).isEmpty(),
+                "Находится вещь по устаревшему названию");
+    }
+
+    @Test
+    @DirtiesContext
+    void searchAfterItemEvents() {
+        final NgramItemSearch ngramItemSearch = new NgramItemSearch(itemRepository);
+        ngramItemSearch.rebuild();
+
+        final Item updated = itemRepository.save(Item.of(6L, "Отвертка крестовая", "Крестовая", true, 1L, null));
+        final Item created = itemRepository.save(Item.of(null, "Новая дрель", "Дрель", true, 1L, null));
+        ngramItemSearch.onEvents(List.of(
+                OutboxEvent.of(1L, AggregateType.ITEM, updated.getId(), EventType.UPDATED, LocalDateTime.now()),
+                OutboxEvent.of(2L, AggregateType.ITEM, created.getId(), EventType.CREATED, LocalDateTime.now()),
+                OutboxEvent.of(3L, AggregateType.USER, 1L, EventType.UPDATED, LocalDateTime.now())));
+
+        assertSameResults(ngramItemSearch);
+        assertTrue(ngramItemSearch.search("ball", Pageable.unpaged()).isEmpty(),
+                "Находится вещь по устаревшему названию");
+    }
+}
@@ -0,0 +1,179 @@
+package ru.practicum.shareit.item.service;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.model.AbstractBooking;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingHistoryRepository;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.common.outbox.AggregateType;
+import ru.practicum.shareit.common.outbox.EventType;
+import ru.practicum.shareit.common.outbox.OutboxEvent;
+import ru.practicum.shareit.item.model.BookingSnapshot;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class ItemBookingsRefresherTest {
+
+    static LocalDateTime NOW_DATE_TIME = LocalDateTime.now();
+
+    ItemRepository itemRepository = mock(ItemRepository.class);
+    BookingRepository bookingRepository = mock(BookingRepository.class);
+    BookingHistoryRepository bookingHistoryRepository = mock(BookingHistoryRepository.class);
+    TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+
+    ItemBookingsRefresher itemBookingsRefresher = new ItemBookingsRefresher(itemRepository, bookingRepository,
+            bookingHistoryRepository, transactionTemplate);
+
+    User testUser = User.of(2L, "Test user", "user@test.email");
+    Item testItem = Item.of(1L, "Test item", "description", true, 1L, null);
+
+    Booking lastBooking = Booking.of(1L, NOW_DATE_TIME.minusDays(3), NOW_DATE_TIME.minusDays(2), testItem,
+            testUser, BookingStatus.APPROVED);
+    Booking currentBooking = Booking.of(2L, NOW_DATE_TIME.minusDays(1), NOW_DATE_TIME.plusDays(1), testItem,
+            testUser, BookingStatus.APPROVED);
+    Booking nextBooking = Booking.of(3L, NOW_DATE_TIME.plusDays(2), NOW_DATE_TIME.plusDays(3), testItem,
+            testUser, BookingStatus.WAITING);
+
+    @BeforeEach
+    void beforeEachTest() {
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    private void mockBookings(Booking last, Booking next, Booking firstEnding) {
+        when(itemRepository.findById(anyLong())).thenReturn(Optional.of(testItem));
+        when(bookingHistoryRepository.findFirstByItemAndStatusInAndEndBeforeOrderByEndDesc(any(), anyCollection(),
+                any(LocalDateTime.class))).thenReturn(Optional.ofNullable(last));
+        when(bookingRepository.findFirstByItemAndStatusInAndStartAfterOrderByStartAsc(any(), anyCollection(),
+                any(LocalDateTime.class))).thenReturn(Optional.ofNullable(next));
+        when(bookingRepository.findFirstByItemAndStatusInAndEndAfterOrderByEndAsc(any(), anyCollection(),
+                any(LocalDateTime.class))).thenReturn(Optional.ofNullable(firstEnding));
+    }
+
+    private static void assertEqualsSnapshot(Booking booking, BookingSnapshot snapshot) {
+        assertEquals(booking.getId(), snapshot.getId(), "Сохраняется неверный id бронирования");
+        assertEquals(booking.getBooker().getId(), snapshot.getBookerId(), "Сохраняется неверный арендатор");
+        assertEquals(booking.getStart(), snapshot.getStart(), "Сохраняется неверное начало аренды");
+        assertEquals(booking.getEnd(), snapshot.getEnd(), "Сохраняется неверное окончание аренды");
+    }
+
+    private void assertNoBookings() {
+        assertNull(testItem.getLastBooking(), "Сохраняется несуществующее последнее бронирование");
+        assertNull(testItem.getNextBooking(), "Сохраняется несуществующее следующее бронирование");
+        assertNull(testItem.getBookingsRefreshAt(), "Сохраняется время пересчета без бронирований");
+    }
+
+    @Test
+    void refresh() {
+        mockBookings(lastBooking, nextBooking, currentBooking);
+
+        itemBookingsRefresher.refresh(testItem.getId());
+
+        assertEqualsSnapshot(lastBooking, testItem.getLastBooking());
+        assertEqualsSnapshot(nextBooking, testItem.getNextBooking());
+        assertEquals(currentBooking.getEnd(), testItem.getBookingsRefreshAt(), "Неверное время пересчета");
+        verify(itemRepository, never()).save(any());
+    }
+
+    @Test
+    void refreshMissingItem() {
+        when(itemRepository.findById(anyLong())).thenReturn(Optional.empty());
+
+        itemBookingsRefresher.refresh(testItem.getId());
+
+        verifyNoInteractions(bookingRepository, bookingHistoryRepository);
+    }
+
+    @Test
+    void refreshAtNextBookingStart() {
+        mockBookings(null, nextBooking, nextBooking);
+
+        itemBookingsRefresher.refresh(testItem.getId());
+
+        assertNull(testItem.getLastBooking(), "Сохраняется несуществующее последнее бронирование");
+        assertEqualsSnapshot(nextBooking, testItem.getNextBooking());
+        assertEquals(nextBooking.getStart(), testItem.getBookingsRefreshAt(), "Неверное время пересчета");
+    }
+
+    @Test
+    void refreshWithoutBookings() {
+        mockBookings(lastBooking, null, null);
+
+        itemBookingsRefresher.refresh(testItem.getId());
+
+        assertEqualsSnapshot(lastBooking, testItem.getLastBooking());
+        assertNull(testItem.getNextBooking(), "Сохраняется несуществующее следующее бронирование");
+        assertNull(testItem.getBookingsRefreshAt(), "Сохраняется время пересчета без будущих бронирований");
+    }
+
+    @Test
+    void refreshDue() {
+        mockBookings(null, null, null);
+        when(itemRepository.findIdsByBookingsRefreshAtNotAfter(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(1L, 2L), Collections.emptyList());
+
+        itemBookingsRefresher.refreshDue();
+
+        verify(itemRepository).findById(1L);
+        verify(itemRepository).findById(2L);
+        assertNoBookings();
+        verify(itemRepository, times(1)).findIdsByBookingsRefreshAtNotAfter(any(LocalDateTime.class),
+                any(Pageable.class));
+    }
+
+    private static OutboxEvent event(AggregateType aggregateType, long aggregateId) {
+        return OutboxEvent.of(aggregateId, aggregateType, aggregateId, EventType.UPDATED, NOW_DATE_TIME);
+    }
+
+    @Test
+    void onBookingEventRefreshesItem() {
+        mockBookings(null, null, null);
+        when(bookingHistoryRepository.findAllById(Set.of(1L))).thenReturn(List.<AbstractBooking>of(lastBooking));
+
+        itemBookingsRefresher.onEvent(event(AggregateType.BOOKING, 1L));
+
+        verify(itemRepository).findById(testItem.getId());
+        assertNoBookings();
+    }
+
+    @Test
+    void onBookingEventsRefreshesEachItemOnce() {
+        mockBookings(null, null, null);
+        when(bookingHistoryRepository.findAllById(Set.of(1L, 2L, 3L)))
+                .thenReturn(List.of(lastBooking, currentBooking, nextBooking));
+
+        itemBookingsRefresher.onEvents(List.of(event(AggregateType.BOOKING, 1L), event(AggregateType.BOOKING, 2L),
+                event(AggregateType.BOOKING, 3L), event(AggregateType.ITEM, 1L)));
+
+        verify(itemRepository, times(1)).findById(testItem.getId());
+    }
+
+    @Test
+    void onOtherEventDoesNothing() {
+        itemBookingsRefresher.onEvent(event(AggregateType.ITEM, 1L));
+
+        verifyNoInteractions(bookingHistoryRepository, itemRepository);
+    }
+}
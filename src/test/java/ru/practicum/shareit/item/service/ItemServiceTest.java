@@ -5,35 +5,52 @@ import lombok.experimental.FieldDefaults;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingHistoryRepository;
 import ru.practicum.shareit.booking.repository.BookingRepository;
 import ru.practicum.shareit.common.ModelValidator;
+import ru.practicum.shareit.common.PageCursor;
+import ru.practicum.shareit.common.datasource.ReadReplicaRouting;
 import ru.practicum.shareit.common.exceptoins.BadRequestException;
 import ru.practicum.shareit.common.exceptoins.ForbiddenException;
 import ru.practicum.shareit.common.exceptoins.NotFoundException;
+import ru.practicum.shareit.common.outbox.AggregateType;
+import ru.practicum.shareit.common.outbox.EventType;
+import ru.practicum.shareit.common.outbox.OutboxPublisher;
+import ru.practicum.shareit.common.exceptoins.ValidationException;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemGetDto;
+import ru.practicum.shareit.item.dto.TimeSlotDto;
+import ru.practicum.shareit.item.model.BookingSnapshot;
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.repository.CommentRepository;
 import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.search.FullTextItemSearch;
+import ru.practicum.shareit.item.search.SubstringItemSearch;
 import ru.practicum.shareit.requests.model.ItemRequest;
 import ru.practicum.shareit.requests.repository.ItemRequestRepository;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.user.service.UserCache;
 
+import javax.persistence.EntityManager;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 class ItemServiceTest {
@@ -43,11 +60,17 @@ class ItemServiceTest {
     ItemRepository itemRepository = mock(ItemRepository.class);
     ItemRequestRepository itemRequestRepository = mock(ItemRequestRepository.class);
     UserRepository userRepository = mock(UserRepository.class);
+    UserCache userCache = new UserCache(userRepository, new ReadReplicaRouting(""),
+            mock(PlatformTransactionManager.class), 10, Duration.ofMinutes(5));
     BookingRepository bookingRepository = mock(BookingRepository.class);
+    BookingHistoryRepository bookingHistoryRepository = mock(BookingHistoryRepository.class);
     CommentRepository commentRepository = mock(CommentRepository.class);
+    OutboxPublisher outboxPublisher = mock(OutboxPublisher.class);
+    EntityManager entityManager = mock(EntityManager.class);
 
-    ItemService itemService = new ItemServiceImpl(itemRepository, itemRequestRepository, userRepository,
-            bookingRepository, commentRepository, new ModelValidator<>());
+    ItemService itemService = new ItemServiceImpl(itemRepository, itemRequestRepository, userCache,
+            bookingRepository, bookingHistoryRepository, commentRepository, new SubstringItemSearch(itemRepository),
+            new ModelValidator<>(), outboxPublisher, entityManager);
 
     ItemDto testItemDto = ItemDto.of(1L, "Test item", "description", true, 1L);
     CommentDto testCommentDto = CommentDto.of(1L, "comment", "Test user", NOW_DATE_TIME);
@@ -56,6 +79,9 @@ class ItemServiceTest {
     ItemRequest testItemRequest = ItemRequest.of(1L, "description", testUser, NOW_DATE_TIME);
     Item testItem = Item.of(1L, "Test item", "description", true, 1L,
             testItemRequest);
+    Item testItemWithBookings = Item.of(1L, "Test item", "description", true, 1L, testItemRequest,
+            BookingSnapshot.of(1L, 1L, NOW_DATE_TIME, NOW_DATE_TIME),
+            BookingSnapshot.of(1L, 1L, NOW_DATE_TIME, NOW_DATE_TIME), NOW_DATE_TIME);
     Item testItemWithOtherOwner = Item.of(1L, "Test item", "description", true, 2L,
             null);
 
@@ -70,6 +96,31 @@ class ItemServiceTest {
             Collections.emptyList()
     );
 
+    @Test
+    void exportItemsByUserId() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(itemRepository.streamAllByOwnerIdOrderByIdAsc(anyLong()))
+                .thenReturn(Stream.of(testItem, testItemWithOtherOwner));
+
+        final List<ItemDto> itemsDto = new ArrayList<>();
+        itemService.exportItemsByUserId(1L, itemsDto::add);
+
+        assertEquals(List.of(testItemDto, ItemDto.of(1L, "Test item", "description", true, null)), itemsDto,
+                "Выгружаются неверные вещи");
+        verify(entityManager).detach(testItem);
+        verify(entityManager).detach(testItemRequest);
+        verify(entityManager).detach(testItemWithOtherOwner);
+    }
+
+    @Test
+    void exportItemsByInvalidUserId() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> itemService.exportItemsByUserId(1L,
+                item -> fail("Выгружена лишняя вещь")), "Выгрузка несуществующим пользователем не вызывает исключения");
+        verify(itemRepository, never()).streamAllByOwnerIdOrderByIdAsc(anyLong());
+    }
+
     @Test
     void getItemWithInvalidUserId() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
@@ -94,18 +145,14 @@ class ItemServiceTest {
     @Test
     void getItemById() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
-        when(itemRepository.findById(anyLong())).thenReturn(Optional.of(testItem));
-        when(bookingRepository.findFirstByItemAndEndBeforeOrderByEndDesc(ArgumentMatchers.any(Item.class),
-                ArgumentMatchers.any(LocalDateTime.class))).thenReturn(Optional.of(testBooking));
-        when(bookingRepository.findFirstByItemAndStartAfterOrderByStartDesc(ArgumentMatchers.any(Item.class),
-                ArgumentMatchers.any(LocalDateTime.class))).thenReturn(Optional.of(testBooking));
-
+        when(itemRepository.findById(anyLong())).thenReturn(Optional.of(testItemWithBookings));
         when(commentRepository.findAllByItemOrderByCreated(ArgumentMatchers.any(Item.class)))
                 .thenReturn(Collections.emptyList());
 
         final ItemGetDto itemGetDto = itemService.getItemById(1L, 1L);
         assertNotNull(itemGetDto, "Возвращается пустая вещь");
         assertEquals(testItemGetDto, itemGetDto, "Возвращается неверная вещь");
+        verifyNoInteractions(bookingRepository);
     }
 
     @Test
@@ -143,23 +190,97 @@ class ItemServiceTest {
     @Test
     void getItemsByUserId() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
-        when(itemRepository.findAllByOwnerId(anyLong(), any(Pageable.class))).thenReturn(List.of(testItem));
-        when(bookingRepository.findFirstByItemAndEndBeforeOrderByEndDesc(ArgumentMatchers.any(Item.class),
-                ArgumentMatchers.any(LocalDateTime.class))).thenReturn(Optional.of(testBooking));
-        when(bookingRepository.findFirstByItemAndStartAfterOrderByStartDesc(ArgumentMatchers.any(Item.class),
-                ArgumentMatchers.any(LocalDateTime.class))).thenReturn(Optional.of(testBooking));
-
-        when(commentRepository.findAllByItemOrderByCreated(ArgumentMatchers.any(Item.class)))
+        when(itemRepository.findAllByOwnerId(anyLong(), any(Pageable.class)))
+                .thenReturn(List.of(testItemWithBookings));
+        when(commentRepository.findAllByItemIdInOrderByCreated(anyCollection()))
                 .thenReturn(Collections.emptyList());
 
         final List<ItemGetDto> itemsGetDto = itemService.getItemsByUserId(1L, 0, 10);
         assertNotNull(itemsGetDto, "Не возвращается список вещей");
         assertIterableEquals(List.of(testItemGetDto), itemsGetDto, "Возвращается неверная вещь");
+        verifyNoInteractions(bookingRepository);
+        verify(commentRepository, never()).findAllByItemOrderByCreated(any(Item.class));
+    }
+
+    @Test
+    void getItemsByUserIdWithEmptyPage() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(itemRepository.findAllByOwnerId(anyLong(), any(Pageable.class))).thenReturn(Collections.emptyList());
+
+        final List<ItemGetDto> itemsGetDto = itemService.getItemsByUserId(1L, 0, 10);
+        assertNotNull(itemsGetDto, "Не возвращается список вещей");
+        assertTrue(itemsGetDto.isEmpty(), "Возвращается непустой список вещей");
+        verify(commentRepository, never()).findAllByItemIdInOrderByCreated(anyCollection());
+    }
+
+    @Test
+    void getItemsByUserIdAfterCursor() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(itemRepository.findAllByOwnerIdAndIdGreaterThan(anyLong(), anyLong(), any(Pageable.class)))
+                .thenReturn(Collections.emptyList());
+
+        final List<ItemGetDto> itemsGetDto = itemService.getItemsByUserId(1L, PageCursor.of(1L), 10);
+        assertNotNull(itemsGetDto, "Не возвращается список вещей");
+        assertTrue(itemsGetDto.isEmpty(), "Возвращается непустой список вещей");
+        verify(itemRepository).findAllByOwnerIdAndIdGreaterThan(eq(1L), eq(1L), any(Pageable.class));
+    }
+
+    @Test
+    void getItemAvailabilityWithInvalidPeriod() {
+        ValidationException e = assertThrows(ValidationException.class, () -> itemService.getItemAvailability(1L,
+                1L, NOW_DATE_TIME, NOW_DATE_TIME), "Запрос пустого периода не вызывает исключения");
+        assertEquals(Map.of("error", "Начало периода должно быть раньше окончания"), e.getViolations(),
+                "Неверное сообщение об ошибке");
+    }
+
+    @Test
+    void getItemAvailabilityWithInvalidItem() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(itemRepository.existsById(anyLong())).thenReturn(false);
+
+        Throwable e = assertThrows(NotFoundException.class, () -> itemService.getItemAvailability(1L, 1L,
+                NOW_DATE_TIME, NOW_DATE_TIME.plusDays(1)), "Запрос несуществующей вещи не вызывает исключения");
+        assertEquals("Вещь с id=1 не найдена", e.getMessage(), "Неверное сообщение об ошибке");
+    }
+
+    @Test
+    void getItemAvailability() {
+        final LocalDateTime from = NOW_DATE_TIME;
+        final LocalDateTime to = NOW_DATE_TIME.plusDays(10);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(itemRepository.existsById(anyLong())).thenReturn(true);
+        when(bookingHistoryRepository.findAllByItemIdInPeriod(anyLong(), anyCollection(), any(LocalDateTime.class),
+                any(LocalDateTime.class))).thenReturn(List.of(
+                        Booking.of(1L, from.minusDays(1), from.plusDays(1), testItem, testUser, BookingStatus.APPROVED),
+                        Booking.of(2L, from.plusDays(2), from.plusDays(5), testItem, testUser, BookingStatus.WAITING),
+                        Booking.of(3L, from.plusDays(3), from.plusDays(4), testItem, testUser, BookingStatus.WAITING),
+                        Booking.of(4L, from.plusDays(5), from.plusDays(6), testItem, testUser, BookingStatus.APPROVED)
+        ));
+
+        final List<TimeSlotDto> slots = itemService.getItemAvailability(1L, 1L, from, to);
+
+        assertEquals(List.of(
+                TimeSlotDto.of(from.plusDays(1), from.plusDays(2)),
+                TimeSlotDto.of(from.plusDays(6), to)
+        ), slots, "Возвращаются неверные свободные периоды");
+        verify(bookingHistoryRepository).findAllByItemIdInPeriod(1L, Set.of(BookingStatus.APPROVED, BookingStatus.WAITING),
+                from, to);
+    }
+
+    @Test
+    void getItemAvailabilityWithoutBookings() {
+        final LocalDateTime to = NOW_DATE_TIME.plusDays(1);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(itemRepository.existsById(anyLong())).thenReturn(true);
+
+        assertEquals(List.of(TimeSlotDto.of(NOW_DATE_TIME, to)),
+                itemService.getItemAvailability(1L, 1L, NOW_DATE_TIME, to),
+                "Для вещи без бронирований не возвращается весь период");
     }
 
     @Test
     void createItemByInvalidUser() {
-        when(userRepository.existsById(anyLong())).thenReturn(false);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
 
         Throwable e = assertThrows(NotFoundException.class, () -> itemService.createItem(testItemDto, 1L),
                 "Запрос вещи от имени несуществующего пользователя не вызывает исключения");
@@ -169,7 +290,7 @@ class ItemServiceTest {
 
     @Test
     void createItemWithInvalidRequest() {
-        when(userRepository.existsById(anyLong())).thenReturn(true);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
         when(itemRequestRepository.findById(1L)).thenReturn(Optional.empty());
 
         Throwable e = assertThrows(NotFoundException.class, () -> itemService.createItem(testItemDto, 1L),
@@ -185,7 +306,7 @@ class ItemServiceTest {
         final Item testItem = Item.of(1L, "Test item", "description", true, 1L,
                 null);
 
-        when(userRepository.existsById(anyLong())).thenReturn(true);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
         when(itemRequestRepository.findById(1L)).thenReturn(Optional.empty());
         when(itemRepository.save(any(Item.class))).thenReturn(testItem);
 
@@ -193,11 +314,60 @@ class ItemServiceTest {
 
         assertNotNull(createdItem, "Не создается вещь");
         assertEquals(testItemDto, createdItem, "Создается неверная вещь");
+        verify(outboxPublisher).publish(AggregateType.ITEM, 1L, EventType.CREATED);
+    }
+
+    @Test
+    void createItemsByInvalidUser() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> itemService.createItems(List.of(testItemDto), 1L),
+                "Создание вещей несуществующим пользователем не вызывает исключения");
+        verify(itemRepository, never()).saveAll(anyIterable());
+    }
+
+    @Test
+    void createItemsWithInvalidItems() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+
+        final ValidationException e = assertThrows(ValidationException.class, () -> itemService.createItems(
+                List.of(testItemDto, ItemDto.of(null, "", "description", null, null)), 1L),
+                "Создание невалидных вещей не вызывает исключения");
+        assertEquals(Set.of("[1].name", "[1].available"), e.getViolations().keySet(),
+                "Неверный список ошибок валидации");
+        verify(itemRepository, never()).saveAll(anyIterable());
+    }
+
+    @Test
+    void createItemsWithInvalidRequest() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(itemRequestRepository.findAllById(anyIterable())).thenReturn(Collections.emptyList());
+
+        assertThrows(NotFoundException.class, () -> itemService.createItems(List.of(testItemDto), 1L),
+                "Создание вещи для несуществующего запроса не вызывает исключения");
+        verify(itemRepository, never()).saveAll(anyIterable());
+    }
+
+    @Test
+    void createItems() {
+        final ItemDto itemDtoWithoutRequest = ItemDto.of(null, "Other item", "description", true, null);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(itemRequestRepository.findAllById(anyIterable())).thenReturn(List.of(testItemRequest));
+        when(itemRepository.saveAll(anyIterable())).thenReturn(List.of(testItem, testItemWithOtherOwner));
+
+        final List<ItemDto> createdItems = itemService.createItems(List.of(testItemDto, itemDtoWithoutRequest,
+                testItemDto), 1L);
+
+        assertEquals(2, createdItems.size(), "Возвращается неверный список вещей");
+        verify(userRepository, times(1)).findById(1L);
+        verify(itemRequestRepository, times(1)).findAllById(Set.of(1L));
+        verify(itemRequestRepository, never()).findById(anyLong());
+        verify(outboxPublisher).publishAll(AggregateType.ITEM, List.of(1L, 1L), EventType.CREATED);
     }
 
     @Test
     void createItem() {
-        when(userRepository.existsById(anyLong())).thenReturn(true);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
         when(itemRequestRepository.findById(1L)).thenReturn(Optional.of(testItemRequest));
         when(itemRepository.save(any(Item.class))).thenReturn(testItem);
 
@@ -210,7 +380,7 @@ class ItemServiceTest {
 
     @Test
     void updateItemByInvalidUser() {
-        when(userRepository.existsById(anyLong())).thenReturn(false);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
 
         Throwable e = assertThrows(NotFoundException.class, () -> itemService.updateItem(testItemDto, 1L,
                         1L),"Запрос вещи от имени несуществующего пользователя не вызывает исключения");
@@ -220,7 +390,7 @@ class ItemServiceTest {
 
     @Test
     void updateItemWithInvalidItem() {
-        when(userRepository.existsById(anyLong())).thenReturn(true);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
         when(itemRepository.findById(anyLong())).thenReturn(Optional.empty());
 
         Throwable e = assertThrows(NotFoundException.class, () -> itemService.updateItem(testItemDto, 1L,
@@ -231,7 +401,7 @@ class ItemServiceTest {
 
     @Test
     void updateItemWithOtherOwner() {
-        when(userRepository.existsById(anyLong())).thenReturn(true);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
         when(itemRepository.findById(anyLong())).thenReturn(Optional.of(testItemWithOtherOwner));
 
         Throwable e = assertThrows(ForbiddenException.class, () -> itemService.updateItem(testItemDto, 1L,
@@ -242,7 +412,7 @@ class ItemServiceTest {
 
     @Test
     void updateItem() {
-        when(userRepository.existsById(anyLong())).thenReturn(true);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
         when(itemRepository.findById(anyLong())).thenReturn(Optional.of(testItem));
         when(itemRepository.save(any(Item.class))).thenReturn(testItem);
 
@@ -250,6 +420,21 @@ class ItemServiceTest {
 
         assertNotNull(itemDto, "Не обновляется вещь");
         assertEquals(testItemDto, itemDto, "Неверно обновляется вещь");
+        verify(outboxPublisher).publish(AggregateType.ITEM, 1L, EventType.UPDATED);
+    }
+
+    @Test
+    void updateItemKeepsBookings() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(itemRepository.findById(anyLong())).thenReturn(Optional.of(testItemWithBookings));
+        when(itemRepository.save(any(Item.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        itemService.updateItem(ItemDto.of(null, "Updated", null, null, null), 1L, 1L);
+
+        verify(itemRepository).save(argThat(item -> "Updated".equals(item.getName())
+                && item.getLastBooking() == testItemWithBookings.getLastBooking()
+                && item.getNextBooking() == testItemWithBookings.getNextBooking()
+                && NOW_DATE_TIME.equals(item.getBookingsRefreshAt())));
     }
 
     @Test
@@ -270,6 +455,27 @@ class ItemServiceTest {
         assertIterableEquals(List.of(testItemDto), itemsDto, "Возвращаются неверные результаты поиска");
     }
 
+    @Test
+    void searchItemsBySubstringAfterCursor() {
+        when(itemRepository.searchSubstringAfter(anyString(), anyLong(), any(Pageable.class)))
+                .thenReturn(List.of(testItem));
+
+        final List<ItemDto> itemsDto = itemService.searchItemsBySubstring("tem", PageCursor.of(0L), 10);
+        assertIterableEquals(List.of(testItemDto), itemsDto, "Возвращаются неверные результаты поиска");
+        verify(itemRepository).searchSubstringAfter(eq("tem"), eq(0L), any(Pageable.class));
+    }
+
+    @Test
+    void searchItemsBySubstringAfterCursorRejectedForFullText() {
+        final ItemService fullTextItemService = new ItemServiceImpl(itemRepository, itemRequestRepository,
+                userCache, bookingRepository, bookingHistoryRepository, commentRepository,
+                new FullTextItemSearch(itemRepository), new ModelValidator<>(), outboxPublisher, entityManager);
+
+        assertThrows(BadRequestException.class,
+                () -> fullTextItemService.searchItemsBySubstring("tem", PageCursor.of(0L), 10),
+                "Вывод по курсору при поиске по релевантности не вызывает исключения");
+    }
+
     @Test
     void createCommentByInvalidUser() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
@@ -295,7 +501,8 @@ class ItemServiceTest {
     void createCommentWithBadRequest() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
         when(itemRepository.findById(anyLong())).thenReturn(Optional.of(testItem));
-        when(bookingRepository.findAllByItemIdAndBookerIdAndEndBefore(anyLong(), anyLong(), any(LocalDateTime.class)))
+        when(bookingHistoryRepository.findAllByItemIdAndBookerIdAndEndBefore(anyLong(), anyLong(),
+                any(LocalDateTime.class)))
                 .thenReturn(Collections.emptySet());
 
         Throwable e = assertThrows(BadRequestException.class, () -> itemService.createComment(testCommentDto, 1L,
@@ -310,13 +517,15 @@ class ItemServiceTest {
 
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
         when(itemRepository.findById(anyLong())).thenReturn(Optional.of(testItem));
-        when(bookingRepository.findAllByItemIdAndBookerIdAndEndBefore(anyLong(), anyLong(), any(LocalDateTime.class)))
+        when(bookingHistoryRepository.findAllByItemIdAndBookerIdAndEndBefore(anyLong(), anyLong(),
+                any(LocalDateTime.class)))
                 .thenReturn(Set.of(testBooking));
         when(commentRepository.save(any(Comment.class))).thenReturn(comment);
 
         final CommentDto commentDto = itemService.createComment(testCommentDto, 1L, 1L);
         assertNotNull(commentDto, "Возвращается пустой комментарий");
         assertEquals(testCommentDto, commentDto, "Возврщается неверный комментарий");
+        verify(outboxPublisher).publish(AggregateType.COMMENT, 1L, EventType.CREATED);
     }
 
 }
\ No newline at end of file
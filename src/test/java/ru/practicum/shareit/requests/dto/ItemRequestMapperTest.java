@@ -3,6 +3,8 @@ package ru.practicum.shareit.requests.dto;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.item.dto.ItemMapper;
+import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.requests.model.ItemRequest;
 import ru.practicum.shareit.user.dto.UserMapper;
 import ru.practicum.shareit.user.model.User;
@@ -38,6 +40,20 @@ class ItemRequestMapperTest {
         assertIterableEquals(List.of(testItemRequestDto), itemRequestsDto, "Возвращается неверный список");
     }
 
+    @Test
+    void toItemRequestsDtoWithItems() {
+        final Item item = Item.of(1L, "Item", "Item description", true, 2L, testItemRequest);
+        final ItemRequest otherRequest = ItemRequest.of(2L, "Other request", testItemRequest.getRequestor(),
+                testItemRequest.getCreated());
+
+        final List<ItemRequestDto> itemRequestsDto = ItemRequestMapper.toItemRequestsDto(
+                List.of(testItemRequest, otherRequest), List.of(item));
+        assertEquals(2, itemRequestsDto.size(), "Возвращается неверный размер списка");
+        assertIterableEquals(List.of(ItemMapper.toItemDto(item)), itemRequestsDto.get(0).getItems(),
+                "Возвращаются неверные вещи запроса");
+        assertTrue(itemRequestsDto.get(1).getItems().isEmpty(), "Запросу без вещей возвращаются вещи");
+    }
+
     @Test
     void fromItemRequestDto() {
         final ItemRequest itemRequest = ItemRequestMapper.fromItemRequestDto(testItemRequestDto);
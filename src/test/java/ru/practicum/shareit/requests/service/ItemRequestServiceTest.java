@@ -2,10 +2,17 @@ package ru.practicum.shareit.requests.service;
 
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.practicum.shareit.common.PageCursor;
+import ru.practicum.shareit.common.datasource.ReadReplicaRouting;
 import ru.practicum.shareit.common.exceptoins.NotFoundException;
+import ru.practicum.shareit.common.outbox.AggregateType;
+import ru.practicum.shareit.common.outbox.EventType;
+import ru.practicum.shareit.common.outbox.OutboxPublisher;
 import ru.practicum.shareit.item.repository.ItemRepository;
 import ru.practicum.shareit.requests.dto.ItemRequestDto;
 import ru.practicum.shareit.requests.model.ItemRequest;
@@ -13,7 +20,9 @@ import ru.practicum.shareit.requests.repository.ItemRequestRepository;
 import ru.practicum.shareit.user.dto.UserMapper;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.user.service.UserCache;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
@@ -22,9 +31,9 @@ import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyLong;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
 class ItemRequestServiceTest {
@@ -34,15 +43,24 @@ class ItemRequestServiceTest {
     ItemRepository itemRepository = mock(ItemRepository.class);
     ItemRequestRepository itemRequestRepository = mock(ItemRequestRepository.class);
     UserRepository userRepository = mock(UserRepository.class);
+    UserCache userCache = new UserCache(userRepository, new ReadReplicaRouting(""),
+            mock(PlatformTransactionManager.class), 10, Duration.ofMinutes(5));
+
+    OutboxPublisher outboxPublisher = mock(OutboxPublisher.class);
 
     ItemRequestService itemRequestService = new ItemRequestServiceImpl(itemRequestRepository, userRepository,
-            itemRepository);
+            userCache, itemRepository, outboxPublisher);
 
     User testUser = User.of(1L, "Test user", "user@test.email");
     ItemRequest testItemRequest = ItemRequest.of(1L, "description", testUser, NOW_DATE_TIME);
     ItemRequestDto testItemRequestDto = ItemRequestDto.of(1L, "description",
             UserMapper.toUserDto(testUser), NOW_DATE_TIME, Collections.emptyList());
 
+    @BeforeEach
+    void beforeEachTest() {
+        when(userRepository.getReferenceById(anyLong())).thenReturn(testUser);
+    }
+
     @Test
     void createItemRequestByInvalidUser() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
@@ -62,6 +80,7 @@ class ItemRequestServiceTest {
 
         assertNotNull(itemRequestDto, "Возвращается пустой запрос");
         assertEquals(testItemRequestDto, itemRequestDto, "Возвращается неверный запрос");
+        verify(outboxPublisher).publish(AggregateType.ITEM_REQUEST, 1L, EventType.CREATED);
     }
 
     @Test
@@ -81,11 +100,15 @@ class ItemRequestServiceTest {
         when(itemRequestRepository.findAllByRequestorOrderByCreated(any(User.class)))
                 .thenReturn(Set.of(testItemRequest));
 
+        when(itemRepository.findAllByRequestIdIn(anyCollection())).thenReturn(Collections.emptyList());
+
         final List<ItemRequestDto> itemRequestsDto = itemRequestService.getItemRequestsByRequestorId(1L);
 
         assertNotNull(itemRequestsDto, "Не возвращается список запросов");
         assertIterableEquals(List.of(testItemRequestDto), itemRequestsDto,
                 "Возвращается неверный список запросов");
+        verify(itemRepository, times(1)).findAllByRequestIdIn(Set.of(testItemRequest.getId()));
+        verify(itemRepository, never()).findAllByRequest(any(ItemRequest.class));
     }
 
     @Test
@@ -103,7 +126,7 @@ class ItemRequestServiceTest {
     void getItemRequestsByNotRequestorId() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
         when(itemRequestRepository.findAllByNotRequestorOrderByCreated(any(User.class), any(Pageable.class)))
-                .thenReturn(Page.empty());
+                .thenReturn(new SliceImpl<>(Collections.emptyList()));
 
         final List<ItemRequestDto> itemRequestsDto = itemRequestService.getItemRequestsByNotRequestorId(1L,
                 0, 10);
@@ -112,9 +135,21 @@ class ItemRequestServiceTest {
         assertTrue(itemRequestsDto.isEmpty(), "Возвращается неверный список запросов");
     }
 
+    @Test
+    void getItemRequestsByNotRequestorIdAfterCursor() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
+        when(itemRequestRepository.findPageByNotRequestor(any(User.class), any(LocalDateTime.class), anyLong(),
+                any(Pageable.class))).thenReturn(List.of(testItemRequest));
+
+        final List<ItemRequestDto> itemRequestsDto = itemRequestService.getItemRequestsByNotRequestorId(1L,
+                PageCursor.of(NOW_DATE_TIME.minusDays(1), 0L), 10);
+
+        assertEquals(List.of(testItemRequestDto), itemRequestsDto, "Возвращается неверный список запросов");
+    }
+
     @Test
     void getRequestByIdByInvalidUser() {
-        when(userRepository.existsById(anyLong())).thenReturn(false);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
 
         Throwable e = assertThrows(NotFoundException.class, () -> itemRequestService.getRequestById(1L, 1L),
                 "Запрос от несуществующего пользователя не вызывает исключения");
@@ -124,7 +159,7 @@ class ItemRequestServiceTest {
 
     @Test
     void getRequestByIdByInvalidRequest() {
-        when(userRepository.existsById(anyLong())).thenReturn(true);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
         when(itemRequestRepository.findById(anyLong())).thenReturn(Optional.empty());
 
         Throwable e = assertThrows(NotFoundException.class, () -> itemRequestService.getRequestById(1L, 1L),
@@ -135,7 +170,7 @@ class ItemRequestServiceTest {
 
     @Test
     void getRequestById() {
-        when(userRepository.existsById(anyLong())).thenReturn(true);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
         when(itemRequestRepository.findById(anyLong())).thenReturn(Optional.of(testItemRequest));
         when(itemRepository.findAllByRequest(any(ItemRequest.class))).thenReturn(Collections.emptySet());
 
@@ -9,15 +9,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.shareit.common.PageCursor;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.service.UserService;
 
 import java.util.List;
+import java.util.function.Consumer;
 
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(UserController.class)
@@ -47,9 +52,85 @@ class UserControllerTest {
 
         mockMvc.perform(get("/users"))
                 .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(PageCursor.NEXT_CURSOR_HEADER))
                 .andExpect(content().json(objectMapper.writeValueAsString(testUsers)));
 
         verify(userService, times(1)).getAllUsers();
+        verify(userService, never()).getAllUsers(anyInt(), anyInt());
+    }
+
+    @Test
+    void getAllPaged() throws Exception {
+        when(userService.getAllUsers(0, 10)).thenReturn(testUsers);
+
+        mockMvc.perform(get("/users").param("from", "0"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(PageCursor.NEXT_CURSOR_HEADER))
+                .andExpect(content().json(objectMapper.writeValueAsString(testUsers)));
+
+        verify(userService, times(1)).getAllUsers(0, 10);
+        verify(userService, never()).getAllUsers();
+    }
+
+    @Test
+    void getAllWithZeroSize() throws Exception {
+        mockMvc.perform(get("/users").param("size", "0"))
+                .andExpect(status().isBadRequest());
+
+        verify(userService, never()).getAllUsers(anyInt(), anyInt());
+    }
+
+    @Test
+    void getAllAfterCursor() throws Exception {
+        final List<UserDto> page = testUsers.subList(1, 3);
+        when(userService.getAllUsers(PageCursor.of(1L), 2)).thenReturn(page);
+
+        mockMvc.perform(get("/users")
+                        .param("after", PageCursor.of(1L).encode())
+                        .param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(PageCursor.NEXT_CURSOR_HEADER, PageCursor.of(3L).encode()))
+                .andExpect(content().json(objectMapper.writeValueAsString(page)));
+
+        verify(userService, never()).getAllUsers(anyInt(), anyInt());
+    }
+
+    @Test
+    void getAllWithInvalidCursor() throws Exception {
+        mockMvc.perform(get("/users").param("after", "!"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void stream() throws Exception {
+        doAnswer(invocation -> {
+            testUsers.forEach(invocation.<Consumer<UserDto>>getArgument(0));
+            return null;
+        }).when(userService).streamAllUsers(any());
+
+        final StringBuilder expected = new StringBuilder();
+        for (UserDto user : testUsers) {
+            expected.append(objectMapper.writeValueAsString(user)).append('\n');
+        }
+        mockMvc.perform(get("/users/stream"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(expected.toString()));
+
+        verify(userService, never()).getAllUsers(anyInt(), anyInt());
+    }
+
+    @Test
+    void streamAsCsv() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<Consumer<UserDto>>getArgument(0).accept(UserDto.of(1L, "Doe, John", "john@email.test"));
+            return null;
+        }).when(userService).streamAllUsers(any());
+
+        mockMvc.perform(get("/users/stream").param("format", "csv"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv;charset=UTF-8"))
+                .andExpect(content().string("id,name,email\n1,\"Doe, John\",john@email.test\n"));
     }
 
     @Test
@@ -0,0 +1,173 @@
+package ru.practicum.shareit.user.service;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.common.datasource.ReadReplicaRouting;
+import ru.practicum.shareit.common.outbox.AggregateType;
+import ru.practicum.shareit.common.outbox.EventType;
+import ru.practicum.shareit.common.outbox.OutboxEvent;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class UserCacheTest {
+
+    static int MAX_SIZE = 2;
+
+    UserRepository userRepository = mock(UserRepository.class);
+    PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    UserCache userCache = new UserCache(userRepository, new ReadReplicaRouting(""), transactionManager,
+            MAX_SIZE, Duration.ofMinutes(5));
+
+    private static User user(long id) {
+        return User.of(id, "User " + id, id + "@email.ru");
+    }
+
+    @Test
+    void findCachesExistingUser() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user(1L)));
+
+        assertEquals(Optional.of(UserDto.of(1L, "User 1", "1@email.ru")), userCache.find(1L),
+                "Возвращается неверный пользователь");
+        assertTrue(userCache.exists(1L), "Существующий пользователь не найден");
+        verify(userRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void findDoesNotCacheMissingUser() {
+        when(userRepository.findById(1L)).thenReturn(Optional.empty(), Optional.of(user(1L)));
+
+        assertFalse(userCache.exists(1L), "Найден несуществующий пользователь");
+        assertTrue(userCache.exists(1L), "Созданный пользователь не найден");
+        verify(userRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void cacheIsBounded() {
+        when(userRepository.findById(anyLong())).thenAnswer(invocation -> Optional.of(user(invocation.getArgument(0))));
+
+        userCache.find(1L);
+        userCache.find(2L);
+        userCache.find(3L);
+        userCache.find(1L);
+        userCache.find(2L);
+        userCache.find(3L);
+
+        verify(userRepository, atLeast(MAX_SIZE + 2)).findById(anyLong());
+    }
+
+    @Test
+    void cacheKeepsUsersWithinSize() {
+        when(userRepository.findById(anyLong())).thenAnswer(invocation -> Optional.of(user(invocation.getArgument(0))));
+
+        userCache.find(1L);
+        userCache.find(2L);
+        userCache.find(1L);
+        userCache.find(2L);
+
+        verify(userRepository, times(1)).findById(1L);
+        verify(userRepository, times(1)).findById(2L);
+    }
+
+    @Test
+    void expiredUserIsReloaded() throws InterruptedException {
+        final UserCache expiringCache = new UserCache(userRepository, new ReadReplicaRouting(""),
+                mock(PlatformTransactionManager.class), MAX_SIZE, Duration.ofMillis(1));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user(1L)),
+                Optional.of(User.of(1L, "Updated", "updated@email.ru")));
+
+        expiringCache.find(1L);
+        Thread.sleep(5);
+
+        assertEquals("Updated", expiringCache.find(1L).orElseThrow().getName(),
+                "Устаревший пользователь не обновляется");
+        verify(userRepository, times(2)).findById(1L);
+    }
+
+    private static OutboxEvent event(EventType eventType) {
+        return OutboxEvent.of(1L, AggregateType.USER, 1L, eventType, LocalDateTime.now());
+    }
+
+    @Test
+    void updateEventReloadsUser() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user(1L)),
+                Optional.of(User.of(1L, "Updated", "updated@email.ru")));
+
+        userCache.find(1L);
+        userCache.onEvent(event(EventType.UPDATED));
+
+        assertEquals("Updated", userCache.find(1L).orElseThrow().getName(), "Сброшенный пользователь не обновляется");
+        verify(userRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void deleteEventEvictsUser() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user(1L)), Optional.empty());
+
+        userCache.find(1L);
+        userCache.onEvent(event(EventType.DELETED));
+
+        assertFalse(userCache.exists(1L), "Удаленный пользователь найден в кэше");
+    }
+
+    @Test
+    void otherEventsKeepUser() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user(1L)));
+
+        userCache.find(1L);
+        userCache.onEvent(event(EventType.CREATED));
+        userCache.onEvent(OutboxEvent.of(2L, AggregateType.ITEM, 1L, EventType.UPDATED, LocalDateTime.now()));
+
+        assertTrue(userCache.exists(1L), "Существующий пользователь не найден");
+        verify(userRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void loadConcurrentWithInvalidateIsNotCached() {
+        when(userRepository.findById(1L)).thenAnswer(invocation -> {
+            userCache.onEvent(event(EventType.UPDATED));
+            return Optional.of(user(1L));
+        });
+
+        assertTrue(userCache.exists(1L), "Существующий пользователь не найден");
+        assertTrue(userCache.exists(1L), "Существующий пользователь не найден");
+        verify(userRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void loadsUserFromPrimaryInsideReplicaTransaction() {
+        final UserCache replicaCache = new UserCache(userRepository, new ReadReplicaRouting("jdbc:h2:mem:replica"),
+                transactionManager, MAX_SIZE, Duration.ofMinutes(5));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user(1L)));
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            assertTrue(replicaCache.exists(1L), "Существующий пользователь не найден");
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+
+        verify(transactionManager).getTransaction(argThat(definition -> !definition.isReadOnly()
+                && definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+    }
+
+    @Test
+    void loadsUserWithoutTransactionWhenReplicaIsDisabled() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user(1L)));
+
+        assertTrue(userCache.exists(1L), "Существующий пользователь не найден");
+        verifyNoInteractions(transactionManager);
+    }
+}
@@ -0,0 +1,92 @@
+package ru.practicum.shareit.user.service;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Измеряет задержку операций с пользователями на профиле H2 и выводит 50-й и 99-й процентили.
+ * Не входит в обычный прогон тестов, запускается профилем benchmark: mvn test -P benchmark.
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:usercrud")
+@DirtiesContext
+@FieldDefaults(level = AccessLevel.PRIVATE)
+class UserCrudLatencyTest {
+
+    static int USERS_COUNT = 500;
+    static int WARMUP_COUNT = 100;
+
+    @Autowired
+    UserService userService;
+    @Autowired
+    UserRepository userRepository;
+
+    private static long measure(Runnable operation) {
+        final long started = System.nanoTime();
+        operation.run();
+        return System.nanoTime() - started;
+    }
+
+    private static long logPercentiles(String operation, long[] latencies) {
+        Arrays.sort(latencies);
+        final long p50 = latencies[latencies.length / 2];
+        log.info("{}: p50={} мкс, p99={} мкс", operation, TimeUnit.NANOSECONDS.toMicros(p50),
+                TimeUnit.NANOSECONDS.toMicros(latencies[latencies.length * 99 / 100]));
+        return p50;
+    }
+
+    private long[][] run(String prefix, int count) {
+        final List<Long> userIds = new ArrayList<>(count);
+        final long[][] latencies = new long[4][count];
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            latencies[0][i] = measure(() -> userIds.add(userService.createUser(UserDto.of(null, "User " + index,
+                    prefix + index + "@email.ru")).getId()));
+        }
+        for (int i = 0; i < count; i++) {
+            final Long userId = userIds.get(i);
+            latencies[1][i] = measure(() -> userService.getUserById(userId));
+        }
+        for (int i = 0; i < count; i++) {
+            final Long userId = userIds.get(i);
+            final int index = i;
+            latencies[2][i] = measure(() -> userService.updateUser(userId, UserDto.of(null, "Updated " + index,
+                    null)));
+        }
+        for (int i = 0; i < count; i++) {
+            final Long userId = userIds.get(i);
+            latencies[3][i] = measure(() -> userService.removeUser(userId));
+        }
+        return latencies;
+    }
+
+    @Test
+    void userCrudLatency() {
+        run("warmup", WARMUP_COUNT);
+        final long[][] latencies = run("user", USERS_COUNT);
+
+        logPercentiles("Создание пользователя", latencies[0]);
+        final long getMedian = logPercentiles("Получение пользователя", latencies[1]);
+        final long updateMedian = logPercentiles("Обновление пользователя", latencies[2]);
+        logPercentiles("Удаление пользователя", latencies[3]);
+        assertTrue(getMedian < updateMedian, "Получение пользователя из кэша не быстрее его обновления");
+        assertEquals(0, userRepository.count(), "Удалены не все пользователи");
+    }
+}
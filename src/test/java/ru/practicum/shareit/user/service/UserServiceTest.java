@@ -3,14 +3,27 @@ package ru.practicum.shareit.user.service;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
 import ru.practicum.shareit.common.ModelValidator;
+import ru.practicum.shareit.common.PageCursor;
+import ru.practicum.shareit.common.datasource.ReadReplicaRouting;
 import ru.practicum.shareit.common.exceptoins.NotFoundException;
 import ru.practicum.shareit.common.exceptoins.ValidationException;
+import ru.practicum.shareit.common.outbox.AggregateType;
+import ru.practicum.shareit.common.outbox.EventType;
+import ru.practicum.shareit.common.outbox.OutboxPublisher;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
 
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -32,31 +45,67 @@ class UserServiceTest {
     );
 
     UserRepository userRepository = mock(UserRepository.class);
-    UserService userService = new UserServiceImpl(userRepository, new ModelValidator<>());
+    OutboxPublisher outboxPublisher = mock(OutboxPublisher.class);
+    EntityManager entityManager = mock(EntityManager.class);
+    UserCache userCache = new UserCache(userRepository, new ReadReplicaRouting(""),
+            mock(PlatformTransactionManager.class), 10, Duration.ofMinutes(5));
+    UserService userService = new UserServiceImpl(userRepository, new ModelValidator<>(), outboxPublisher,
+            userCache, entityManager);
 
     @Test
     void getAllUsers() {
-    userService.getAllUsers();
-        when(userRepository.findAll()).thenReturn(testUsers);
+        when(userRepository.findAllBy(any())).thenReturn(testUsers);
 
-        final List<UserDto> usersDto = userService.getAllUsers();
+        final List<UserDto> usersDto = userService.getAllUsers(3, 3);
         assertNotNull(usersDto, "Список пользователей не возвращается");
         assertIterableEquals(testUsersDto, usersDto, "Возвращается неверный список пользователей");
+        verify(userRepository).findAllBy(PageRequest.of(1, 3, Sort.by("id")));
+        verify(userRepository, never()).findAll();
+    }
+
+    @Test
+    void getAllUsersUnpaged() {
+        when(userRepository.findAll(any(Sort.class))).thenReturn(testUsers);
+
+        assertIterableEquals(testUsersDto, userService.getAllUsers(), "Возвращается неверный список пользователей");
+        verify(userRepository).findAll(Sort.by("id"));
+    }
+
+    @Test
+    void getAllUsersAfterCursor() {
+        when(userRepository.findAllByIdGreaterThan(anyLong(), any())).thenReturn(testUsers.subList(1, 3));
+
+        final List<UserDto> usersDto = userService.getAllUsers(PageCursor.of(1L), 2);
+        assertIterableEquals(testUsersDto.subList(1, 3), usersDto, "Возвращается неверная страница пользователей");
+        verify(userRepository).findAllByIdGreaterThan(1L, PageRequest.of(0, 2, Sort.by("id")));
+    }
+
+    @Test
+    void streamAllUsers() {
+        when(userRepository.streamAllByOrderByIdAsc()).thenReturn(testUsers.stream());
+
+        final List<UserDto> usersDto = new ArrayList<>();
+        userService.streamAllUsers(usersDto::add);
+        assertIterableEquals(testUsersDto, usersDto, "Выгружается неверный список пользователей");
+        testUsers.forEach(user -> verify(entityManager).detach(user));
+        verify(userRepository, never()).findAll();
     }
 
     @Test
     void getUserById() {
-        when(userRepository.getReferenceById(anyLong())).thenReturn(testUser);
-        when(userRepository.existsById(anyLong())).thenReturn(true);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(testUser));
 
         final UserDto userDto = userService.getUserById(1L);
         assertNotNull(userDto, "Не возвращается пользователь по id");
         assertEquals(testUserDto, userDto, "Возвращается неверный пользователь");
+        assertEquals(testUserDto, userService.getUserById(1L), "Возвращается неверный пользователь");
+        verify(userRepository, times(1)).findById(1L);
+        verify(userRepository, never()).getReferenceById(anyLong());
     }
 
     @Test
     void getUserByInvalidId() {
-        when(userRepository.existsById(anyLong())).thenReturn(false);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
 
         final Throwable e = assertThrows(NotFoundException.class, () -> userService.getUserById(1L),
                 "При неверном id пользователя не возникает исключения");
@@ -66,11 +115,12 @@ class UserServiceTest {
     @Test
     void createUser() {
         when(userRepository.save(any())).thenReturn(testUser);
-        when(userRepository.getReferenceById(any())).thenReturn(testUser);
 
         final UserDto userDto = userService.createUser(testUserDto);
         assertNotNull(userDto, "Не возвращается пользователь");
         assertEquals(testUserDto, userDto, "Возвращается неверный пользователь");
+        verify(outboxPublisher).publish(AggregateType.USER, 1L, EventType.CREATED);
+        verify(userRepository, never()).getReferenceById(anyLong());
     }
 
     @Test
@@ -83,20 +133,62 @@ class UserServiceTest {
 
     @Test
     void updateUser() {
-        when(userRepository.save(any())).thenReturn(testUser);
-        when(userRepository.getReferenceById(any())).thenReturn(testUser);
-        when(userRepository.existsById(anyLong())).thenReturn(true);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(User.of(1L, "Old", "old@email.test")));
 
         final UserDto userDto = userService.updateUser(1L, testUserDto);
         assertNotNull(userDto, "Не возвращается пользователь");
         assertEquals(testUserDto, userDto, "Возвращается неверный пользователь");
+        verify(userRepository).saveAndFlush(argThat(user -> testUserDto.getName().equals(user.getName())
+                && testUserDto.getEmail().equals(user.getEmail())));
+        verify(outboxPublisher).publish(AggregateType.USER, 1L, EventType.UPDATED);
+    }
+
+    @Test
+    void updateUserName() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(User.of(1L, testUser.getName(),
+                testUser.getEmail())));
+
+        final UserDto userDto = userService.updateUser(1L, UserDto.of(null, "Updated", null));
+        assertEquals(UserDto.of(1L, "Updated", testUser.getEmail()), userDto, "Неверно обновляется имя");
+        verify(userRepository).saveAndFlush(any());
+    }
+
+    @Test
+    void updateUserWithInvalidEmail() {
+        final Throwable e = assertThrows(ValidationException.class, () -> userService.updateUser(1L,
+                UserDto.of(null, null, "Invalid")), "Некорректный email не вызывает исключения");
+        assertEquals(Map.of("email", "Некорректный email"), ((ValidationException) e).getViolations(),
+                "Неверные ошибки валидации");
+        verify(userRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void updateUserByInvalidId() {
+        when(userRepository.findById(1L)).thenReturn(Optional.empty());
+
+        final UserDto userDto = UserDto.of(null, null, "updated@email.test");
+
+        final Throwable e = assertThrows(NotFoundException.class, () -> userService.updateUser(1L, userDto),
+                "Обновление несуществующего пользователя не вызывает исключения");
+        assertEquals("Пользователь с id=1 не найден", e.getMessage(), "Неверное сообщение об ошибке");
+        verify(outboxPublisher, never()).publish(any(), anyLong(), any());
     }
 
     @Test
     void removeUser() {
-        when(userRepository.existsById(anyLong())).thenReturn(true);
-        doNothing().when(userRepository).deleteById(1L);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
 
         userService.removeUser(1L);
+        verify(userRepository).delete(testUser);
+        verify(outboxPublisher).publish(AggregateType.USER, 1L, EventType.DELETED);
+    }
+
+    @Test
+    void removeUserByInvalidId() {
+        when(userRepository.findById(1L)).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> userService.removeUser(1L),
+                "Удаление несуществующего пользователя не вызывает исключения");
+        verify(outboxPublisher, never()).publish(any(), anyLong(), any());
     }
-}
\ No newline at end of file
+}